@@ -1,25 +1,28 @@
 package com.commander4j.launchpad;
 
-import java.awt.BorderLayout;
-import java.awt.Dimension;
+import java.awt.image.MultiResolutionImage;
 import java.io.File;
 import java.io.IOException;
 
 import javax.swing.ImageIcon;
-import javax.swing.JLabel;
-import javax.swing.JPanel;
-
-public class AppComponent extends JPanel
+import javax.swing.SwingUtilities;
+
+/**
+ * An app placed on the grid: bundle path, label and icon. Not a Swing component any more -
+ * {@link LaunchTabPanel} paints it into the cell that holds it, so an app costs no components,
+ * listeners or layout, and its label is a cached {@link NameLayout} laid out on first paint.
+ */
+public class AppComponent
 {
-    private static final long serialVersionUID = 1L;
-
     private final String appPath;
+    private final String canonicalPath;   // resolved once; used by the duplicate index
     private final String appName;
-    private final String displayName;
+    private String displayName;
+
+    private ImageIcon icon;
+    private LaunchCell cell;              // where it is shown; null while detached
+    private ImageIcon hiDpiRequestedFor;  // the 1x icon a 2x variant was last asked for
 
-    private final JLabel iconLabel;
-    private final JLabel nameLabel;
-    
  // --- Add in AppComponent ---
     private String customIconPath;
 
@@ -39,42 +42,19 @@ public class AppComponent extends JPanel
 
     /** Preferred ctor with display name. */
     public AppComponent(File bundle, String displayName, ImageIcon icon)
+    {
+        this(bundle, LaunchPadUtils.canonicalPath(bundle), displayName, icon);
+    }
+
+    /** With the canonical path already known (e.g. from the bundle index), so nothing touches the disk. */
+    public AppComponent(File bundle, String canonicalPath, String displayName, ImageIcon icon)
     {
         this.appPath = bundle.getAbsolutePath();
+        this.canonicalPath = canonicalPath;
         this.appName = bundle.getName();
         this.displayName = (displayName != null && !displayName.isBlank())
                 ? displayName : stripAppSuffix(this.appName);
-
-        setLayout(new BorderLayout());
-        setOpaque(false);
-        setPreferredSize(new Dimension(60, 60));
-
-        iconLabel = new JLabel(icon);
-        iconLabel.setHorizontalAlignment(JLabel.CENTER);
-
-        nameLabel = new JLabel(this.displayName, JLabel.CENTER);
-     // after creating nameLabel
-        nameLabel.setText("<html><div style='text-align:center;width:130px;'>"
-            + escapeHtml(this.displayName) + "</div></html>");
-        nameLabel.setToolTipText(this.displayName);
-        nameLabel.setFont(nameLabel.getFont().deriveFont(12f));
-
-
-        add(iconLabel, BorderLayout.CENTER);
-        add(nameLabel, BorderLayout.SOUTH);
-
-        setTransferHandler(new AppComponentTransferHandler());
-
-        // Shared adapter so drag vs double-click works reliably
-        DragAwareDoubleClickAdapter adapter =
-                new DragAwareDoubleClickAdapter(this, this::launchApp);
-
-        addMouseListener(adapter);
-        addMouseMotionListener(adapter);
-        iconLabel.addMouseListener(adapter);
-        iconLabel.addMouseMotionListener(adapter);
-        nameLabel.addMouseListener(adapter);
-        nameLabel.addMouseMotionListener(adapter);
+        this.icon = icon;
     }
 
     private static String stripAppSuffix(String s) {
@@ -82,24 +62,63 @@ public class AppComponent extends JPanel
     }
 
     public String getAppPath()     { return appPath; }
+    public String getCanonicalPath() { return canonicalPath; }
     public String getAppName()     { return appName; }
     public String getDisplayName() { return displayName; }
 
+    /** Update the label after the bundle was renamed (CFBundleDisplayName changed). */
+    public void setDisplayName(String displayName) {
+        if (displayName == null || displayName.isBlank() || displayName.equals(this.displayName)) return;
+        this.displayName = displayName;
+        repaint();
+    }
+
+    public ImageIcon getIcon() {
+        return icon;
+    }
+
+    /**
+     * Drop this component's reference to its icon so the bounded memory cache can reclaim it
+     * while the cell is off-screen. Re-acquire with {@link MacAppUtils#getCachedIcon(File)}.
+     */
+    public void releaseIcon() {
+        icon = null;
+    }
+
     /** Allows icon updates after construction. */
     public void setIcon(ImageIcon icon) {
-        iconLabel.setIcon(icon);
-        revalidate();
+        this.icon = icon;
         repaint();
     }
 
-    private void launchApp() {
+    /** The cell showing this app; set by {@link LaunchCell}. */
+    LaunchCell getCell() { return cell; }
+    void setCell(LaunchCell cell) { this.cell = cell; }
+
+    private void repaint() {
+        if (cell != null) cell.repaint();
+    }
+
+    /**
+     * Painted on a screen scaled above 1x: swap the 1x icon for a 1x+2x multi-resolution one once
+     * it has been built in the background. Asked once per icon, and only for apps actually painted,
+     * so on 1x screens, and for cells never scrolled into view, no 2x raster is ever created.
+     */
+    void upgradeIconForScreen(double scale) {
+        ImageIcon base = icon;
+        if (scale <= 1.0 || base == null || base == hiDpiRequestedFor) return;
+        if (base.getIconWidth() <= 0 || base.getImage() instanceof MultiResolutionImage) return;
+        hiDpiRequestedFor = base;
+
+        MacAppUtils.requestHiDpiIcon(new File(appPath), base, hi -> SwingUtilities.invokeLater(() -> {
+            // Only if nothing replaced the icon meanwhile (refresh, release, custom icon)
+            if (icon == base) setIcon(hi);
+        }));
+    }
+
+    void launchApp() {
         try { new ProcessBuilder("open", appPath).start(); }
         catch (IOException ex) { ex.printStackTrace(); }
     }
-    
-    private static String escapeHtml(String s) {
-        if (s == null) return "";
-        return s.replace("&","&amp;").replace("<","&lt;").replace(">","&gt;");
-    }
 
 }
@@ -0,0 +1,99 @@
+package com.commander4j.launchpad;
+
+/*******************************************************************************
+ * Title:        Commander4j
+ * Description:  What a bundle's icon depends on (Info.plist, Assets.car,
+ *               Resources), read with one attribute call per path
+ * Author:       Dave (with ChatGPT assistance)
+ * License:      GNU General Public License
+ *******************************************************************************/
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Objects;
+
+/**
+ * Modification time, size and file key of the three paths a bundle's icon is resolved from:
+ * Contents/Info.plist, Contents/Resources/Assets.car and Contents/Resources. Each path costs one
+ * bulk attribute read (a missing path returns null rather than throwing), so taking a fingerprint
+ * is three syscalls where the old freshness check made up to seven exists/getLastModifiedTime calls.
+ * <p>
+ * The fingerprint taken when an icon is cached is stored with it in the {@link IconAtlas}; the icon
+ * is fresh while the bundle's current fingerprint equals it. The file key (inode on macOS/Linux)
+ * catches a bundle replaced by a copy with preserved timestamps.
+ */
+record BundleFingerprint(long plistMtime, long plistSize,
+                         long assetsMtime, long assetsSize,
+                         long resourcesMtime, int fileKeys) {
+
+    /** No fingerprint recorded (an icon cached before fingerprints existed). */
+    static final BundleFingerprint NONE = new BundleFingerprint(-1, -1, -1, -1, -1, 0);
+
+    private static final int ABSENT_KEY = 0x5bd1e995;
+
+    static BundleFingerprint of(Path bundle) {
+        BasicFileAttributes plist = attributes(bundle.resolve("Contents/Info.plist"));
+        BasicFileAttributes assets = attributes(bundle.resolve("Contents/Resources/Assets.car"));
+        BasicFileAttributes resources = attributes(bundle.resolve("Contents/Resources"));
+        int keys = 31 * (31 * keyHash(plist) + keyHash(assets)) + keyHash(resources);
+        return new BundleFingerprint(mtime(plist), size(plist), mtime(assets), size(assets), mtime(resources), keys);
+    }
+
+    boolean isNone() {
+        return equals(NONE);
+    }
+
+    /** Newest modification time of the three paths, -1 if none exists. */
+    long newestMtime() {
+        return Math.max(plistMtime, Math.max(assetsMtime, resourcesMtime));
+    }
+
+    /** The whole fingerprint folded into one value (for tables that only compare). */
+    long hash() {
+        long h = 17;
+        h = 31 * h + plistMtime;
+        h = 31 * h + plistSize;
+        h = 31 * h + assetsMtime;
+        h = 31 * h + assetsSize;
+        h = 31 * h + resourcesMtime;
+        return 31 * h + fileKeys;
+    }
+
+    void write(DataOutput out) throws IOException {
+        out.writeLong(plistMtime);
+        out.writeLong(plistSize);
+        out.writeLong(assetsMtime);
+        out.writeLong(assetsSize);
+        out.writeLong(resourcesMtime);
+        out.writeInt(fileKeys);
+    }
+
+    static BundleFingerprint read(DataInput in) throws IOException {
+        return new BundleFingerprint(in.readLong(), in.readLong(), in.readLong(), in.readLong(),
+                                     in.readLong(), in.readInt());
+    }
+
+    /** One stat; null if the path does not exist (without the cost of a NoSuchFileException). */
+    private static BasicFileAttributes attributes(Path p) {
+        try {
+            return p.getFileSystem().provider().readAttributesIfExists(p, BasicFileAttributes.class);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private static long mtime(BasicFileAttributes a) {
+        return (a != null) ? a.lastModifiedTime().toMillis() : -1;
+    }
+
+    private static long size(BasicFileAttributes a) {
+        return (a != null) ? a.size() : -1;
+    }
+
+    private static int keyHash(BasicFileAttributes a) {
+        return (a != null) ? Objects.hashCode(a.fileKey()) : ABSENT_KEY;
+    }
+}
@@ -0,0 +1,105 @@
+package com.commander4j.launchpad;
+
+/*******************************************************************************
+ * Title:        Commander4j
+ * Description:  Persisted per-bundle metadata used to paint the first frame
+ *               without touching the app bundles
+ * Author:       Dave (with ChatGPT assistance)
+ * License:      GNU General Public License
+ *******************************************************************************/
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Everything the startup path used to read from a bundle — display name, canonical path, icon
+ * cache key — remembered from the last run, keyed by the path stored in launchpad.xml. With it,
+ * loadState builds each cell from memory plus the icon atlas, with no stat, canonicalisation or
+ * Info.plist parse. The entries are checked against the file system in the background once the
+ * window is up (see {@link PersistenceHelper#validateIndex}); the Info.plist mtime tells whether
+ * an entry can be trusted without re-reading the plist.
+ * <p>
+ * Lives in launchpad.index beside launchpad.xml and is only rewritten when an entry actually changed.
+ */
+final class BundleIndex {
+
+    record Entry(String appPath, String canonicalPath, String displayName, String iconKey, long plistMtime) {}
+
+    private static final int MAGIC = 0x4C504958; // "LPIX"
+    private static final int VERSION = 1;
+
+    private final Path file;
+    private final Map<String, Entry> entries = new LinkedHashMap<>();
+    private boolean dirty;
+
+    BundleIndex(Path file) {
+        this.file = file;
+        load();
+    }
+
+    synchronized Entry get(String appPath) {
+        return entries.get(appPath);
+    }
+
+    synchronized void put(Entry e) {
+        if (!e.equals(entries.put(e.appPath(), e))) dirty = true;
+    }
+
+    /** Keep only the entries for these paths (the apps currently placed). */
+    synchronized void retain(Collection<String> appPaths) {
+        Set<String> keep = new HashSet<>(appPaths);
+        if (entries.keySet().retainAll(keep)) dirty = true;
+    }
+
+    /* ===================== Persistence ===================== */
+
+    private void load() {
+        if (!Files.exists(file)) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return;
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                Entry e = new Entry(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF(), in.readLong());
+                entries.put(e.appPath(), e);
+            }
+        } catch (IOException e) {
+            entries.clear(); // truncated or foreign file: start from nothing, the slow path still works
+        }
+    }
+
+    synchronized void save() {
+        if (!dirty) return;
+        try {
+            LayoutStore.writeBytes(encode(), file);
+            dirty = false;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + entries.size() * 160);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(entries.size());
+        for (Entry e : entries.values()) {
+            out.writeUTF(e.appPath());
+            out.writeUTF(e.canonicalPath());
+            out.writeUTF(e.displayName());
+            out.writeUTF(e.iconKey());
+            out.writeLong(e.plistMtime());
+        }
+        return bytes.toByteArray();
+    }
+}
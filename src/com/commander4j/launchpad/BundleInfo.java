@@ -0,0 +1,182 @@
+package com.commander4j.launchpad;
+
+/*******************************************************************************
+ * Title:        Commander4j
+ * Description:  Info.plist metadata of an app bundle, parsed once and cached
+ * Author:       Dave (with ChatGPT assistance)
+ * License:      GNU General Public License
+ *******************************************************************************/
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.dd.plist.NSArray;
+import com.dd.plist.NSDictionary;
+import com.dd.plist.NSObject;
+import com.dd.plist.PropertyListParser;
+
+/**
+ * The Info.plist keys LaunchPad uses. Filtering, display names, identity keys and icon resolution
+ * all read them from here, so a bundle's plist is parsed once rather than once per use. Entries are
+ * cached per bundle and stay valid while the plist's modification time and size are unchanged; a
+ * cache hit costs one stat.
+ * <p>
+ * For iOS wrapper bundles (no Contents/Info.plist) the inner Wrapper/&lt;Name&gt;.app/Info.plist is
+ * read instead and {@link #iosWrapper()} is true.
+ */
+record BundleInfo(
+        String displayName,      // CFBundleDisplayName
+        String bundleName,       // CFBundleName
+        String identifier,       // CFBundleIdentifier
+        String version,          // CFBundleVersion
+        String shortVersion,     // CFBundleShortVersionString
+        String iconFile,         // CFBundleIconFile
+        String iconName,         // CFBundleIconName
+        List<String> iosIconFiles, // CFBundleIcons(~ipad) / CFBundlePrimaryIcon / CFBundleIconFiles
+        String packageType,      // CFBundlePackageType
+        boolean uiElement,       // LSUIElement
+        boolean backgroundOnly,  // LSBackgroundOnly
+        boolean iosWrapper) {
+
+    private record Memo(Path plist, long mtime, long size, BundleInfo info) {}
+    private static final Map<Path, Memo> CACHE = new ConcurrentHashMap<>();
+
+    /** Metadata for {@code bundle}, or null if it has no readable Info.plist. */
+    static BundleInfo of(Path bundle) {
+        Path key = bundle.toAbsolutePath().normalize();
+
+        Memo memo = CACHE.get(key);
+        if (memo != null) {
+            BasicFileAttributes a = stat(memo.plist());
+            if (a != null && a.lastModifiedTime().toMillis() == memo.mtime() && a.size() == memo.size()) {
+                return memo.info();
+            }
+        }
+
+        boolean ios = false;
+        Path plist = key.resolve("Contents/Info.plist");
+        BasicFileAttributes a = stat(plist);
+        if (a == null) {
+            plist = iosInnerPlist(key);
+            a = (plist != null) ? stat(plist) : null;
+            ios = true;
+        }
+        if (a == null) {
+            CACHE.remove(key);
+            return null;
+        }
+
+        BundleInfo info = parse(plist, ios);
+        if (info == null) {
+            CACHE.remove(key);
+            return null;
+        }
+        CACHE.put(key, new Memo(plist, a.lastModifiedTime().toMillis(), a.size(), info));
+        return info;
+    }
+
+    /**
+     * Modification time of the bundle's Info.plist (or the iOS wrapper's inner one), -1 if there is
+     * none. A stat only: nothing is parsed, so callers can check a remembered value cheaply.
+     */
+    static long plistMtime(Path bundle) {
+        Path key = bundle.toAbsolutePath().normalize();
+        Memo memo = CACHE.get(key);
+        BasicFileAttributes a = (memo != null) ? stat(memo.plist()) : null;
+        if (a == null) a = stat(key.resolve("Contents/Info.plist"));
+        if (a == null) {
+            Path inner = iosInnerPlist(key);
+            a = (inner != null) ? stat(inner) : null;
+        }
+        return (a != null) ? a.lastModifiedTime().toMillis() : -1;
+    }
+
+    /** CFBundleDisplayName, else CFBundleName, else {@code fallback}. */
+    String nameOr(String fallback) {
+        if (displayName != null) return displayName;
+        if (bundleName != null) return bundleName;
+        return fallback;
+    }
+
+    /** CFBundleVersion, else CFBundleShortVersionString, else "". */
+    String anyVersion() {
+        if (version != null && !version.isBlank()) return version;
+        return (shortVersion != null && !shortVersion.isBlank()) ? shortVersion : "";
+    }
+
+    /* ===================== Parsing ===================== */
+
+    private static BundleInfo parse(Path plist, boolean ios) {
+        try {
+            NSDictionary root = (NSDictionary) PropertyListParser.parse(plist.toFile());
+            return new BundleInfo(
+                str(root, "CFBundleDisplayName"),
+                str(root, "CFBundleName"),
+                str(root, "CFBundleIdentifier"),
+                str(root, "CFBundleVersion"),
+                str(root, "CFBundleShortVersionString"),
+                str(root, "CFBundleIconFile"),
+                str(root, "CFBundleIconName"),
+                iosIconFiles(root),
+                str(root, "CFBundlePackageType"),
+                bool(root, "LSUIElement"),
+                bool(root, "LSBackgroundOnly"),
+                ios);
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    private static List<String> iosIconFiles(NSDictionary root) {
+        List<String> out = new ArrayList<>();
+        try {
+            NSDictionary icons = (NSDictionary) root.objectForKey("CFBundleIcons");
+            if (icons == null) icons = (NSDictionary) root.objectForKey("CFBundleIcons~ipad");
+            if (icons == null) return List.of();
+
+            NSDictionary primary = (NSDictionary) icons.objectForKey("CFBundlePrimaryIcon");
+            if (primary == null) return List.of();
+
+            if (primary.objectForKey("CFBundleIconFiles") instanceof NSArray arr) {
+                for (NSObject o : arr.getArray()) out.add(o.toString());
+            }
+        } catch (ClassCastException ignore) {}
+        return List.copyOf(out);
+    }
+
+    private static String str(NSDictionary d, String k) {
+        return d.containsKey(k) ? String.valueOf(d.objectForKey(k)) : null;
+    }
+
+    private static boolean bool(NSDictionary d, String k) {
+        if (!d.containsKey(k)) return false;
+        String v = String.valueOf(d.objectForKey(k)).trim();
+        return "1".equals(v) || "true".equalsIgnoreCase(v);
+    }
+
+    private static BasicFileAttributes stat(Path p) {
+        try {
+            BasicFileAttributes a = Files.readAttributes(p, BasicFileAttributes.class);
+            return a.isRegularFile() ? a : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /** Info.plist of the inner Wrapper/&lt;Name&gt;.app of an iOS wrapper bundle, or null. */
+    private static Path iosInnerPlist(Path bundle) {
+        try (var s = Files.list(bundle.resolve("Wrapper"))) {
+            Path inner = s.filter(p -> p.getFileName().toString().endsWith(".app")).findFirst().orElse(null);
+            if (inner == null) return null;
+            Path plist = inner.resolve("Info.plist");
+            return Files.exists(plist) ? plist : null;
+        } catch (Exception e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,280 @@
+package com.commander4j.launchpad;
+
+/*******************************************************************************
+ * Title:        Commander4j
+ * Description:  File system watcher on the placed app bundles (updates, removals
+ *               and moves while LaunchPad is running)
+ * Author:       Dave (with ChatGPT assistance)
+ * License:      GNU General Public License
+ *******************************************************************************/
+
+import static java.nio.file.StandardWatchEventKinds.ENTRY_CREATE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_DELETE;
+import static java.nio.file.StandardWatchEventKinds.ENTRY_MODIFY;
+import static java.nio.file.StandardWatchEventKinds.OVERFLOW;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Watches the placed bundles so a long-running session notices app updates, removals and moves
+ * without a restart. Two kinds of directory are registered:
+ * <ul>
+ *   <li>the parent directory of every placed bundle (/Applications, ~/Applications, ...): a bundle
+ *       replaced, deleted or renamed there shows up as an event on its name;</li>
+ *   <li>each bundle's Contents directory: an in-place update rewrites Info.plist there.</li>
+ * </ul>
+ * Events are collected per bundle and delivered once the directories have been quiet for
+ * {@code quietMs} (installers write in bursts), at the latest {@code maxDelayMs} after the first
+ * one. Each delivery is one {@link Changes}: bundles still present (their icon and name may be
+ * stale), bundles gone, and bundles that were gone but reappeared under another name in a watched
+ * directory - a move. A move is recognised by the file key (inode) remembered when the bundle was
+ * first watched, which a rename keeps; across volumes, by the same folder name.
+ * <p>
+ * The listener runs on the watcher thread; it must hand Swing work to the EDT itself. Nothing here
+ * is macOS specific, so it runs the same on Linux against temporary directories.
+ */
+final class BundleWatcher implements Closeable {
+
+    /** One debounced delivery. Paths are absolute and normalized. */
+    record Changes(Set<Path> changed, Set<Path> removed, Map<Path, Path> moved) {
+        boolean isEmpty() {
+            return changed.isEmpty() && removed.isEmpty() && moved.isEmpty();
+        }
+    }
+
+    interface Listener {
+        void bundlesChanged(Changes changes);
+    }
+
+    private static volatile BundleWatcher active;
+
+    private final WatchService service;
+    private final Listener listener;
+    private final long quietMs;
+    private final long maxDelayMs;
+
+    private final Map<WatchKey, Path> keys = new HashMap<>();      // registered directory per key
+    private final Map<Path, WatchKey> byDir = new HashMap<>();
+    private final Map<Path, Object> bundles = new HashMap<>();     // the placed bundles -> file key
+
+    // Collected since the last delivery (watcher thread only)
+    private final Set<Path> touched = new LinkedHashSet<>();
+    private final Set<Path> appeared = new LinkedHashSet<>();      // unknown *.app created in a watched parent
+    private long firstEventAt, lastEventAt;
+
+    private Thread thread;
+
+    BundleWatcher(Listener listener, long quietMs, long maxDelayMs) throws IOException {
+        this.service = FileSystems.getDefault().newWatchService();
+        this.listener = Objects.requireNonNull(listener);
+        this.quietMs = quietMs;
+        this.maxDelayMs = maxDelayMs;
+    }
+
+    /** Start delivering on a daemon thread; from now on {@link #placed} reaches this watcher. */
+    synchronized void start() {
+        if (thread != null) return;
+        thread = new Thread(this::run, "lp-bundle-watch");
+        thread.setDaemon(true);
+        thread.start();
+        active = this;
+    }
+
+    @Override
+    public void close() {
+        if (active == this) active = null;
+        try { service.close(); } catch (IOException ignore) {}
+        Thread t = thread;
+        if (t != null) t.interrupt();
+    }
+
+    /** A bundle was placed on the grid: watch it too (no-op while no watcher is running). */
+    static void placed(String appPath) {
+        BundleWatcher w = active;
+        if (w != null && appPath != null) w.watch(Path.of(appPath));
+    }
+
+    /** Watch exactly these bundles; directories no longer needed are cancelled. */
+    synchronized void sync(Collection<Path> placed) {
+        Map<Path, Object> previous = new HashMap<>(bundles);
+        bundles.clear();
+        Set<Path> dirs = new HashSet<>();
+        for (Path p : placed) {
+            Path b = p.toAbsolutePath().normalize();
+            bundles.put(b, previous.containsKey(b) ? previous.get(b) : fileKey(b));
+            if (b.getParent() != null) dirs.add(b.getParent());
+            dirs.add(b.resolve("Contents"));
+        }
+        for (Iterator<Map.Entry<Path, WatchKey>> it = byDir.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Path, WatchKey> e = it.next();
+            if (!dirs.contains(e.getKey())) {
+                e.getValue().cancel();
+                keys.remove(e.getValue());
+                it.remove();
+            }
+        }
+        for (Path dir : dirs) register(dir);
+    }
+
+    /** Add one bundle to the watched set. */
+    synchronized void watch(Path bundle) {
+        Path b = bundle.toAbsolutePath().normalize();
+        if (bundles.containsKey(b)) return;
+        bundles.put(b, fileKey(b));
+        if (b.getParent() != null) register(b.getParent());
+        register(b.resolve("Contents"));
+    }
+
+    /** Number of directories currently registered. */
+    synchronized int watchedDirectories() {
+        return byDir.size();
+    }
+
+    private static Object fileKey(Path p) {
+        try {
+            return Files.readAttributes(p, BasicFileAttributes.class).fileKey();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private void register(Path dir) {
+        WatchKey old = byDir.get(dir);
+        if (old != null && old.isValid()) return;
+        if (!Files.isDirectory(dir)) return;
+        try {
+            WatchKey key = dir.register(service, ENTRY_CREATE, ENTRY_DELETE, ENTRY_MODIFY);
+            keys.put(key, dir);
+            byDir.put(dir, key);
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /* ===================== Watcher thread ===================== */
+
+    private void run() {
+        try {
+            while (true) {
+                WatchKey key;
+                if (touched.isEmpty()) {
+                    key = service.take();
+                } else {
+                    long now = System.currentTimeMillis();
+                    long due = Math.min(lastEventAt + quietMs, firstEventAt + maxDelayMs);
+                    key = (due > now) ? service.poll(due - now, TimeUnit.MILLISECONDS) : null;
+                    if (key == null) {
+                        deliver();
+                        continue;
+                    }
+                }
+                collect(key);
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // closed
+        }
+    }
+
+    private void collect(WatchKey key) {
+        synchronized (this) {
+            Path dir = keys.get(key);
+            if (dir != null) {
+                for (WatchEvent<?> ev : key.pollEvents()) {
+                    if (ev.kind() == OVERFLOW) {
+                        // Lost events: everything that could live under this directory is suspect
+                        for (Path b : bundles.keySet()) {
+                            if (dir.equals(b.getParent()) || dir.equals(b.resolve("Contents"))) touched.add(b);
+                        }
+                        continue;
+                    }
+                    Path child = dir.resolve((Path) ev.context());
+                    if (bundles.containsKey(child)) {
+                        touched.add(child);                          // in a parent directory
+                    } else if (dir.getFileName() != null && dir.getFileName().toString().equals("Contents")
+                            && bundles.containsKey(dir.getParent())) {
+                        touched.add(dir.getParent());                // inside the bundle
+                    } else if (ev.kind() == ENTRY_CREATE && child.getFileName().toString().endsWith(".app")) {
+                        appeared.add(child);                         // possibly the target of a move
+                    }
+                }
+            }
+            if (!key.reset()) {
+                // The directory went away (bundle deleted or replaced); re-registered on delivery
+                keys.remove(key);
+                if (dir != null) byDir.remove(dir, key);
+            }
+        }
+        long now = System.currentTimeMillis();
+        if (!touched.isEmpty()) {
+            if (firstEventAt == 0) firstEventAt = now;
+            lastEventAt = now;
+        }
+    }
+
+    private void deliver() {
+        Set<Path> changed = new LinkedHashSet<>();
+        Set<Path> removed = new LinkedHashSet<>();
+        Map<Path, Path> moved = new LinkedHashMap<>();
+        synchronized (this) {
+            for (Path b : touched) {
+                if (Files.isDirectory(b)) {
+                    changed.add(b);
+                    bundles.put(b, fileKey(b));
+                    register(b.resolve("Contents"));  // a replaced bundle has a new Contents directory
+                } else {
+                    Path to = findMoveTarget(b);
+                    if (to != null) {
+                        moved.put(b, to);
+                        appeared.remove(to);
+                        bundles.remove(b);
+                        watch(to);
+                    } else {
+                        removed.add(b);
+                    }
+                }
+            }
+            touched.clear();
+            appeared.clear();
+            firstEventAt = lastEventAt = 0;
+        }
+        Changes changes = new Changes(changed, removed, moved);
+        if (changes.isEmpty()) return;
+        try {
+            listener.bundlesChanged(changes);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /** A bundle that appeared while {@code gone} disappeared and is the same one, or null. */
+    private Path findMoveTarget(Path gone) {
+        Object key = bundles.get(gone);
+        Path sameName = null;
+        for (Path candidate : appeared) {
+            if (!Files.isDirectory(candidate) || bundles.containsKey(candidate)) continue;
+            Object k = fileKey(candidate);
+            if (key != null && key.equals(k)) return candidate;
+            if (sameName == null && candidate.getFileName().equals(gone.getFileName())) sameName = candidate;
+        }
+        return sameName;
+    }
+}
@@ -0,0 +1,62 @@
+package com.commander4j.launchpad;
+
+/*******************************************************************************
+ * Title:        Commander4j
+ * Description:  ImageInputStream over a ByteBuffer (e.g. a slice of a mapped file)
+ * Author:       Dave (with ChatGPT assistance)
+ * License:      GNU General Public License
+ *******************************************************************************/
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import javax.imageio.stream.ImageInputStreamImpl;
+
+/**
+ * Lets ImageIO decode straight out of a memory-mapped region without copying it into a byte[]
+ * first. The buffer is read with absolute gets, so its position and limit are never changed.
+ */
+final class ByteBufferImageInputStream extends ImageInputStreamImpl {
+
+    private final ByteBuffer buf;
+
+    ByteBufferImageInputStream(ByteBuffer buf) {
+        this.buf = buf.slice();
+    }
+
+    @Override
+    public int read() throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        if (streamPos >= buf.limit()) return -1;
+        return buf.get((int) streamPos++) & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        checkClosed();
+        bitOffset = 0;
+        if (len == 0) return 0;
+        long left = buf.limit() - streamPos;
+        if (left <= 0) return -1;
+        int n = (int) Math.min(len, left);
+        buf.get((int) streamPos, b, off, n);
+        streamPos += n;
+        return n;
+    }
+
+    @Override
+    public long length() {
+        return buf.limit();
+    }
+
+    @Override
+    public boolean isCached() {
+        return true;
+    }
+
+    @Override
+    public boolean isCachedMemory() {
+        return true;
+    }
+}
@@ -6,7 +6,7 @@ import java.io.Serializable;
 public final class DragPayload implements Serializable {
     private static final long serialVersionUID = 1L;
     public final String appPath;
-    public final LaunchCell sourceCell;
+    public final transient LaunchCell sourceCell;
 
     public DragPayload(String appPath, LaunchCell sourceCell) {
         this.appPath = appPath;
@@ -0,0 +1,417 @@
+package com.commander4j.launchpad;
+
+/*******************************************************************************
+ * Title:        Commander4j
+ * Description:  Background import of every application found under a folder
+ * Author:       Dave (with ChatGPT assistance)
+ * License:      GNU General Public License
+ *******************************************************************************/
+
+import java.awt.Component;
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.Future;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import javax.swing.ImageIcon;
+import javax.swing.JOptionPane;
+import javax.swing.JTabbedPane;
+import javax.swing.ProgressMonitor;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.Timer;
+
+/**
+ * Imports the apps found under a folder without blocking the EDT. The work runs as a pipeline:
+ * <ol>
+ *   <li><b>walk</b> – roots and sub-directories are listed in parallel on a fork/join pool and the
+ *       results concatenated in walk order (pre-order, directory listing order);</li>
+ *   <li><b>filter</b> – the Info.plist checks, display name and cached-icon lookup run as an
+ *       ordered parallel stream on the same pool;</li>
+ *   <li><b>place</b> – on the EDT, duplicates are dropped and every remaining app is put into the
+ *       next empty cell straight away (cached icon if there is one, else a blank placeholder);</li>
+ *   <li><b>icons</b> – apps without a usable cached icon are resolved in small batches on a bounded
+ *       pool and their cells are filled in as each batch completes.</li>
+ * </ol>
+ * A {@link ProgressMonitor} shows progress and offers Cancel. Cancelling drops the apps whose icon
+ * was still outstanding and closes up the cells this import used, so the apps that stay keep walk
+ * order with no gaps between them; icon batches that finish after Cancel are dropped. Apps that
+ * were already on the tab are never touched.
+ */
+final class FolderImporter extends SwingWorker<Void, Void> {
+
+    private static final int ICON_BATCH_SIZE = 8;
+    private static final long ICON_BATCH_TIMEOUT_MS = 30_000;
+
+    /** One app that passed the filter, in walk order. */
+    private record Found(String canonicalPath, MacAppUtils.AppStub stub) {}
+
+    /** One app placed by this import, awaiting (or not) its icon. */
+    private record Placed(LaunchCell cell, AppComponent app, File bundle) {}
+
+    private final Component parent;
+    private final JTabbedPane tabs;
+    private final LaunchTabPanel panel;
+    private final List<Path> roots;
+    private final int maxDepth;
+
+    private final ProgressMonitor monitor;
+    private final Timer cancelPoll;
+    private volatile String note = "Scanning…";
+
+    // EDT-confined
+    private final List<Placed> placed = new ArrayList<>();
+    private final Set<AppComponent> outstanding = Collections.newSetFromMap(new IdentityHashMap<>());
+    private int found = -1;
+    private int skippedDuplicates;
+
+    /**
+     * @param maxDepth 1 to look only at the folder's direct children (skips helpers and updaters
+     *                 nested inside bundles), larger to descend further
+     */
+    FolderImporter(Component parent, JTabbedPane tabs, LaunchTabPanel panel, List<Path> roots, int maxDepth) {
+        this.parent = parent;
+        this.tabs = tabs;
+        this.panel = panel;
+        this.roots = List.copyOf(roots);
+        this.maxDepth = maxDepth;
+
+        monitor = new ProgressMonitor(parent, "Importing applications", note, 0, 100);
+        monitor.setMillisToDecideToPopup(200);
+        monitor.setMillisToPopup(400);
+        cancelPoll = new Timer(200, _ -> { if (monitor.isCanceled()) cancel(true); });
+
+        addPropertyChangeListener(e -> {
+            if (!"progress".equals(e.getPropertyName()) || isDone()) return;
+            monitor.setNote(note);
+            monitor.setProgress((Integer) e.getNewValue());
+        });
+    }
+
+    /** The chosen folder, plus the system app folders that Finder merges into /Applications. */
+    static List<Path> rootsFor(Path chosen) {
+        List<Path> roots = new ArrayList<>();
+        roots.add(chosen);
+        try {
+            if ("/Applications".equals(chosen.toRealPath().toString())) {
+                Path sysApps = Paths.get("/System/Applications");
+                if (Files.isDirectory(sysApps)) roots.add(sysApps);
+                Path sysUtils = Paths.get("/System/Applications/Utilities");
+                if (Files.isDirectory(sysUtils)) roots.add(sysUtils);
+            }
+        } catch (Exception ignore) {}
+        return roots;
+    }
+
+    /** Start the import; progress and Cancel are shown once it runs for more than a moment. */
+    void start() {
+        cancelPoll.start();
+        execute();
+    }
+
+    /* ===================== Background pipeline ===================== */
+
+    @Override
+    protected Void doInBackground() throws Exception {
+        int threads = Math.max(2, Math.min(8, Runtime.getRuntime().availableProcessors()));
+        ForkJoinPool fj = new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread th = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            th.setName("lp-import-" + th.getPoolIndex());
+            th.setDaemon(true);
+            return th;
+        }, null, false);
+        try {
+            // 1) walk
+            report("Scanning…", 0);
+            Set<Object> visited = ConcurrentHashMap.newKeySet();
+            List<Path> candidates = fj.submit(() -> {
+                List<Walk> walks = new ArrayList<>();
+                for (Path root : roots) walks.add(new Walk(root, 0, visited));
+                List<Path> all = new ArrayList<>();
+                for (Walk w : walks) w.fork();
+                for (Walk w : walks) all.addAll(w.join());
+                return all;
+            }).get();
+            if (isCancelled()) return null;
+
+            // 2) filter (ordered, so the result keeps walk order)
+            AtomicInteger checked = new AtomicInteger();
+            int total = candidates.size();
+            List<Found> survivors = fj.submit(() -> candidates.parallelStream()
+                    .map(p -> {
+                        try {
+                            return examine(p);
+                        } finally {
+                            int n = checked.incrementAndGet();
+                            report("Checking " + n + " of " + total, 5 + 30 * n / Math.max(1, total));
+                        }
+                    })
+                    .filter(Objects::nonNull)
+                    .toList()).get();
+            if (isCancelled()) return null;
+
+            // Same bundle reached through two roots: keep the first
+            Map<String, Found> unique = new LinkedHashMap<>();
+            for (Found f : survivors) unique.putIfAbsent(f.canonicalPath(), f);
+
+            // 3) place placeholders on the EDT, in walk order
+            List<Placed> needIcons = new ArrayList<>();
+            SwingUtilities.invokeAndWait(() -> needIcons.addAll(place(List.copyOf(unique.values()))));
+            if (isCancelled() || needIcons.isEmpty()) return null;
+
+            // 4) icons, batch by batch on a bounded pool
+            resolveIcons(needIcons);
+        } finally {
+            fj.shutdownNow();
+        }
+        return null;
+    }
+
+    /** Pre-order listing of one directory; sub-directories are listed by forked tasks. */
+    private final class Walk extends RecursiveTask<List<Path>> {
+        private static final long serialVersionUID = 1L;
+
+        private final transient Path dir;
+        private final int depth;
+        private final transient Set<Object> visited;
+
+        Walk(Path dir, int depth, Set<Object> visited) {
+            this.dir = dir;
+            this.depth = depth;
+            this.visited = visited;
+        }
+
+        @Override
+        protected List<Path> compute() {
+            List<Path> out = new ArrayList<>();
+            if (FolderImporter.this.isCancelled()) return out;  // not the task's own flag
+            if (depth == 0 && isApp(dir)) out.add(dir);
+            if (depth >= maxDepth || !enterOnce(dir)) return out;
+
+            List<Path> entries;
+            try (Stream<Path> s = Files.list(dir)) {
+                entries = s.toList();
+            } catch (Exception e) {
+                return out;  // unreadable directory: same as the old walk, skip it
+            }
+
+            // Fork the sub-directories, then stitch everything together in listing order
+            List<Object> parts = new ArrayList<>(entries.size());
+            for (Path p : entries) {
+                if (isApp(p)) parts.add(p);
+                if (depth + 1 < maxDepth && Files.isDirectory(p)) {
+                    Walk sub = new Walk(p, depth + 1, visited);
+                    sub.fork();
+                    parts.add(sub);
+                }
+            }
+            for (Object part : parts) {
+                if (part instanceof Path p) out.add(p);
+                else out.addAll(((Walk) part).join());
+            }
+            return out;
+        }
+
+        /** Symlinks are followed, so guard against directory cycles. */
+        private boolean enterOnce(Path d) {
+            try {
+                Object key = Files.readAttributes(d, BasicFileAttributes.class).fileKey();
+                return visited.add((key != null) ? key : d.toRealPath());
+            } catch (Exception e) {
+                return false;
+            }
+        }
+    }
+
+    private static boolean isApp(Path p) {
+        Path name = p.getFileName();
+        return name != null && name.toString().endsWith(".app");
+    }
+
+    /** Filter stage for one candidate: null unless it is a user-facing app worth importing. */
+    private Found examine(Path p) {
+        if (isCancelled()) return null;
+        File real = LaunchPadUtils.resolveRealAppBundle(p.toFile());
+        if (real == null) return null;
+
+        String path = real.getAbsolutePath();
+        if (path.contains("/Contents/Library/LoginItems/") || path.contains("/Contents/Helpers/")) return null;
+        if (real.getName().toLowerCase(Locale.ROOT).contains("uninstall")) return null;
+        if (!MacAppUtils.isLikelyUserFacingApp(real)) return null;
+
+        MacAppUtils.AppStub stub = MacAppUtils.prepareAppStub(real, true);
+        return (stub != null) ? new Found(LaunchPadUtils.canonicalPath(real), stub) : null;
+    }
+
+    /** EDT: drop apps already on any tab, fill empty cells in order, return the ones still needing an icon. */
+    private List<Placed> place(List<Found> apps) {
+        found = apps.size();
+        List<Placed> needIcons = new ArrayList<>();
+        if (isCancelled()) return needIcons;  // done() already ran
+
+        List<Found> fresh = new ArrayList<>();
+        for (Found f : apps) {
+            if (LaunchPadUtils.findApp(tabs, f.canonicalPath()) != null) skippedDuplicates++;
+            else fresh.add(f);
+        }
+        if (fresh.isEmpty()) return needIcons;
+
+        panel.ensureCapacityFor(fresh.size());
+        List<LaunchCell> empties = new ArrayList<>();
+        for (LaunchCell cell : panel.getCells()) {
+            if (cell.isEmpty()) empties.add(cell);
+        }
+
+        for (int i = 0; i < fresh.size() && i < empties.size(); i++) {
+            MacAppUtils.AppStub stub = fresh.get(i).stub();
+            AppComponent app = stub.toComponent();
+            LaunchCell cell = empties.get(i);
+            cell.setApp(app);
+
+            Placed p = new Placed(cell, app, stub.bundle());
+            placed.add(p);
+            if (stub.needsIcon()) {
+                outstanding.add(app);
+                needIcons.add(p);
+            }
+        }
+        report("Resolving icons…", 40);
+        return needIcons;
+    }
+
+    private void resolveIcons(List<Placed> needIcons) throws InterruptedException {
+        int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread th = new Thread(r, "lp-import-icons");
+            th.setDaemon(true);
+            return th;
+        });
+        AtomicInteger resolved = new AtomicInteger();
+        int total = needIcons.size();
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int from = 0; from < total; from += ICON_BATCH_SIZE) {
+                List<Placed> batch = needIcons.subList(from, Math.min(total, from + ICON_BATCH_SIZE));
+                futures.add(pool.submit(() -> {
+                    if (isCancelled()) return;
+                    List<File> bundles = batch.stream().map(Placed::bundle).toList();
+                    // Placeholders have no icon to fall back on: never defer for a busy worker pool,
+                    // nothing would come back for them later
+                    MacAppUtils.IconBatchResult result =
+                        MacAppUtils.refreshIconsBatch(bundles, ICON_BATCH_TIMEOUT_MS, false);
+                    result.failures().forEach((bundle, why) ->
+                        System.err.println("Icon import failed for " + bundle + ": " + why));
+                    Map<File, String> cached = new HashMap<>();
+                    for (File bundle : result.icons().keySet()) {
+                        cached.put(bundle, MacAppUtils.getCachedIconPathForBundle(bundle));
+                    }
+                    int n = resolved.addAndGet(batch.size());
+                    SwingUtilities.invokeLater(() -> {
+                        for (Placed p : batch) {
+                            // Not outstanding any more: Cancel rolled it back, so it is off the grid
+                            if (!outstanding.remove(p.app())) continue;
+                            ImageIcon icon = result.icons().get(p.bundle());
+                            if (icon != null) {
+                                p.app().setIcon(icon);
+                                p.app().setCustomIconPath(cached.get(p.bundle()));
+                            }
+                        }
+                    });
+                    report("Resolving icons " + n + " of " + total, 40 + 59 * n / total);
+                }));
+            }
+            for (Future<?> f : futures) {
+                try { f.get(); } catch (ExecutionException e) { e.getCause().printStackTrace(); }
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void report(String text, int percent) {
+        note = text;
+        setProgress(Math.max(0, Math.min(99, percent)));
+    }
+
+    /* ===================== Completion (EDT) ===================== */
+
+    @Override
+    protected void done() {
+        cancelPoll.stop();
+        monitor.close();
+
+        if (isCancelled()) {
+            rollBackOutstanding();
+            return;
+        }
+        try {
+            get();
+        } catch (CancellationException | InterruptedException ignore) {
+            return;
+        } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+        }
+
+        if (found == 0) {
+            JOptionPane.showMessageDialog(parent, "No applications (.app) found in that folder.",
+                "Nothing Found", JOptionPane.INFORMATION_MESSAGE);
+        } else if (skippedDuplicates > 0) {
+            JOptionPane.showMessageDialog(
+                parent,
+                "One or more apps were not imported as they already exist in LaunchPad.",
+                "Some Skipped",
+                JOptionPane.INFORMATION_MESSAGE
+            );
+        } else if (placed.isEmpty()) {
+            JOptionPane.showMessageDialog(
+                parent,
+                "No applications were imported.",
+                "Nothing Imported",
+                JOptionPane.INFORMATION_MESSAGE
+            );
+        }
+    }
+
+    /**
+     * Remove the apps still waiting for an icon and slide the kept ones back into this import's
+     * cells in their original order. A cell the user has since changed is left alone.
+     */
+    private void rollBackOutstanding() {
+        List<LaunchCell> slots = new ArrayList<>();
+        List<AppComponent> kept = new ArrayList<>();
+        for (Placed p : placed) {
+            if (p.cell().getApp() != p.app()) continue;
+            slots.add(p.cell());
+            if (outstanding.contains(p.app())) {
+                p.cell().clear();
+            } else {
+                kept.add(p.cell().detachAppForMove());
+            }
+        }
+        for (int i = 0; i < kept.size(); i++) slots.get(i).setApp(kept.get(i));
+        placed.clear();
+        outstanding.clear();
+    }
+}
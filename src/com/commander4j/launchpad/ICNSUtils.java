@@ -5,19 +5,19 @@ import javax.imageio.ImageReader;
 import javax.imageio.stream.ImageInputStream;
 import java.awt.image.BufferedImage;
 import java.io.*;
-import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 public class ICNSUtils {
 
+    private static final long QUICKLOOK_TIMEOUT_MS = 5000;
+
     public static BufferedImage loadBestImage(File icnsFile, int targetSize) throws IOException {
-        // 1) Try ImageIO ICNS plugin (TwelveMonkeys)
-        BufferedImage img = tryImageIOIcns(icnsFile, targetSize);
+        // 1) Pure-Java decoder: reads block headers only, decodes just the best-sized block
+        BufferedImage img = IcnsDecoder.decodeBest(icnsFile, targetSize);
         if (img != null) return img;
 
-        // 2) Fallback: manual block scan (lets ImageIO decode PNG/JP2 blocks)
-        List<BufferedImage> all = extractAllImages(icnsFile);
-        img = pickBestBySize(all, targetSize);
+        // 2) ImageIO ICNS plugin (TwelveMonkeys) for anything the decoder did not understand
+        img = tryImageIOIcns(icnsFile, targetSize);
         if (img != null) return img;
 
         // 3) macOS QuickLook fallback (no extra jars, but requires macOS tools)
@@ -25,7 +25,7 @@ public class ICNSUtils {
         return img; // may be null; caller will handle
     }
 
-    /* ---------- 1) ImageIO ICNS plugin path ---------- */
+    /* ---------- 2) ImageIO ICNS plugin path ---------- */
 
     private static BufferedImage tryImageIOIcns(File icnsFile, int targetSize) {
         try (ImageInputStream iis = ImageIO.createImageInputStream(icnsFile)) {
@@ -47,32 +47,28 @@ public class ICNSUtils {
                 int num = chosen.getNumImages(true);
                 if (num <= 0) num = 1; // some readers report 0 but allow index 0
 
-                // Collect all subimages with sizes
-                List<IndexedImage> imgs = new ArrayList<>();
+                // Pick the index from header sizes, then decode only that sub-image
+                int bestGE = -1, bestLT = -1, sizeGE = Integer.MAX_VALUE, sizeLT = -1;
                 for (int i = 0; i < num; i++) {
-                    int w, h;
+                    int s;
                     try {
-                        w = chosen.getWidth(i);
-                        h = chosen.getHeight(i);
+                        s = Math.max(chosen.getWidth(i), chosen.getHeight(i));
                     } catch (Exception ignore) {
-                        // if metadata lookup fails, try read and measure
-                        BufferedImage bi = chosen.read(i);
-                        if (bi != null) imgs.add(new IndexedImage(i, bi.getWidth(), bi.getHeight(), bi));
                         continue;
                     }
-                    BufferedImage bi = chosen.read(i);
-                    if (bi != null) imgs.add(new IndexedImage(i, w, h, bi));
-                }
-                chosen.dispose();
-
-                if (!imgs.isEmpty()) {
-                    return pickBestBySizeIndexed(imgs, targetSize).image;
+                    if (s >= targetSize) {
+                        if (s < sizeGE) { sizeGE = s; bestGE = i; }
+                    } else if (s > sizeLT) {
+                        sizeLT = s; bestLT = i;
+                    }
                 }
+                int best = (bestGE >= 0) ? bestGE : (bestLT >= 0) ? bestLT : 0;
+                return chosen.read(best);
             } finally {
                 try { chosen.dispose(); } catch (Exception ignore) {}
             }
         } catch (Exception ignore) {
-            // No plugin or read failed; fall through to manual
+            // No plugin or read failed; fall through to QuickLook
         }
         return null;
     }
@@ -81,75 +77,6 @@ public class ICNSUtils {
         try { return r.getFormatName(); } catch (Exception e) { return ""; }
     }
 
-    private static class IndexedImage {
-        final int w; final int h; final BufferedImage image;
-        IndexedImage(int index, int w, int h, BufferedImage image) {
-             this.w = w; this.h = h; this.image = image;
-        }
-    }
-
-    private static IndexedImage pickBestBySizeIndexed(List<IndexedImage> list, int target) {
-        IndexedImage bestGE = null, bestLT = null;
-        for (IndexedImage ii : list) {
-            int s = Math.max(ii.w, ii.h);
-            if (s >= target) {
-                if (bestGE == null || s < Math.max(bestGE.w, bestGE.h)) bestGE = ii;
-            } else {
-                if (bestLT == null || s > Math.max(bestLT.w, bestLT.h)) bestLT = ii;
-            }
-        }
-        return (bestGE != null) ? bestGE : bestLT;
-    }
-
-    private static BufferedImage pickBestBySize(List<BufferedImage> list, int target) {
-        BufferedImage bestGE = null, bestLT = null;
-        for (BufferedImage bi : list) {
-            int s = Math.max(bi.getWidth(), bi.getHeight());
-            if (s >= target) {
-                if (bestGE == null || s < Math.max(bestGE.getWidth(), bestGE.getHeight())) bestGE = bi;
-            } else {
-                if (bestLT == null || s > Math.max(bestLT.getWidth(), bestLT.getHeight())) bestLT = bi;
-            }
-        }
-        return (bestGE != null) ? bestGE : bestLT;
-    }
-
-    /* ---------- 2) Manual block scan path (PNG/JP2 via ImageIO) ---------- */
-
-    private static List<BufferedImage> extractAllImages(File icnsFile) throws IOException {
-        List<BufferedImage> result = new ArrayList<>();
-        try (FileInputStream fis = new FileInputStream(icnsFile)) {
-            byte[] all = fis.readAllBytes();
-            if (all.length < 8) return result;
-
-            String sig = new String(all, 0, 4, StandardCharsets.US_ASCII);
-            if (!"icns".equals(sig)) return result;
-
-            int fileLen = beInt(all, 4);
-            int offset = 8;
-            while (offset + 8 <= all.length && offset + 8 <= fileLen) {
-                int length = beInt(all, offset + 4);
-                if (length < 8 || offset + length > all.length) break;
-
-                int dataOffset = offset + 8;
-                int dataLen = length - 8;
-
-                try (ByteArrayInputStream bin = new ByteArrayInputStream(all, dataOffset, dataLen)) {
-                    BufferedImage img = ImageIO.read(bin); // will use PNG, JP2, etc. if plugins present
-                    if (img != null) result.add(img);
-                } catch (Throwable ignore) {}
-
-                offset += length;
-            }
-        }
-        return result;
-    }
-
-    private static int beInt(byte[] b, int off) {
-        return ((b[off] & 0xFF) << 24) | ((b[off + 1] & 0xFF) << 16)
-             | ((b[off + 2] & 0xFF) << 8)  |  (b[off + 3] & 0xFF);
-    }
-
     /* ---------- 3) macOS QuickLook fallback ---------- */
 
     private static BufferedImage tryQuickLook(File icnsFile, int targetSize) {
@@ -163,12 +90,10 @@ public class ICNSUtils {
         try {
             // Ask QuickLook to render a thumbnail PNG of the ICNS
             // -s <size> is the max dimension; QuickLook keeps aspect ratio
-            new ProcessBuilder("qlmanage", "-t", "-s", String.valueOf(targetSize),
+            ProcessRunner.Result r = ProcessRunner.run(List.of("qlmanage", "-t", "-s", String.valueOf(targetSize),
                                "-o", tmpDir.getAbsolutePath(),
-                               icnsFile.getAbsolutePath())
-                .redirectErrorStream(true)
-                .start()
-                .waitFor();
+                               icnsFile.getAbsolutePath()), QUICKLOOK_TIMEOUT_MS);
+            if (r.timedOut()) return null;
 
             if (outPng.exists()) {
                 return ImageIO.read(outPng);
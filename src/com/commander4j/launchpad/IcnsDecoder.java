@@ -0,0 +1,241 @@
+package com.commander4j.launchpad;
+
+/*******************************************************************************
+ * Title:        Commander4j
+ * Description:  Pure-Java ICNS decoder that reads only the block headers and
+ *               decodes the single block closest to the requested size
+ * Author:       Dave (with ChatGPT assistance)
+ * License:      GNU General Public License
+ *******************************************************************************/
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.imageio.ImageIO;
+
+/**
+ * An .icns file is a sequence of {@code [OSType][u32 length][data]} blocks. The file is
+ * memory-mapped and only the 8-byte headers are touched to build the table of contents; the
+ * OSType tells us the pixel size, so the best block can be chosen before anything is decoded.
+ * Only that block is decoded, straight from the mapping with no byte[] copy of the file (the
+ * next one is tried only if it fails, e.g. JPEG 2000 with no ImageIO plugin).
+ * <p>
+ * Supported payloads: PNG / JPEG 2000 (via ImageIO), "ARGB" RLE (ic04/ic05/icsb),
+ * and legacy 24-bit RLE (is32/il32/ih32/it32) combined with their 8-bit masks (s8mk/l8mk/h8mk/t8mk).
+ * Nothing here depends on macOS.
+ */
+final class IcnsDecoder {
+
+    private IcnsDecoder() {}
+
+    private static final int HEADER = 8;
+
+    /** One entry of the table of contents. {@code offset} points at the block data (after its header). */
+    record Block(String type, int size, long offset, int length) {}
+
+    /* OSType -> pixel size (the @2x variants report their real pixel size). */
+    private static final Map<String, Integer> SIZES = new HashMap<>();
+    /* legacy RGB type -> matching mask type */
+    private static final Map<String, String> MASKS = new HashMap<>();
+    static {
+        SIZES.put("icp4", 16);   SIZES.put("icp5", 32);   SIZES.put("icp6", 64);
+        SIZES.put("ic07", 128);  SIZES.put("ic08", 256);  SIZES.put("ic09", 512);
+        SIZES.put("ic10", 1024); SIZES.put("ic11", 32);   SIZES.put("ic12", 64);
+        SIZES.put("ic13", 256);  SIZES.put("ic14", 512);  SIZES.put("ic04", 16);
+        SIZES.put("ic05", 32);   SIZES.put("icsb", 18);   SIZES.put("icsB", 36);
+        SIZES.put("sb24", 24);   SIZES.put("SB24", 48);
+        SIZES.put("is32", 16);   SIZES.put("il32", 32);   SIZES.put("ih32", 48);  SIZES.put("it32", 128);
+
+        MASKS.put("is32", "s8mk"); MASKS.put("il32", "l8mk"); MASKS.put("ih32", "h8mk"); MASKS.put("it32", "t8mk");
+    }
+
+    /* ===================== Public entry points ===================== */
+
+    /** Decode the block closest to {@code targetSize} (smallest &gt;= target, else largest), or null. */
+    static BufferedImage decodeBest(File icnsFile, int targetSize) throws IOException {
+        ByteBuffer file;
+        try (FileChannel ch = FileChannel.open(icnsFile.toPath(), StandardOpenOption.READ)) {
+            if (ch.size() < HEADER || ch.size() > Integer.MAX_VALUE) return null;
+            // The mapping stays valid after the channel is closed; it is released with the buffer.
+            file = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+        }
+
+        List<Block> toc = readToc(file);
+        if (toc.isEmpty()) return null;
+
+        Map<String, Block> byType = new HashMap<>();
+        for (Block b : toc) byType.putIfAbsent(b.type(), b);
+
+        for (Block b : rank(toc, targetSize)) {
+            try {
+                BufferedImage img = decode(file, b, byType);
+                if (img != null) return img;
+            } catch (RuntimeException | IOException ignore) {
+                // malformed block or missing plugin: try the next best
+            }
+        }
+        return null;
+    }
+
+    /** Headers only, parsed in place. Unknown types (TOC, info, name...) are skipped. */
+    static List<Block> readToc(ByteBuffer file) {
+        List<Block> out = new ArrayList<>();
+        if (file.limit() < HEADER) return out;
+        if (!"icns".equals(fourCC(file, 0))) return out;
+        long end = Math.min(file.limit(), Integer.toUnsignedLong(file.getInt(4)));
+
+        long pos = HEADER;
+        while (pos + HEADER <= end) {
+            String type = fourCC(file, (int) pos);
+            long len = Integer.toUnsignedLong(file.getInt((int) pos + 4));
+            if (len < HEADER || pos + len > end) break;
+
+            Integer size = SIZES.get(type);
+            if (size != null || type.endsWith("8mk")) {
+                out.add(new Block(type, (size != null) ? size : 0, pos + HEADER, (int) (len - HEADER)));
+            }
+            pos += len;
+        }
+        return out;
+    }
+
+    /* ===================== Selection ===================== */
+
+    /**
+     * Image blocks in the order they should be tried: first the smallest at or above the target,
+     * then larger ones, then smaller ones largest-first. At equal size, blocks with real alpha
+     * (PNG/JP2/ARGB) beat legacy RGB+mask.
+     */
+    private static List<Block> rank(List<Block> toc, int target) {
+        List<Block> images = new ArrayList<>();
+        for (Block b : toc) if (b.size() > 0) images.add(b);
+
+        Comparator<Block> bySize = (a, b) -> {
+            boolean aUp = a.size() >= target, bUp = b.size() >= target;
+            if (aUp != bUp) return aUp ? -1 : 1;
+            return aUp ? Integer.compare(a.size(), b.size()) : Integer.compare(b.size(), a.size());
+        };
+        images.sort(bySize.thenComparing(b -> MASKS.containsKey(b.type()) ? 1 : 0));
+        return images;
+    }
+
+    /* ===================== Decoding ===================== */
+
+    private static BufferedImage decode(ByteBuffer file, Block b, Map<String, Block> byType) throws IOException {
+        ByteBuffer data = slice(file, b);
+
+        if (MASKS.containsKey(b.type())) {
+            Block mask = byType.get(MASKS.get(b.type()));
+            ByteBuffer alpha = (mask != null) ? slice(file, mask) : null;
+            return decodeLegacy(data, b.type(), b.size(), alpha);
+        }
+        if (startsWith(data, "ARGB")) {
+            return decodeArgb(data, b.size());
+        }
+        // PNG or JPEG 2000: ImageIO reads the mapped block directly
+        return ImageIO.read(new ByteBufferImageInputStream(data));
+    }
+
+    /** "ARGB" + RLE of the A, R, G and B planes in that order. */
+    private static BufferedImage decodeArgb(ByteBuffer data, int size) {
+        int n = size * size;
+        byte[] planes = new byte[n * 4];
+        unpackRle(data, 4, planes, 0, planes.length);
+
+        int[] argb = new int[n];
+        for (int i = 0; i < n; i++) {
+            argb[i] = ((planes[i] & 0xFF) << 24)
+                    | ((planes[n + i] & 0xFF) << 16)
+                    | ((planes[2 * n + i] & 0xFF) << 8)
+                    |  (planes[3 * n + i] & 0xFF);
+        }
+        return toImage(argb, size);
+    }
+
+    /** is32/il32/ih32/it32: RLE of the R, G and B planes (or raw xRGB), alpha from the 8mk block. */
+    private static BufferedImage decodeLegacy(ByteBuffer data, String type, int size, ByteBuffer alpha) {
+        int n = size * size;
+        int[] argb = new int[n];
+
+        if (data.limit() == n * 4) {
+            // uncompressed 0RGB
+            for (int i = 0, p = 0; i < n; i++, p += 4) {
+                argb[i] = data.getInt(p) & 0x00FFFFFF;
+            }
+        } else {
+            int start = "it32".equals(type) ? 4 : 0; // it32 has four zero bytes before the RLE data
+            byte[] planes = new byte[n * 3];
+            unpackRle(data, start, planes, 0, planes.length);
+            for (int i = 0; i < n; i++) {
+                argb[i] = ((planes[i] & 0xFF) << 16) | ((planes[n + i] & 0xFF) << 8) | (planes[2 * n + i] & 0xFF);
+            }
+        }
+
+        boolean hasMask = alpha != null && alpha.limit() >= n;
+        for (int i = 0; i < n; i++) {
+            argb[i] |= (hasMask ? (alpha.get(i) & 0xFF) : 0xFF) << 24;
+        }
+        return toImage(argb, size);
+    }
+
+    /**
+     * Apple's icon RLE: a control byte {@code c < 0x80} copies the next {@code c + 1} bytes;
+     * {@code c >= 0x80} repeats the next byte {@code c - 125} times. Output shorter than
+     * {@code len} (truncated input) is left zero-filled.
+     */
+    static void unpackRle(ByteBuffer in, int inPos, byte[] out, int outPos, int len) {
+        int inEnd = in.limit();
+        int end = outPos + len;
+        while (outPos < end && inPos < inEnd) {
+            int c = in.get(inPos++) & 0xFF;
+            if (c < 0x80) {
+                int count = Math.min(c + 1, Math.min(end - outPos, inEnd - inPos));
+                in.get(inPos, out, outPos, count);
+                inPos += c + 1;
+                outPos += count;
+            } else {
+                if (inPos >= inEnd) break;
+                byte v = in.get(inPos++);
+                int count = Math.min(c - 125, end - outPos);
+                Arrays.fill(out, outPos, outPos + count, v);
+                outPos += count;
+            }
+        }
+    }
+
+    /* ===================== Helpers ===================== */
+
+    private static BufferedImage toImage(int[] argb, int size) {
+        BufferedImage img = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+        img.setRGB(0, 0, size, size, argb, 0, size);
+        return img;
+    }
+
+    /** Zero-copy view of a block's data. */
+    private static ByteBuffer slice(ByteBuffer file, Block b) {
+        return file.slice((int) b.offset(), b.length());
+    }
+
+    private static String fourCC(ByteBuffer buf, int at) {
+        byte[] b = new byte[4];
+        buf.get(at, b);
+        return new String(b, StandardCharsets.US_ASCII);
+    }
+
+    private static boolean startsWith(ByteBuffer data, String magic) {
+        if (data.limit() < magic.length()) return false;
+        for (int i = 0; i < magic.length(); i++) if (data.get(i) != (byte) magic.charAt(i)) return false;
+        return true;
+    }
+}
@@ -0,0 +1,469 @@
+package com.commander4j.launchpad;
+
+/*******************************************************************************
+ * Title:        Commander4j
+ * Description:  Packed icon store: pre-decoded ARGB rasters in one memory-mapped
+ *               data file, plus an append-only (CRC-checked) index keyed by bundle.
+ * Author:       Dave (with ChatGPT assistance)
+ * License:      GNU General Public License
+ *******************************************************************************/
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+/**
+ * One data file holds every cached icon as raw big-endian ARGB ints, so startup maps the file once
+ * and builds each icon with a single bulk copy (no per-file open, no PNG inflate).
+ * <p>
+ * Crash safety: raster bytes are appended and forced <em>before</em> the index record that points at
+ * them, and every index record carries a CRC32; a torn tail is simply dropped on the next open.
+ * Compaction writes a new data generation ({@code iconAtlas-<gen>.dat}) and swaps the index in with an
+ * atomic move, so a crash mid-compaction leaves the previous generation intact.
+ * <p>
+ * Entries carry the SHA-1 of their pixels; keys whose icons are identical share one raster. They also
+ * carry the {@link BundleFingerprint} of the bundle when the icon was written, so a freshness check is
+ * one comparison against the bundle's current fingerprint.
+ */
+final class IconAtlas {
+
+    private static final int MAGIC   = 0x4C504941; // "LPIA"
+    private static final int VERSION = 3;
+    private static final int VERSION_NO_FINGERPRINT = 2;  // still read; rewritten as VERSION on open
+    private static final int HEADER_BYTES = 16;    // magic + version + generation
+
+    private static final byte REC_PUT    = 1;
+    private static final byte REC_REMOVE = 2;
+
+    /** Compact when dead raster bytes exceed live bytes and this floor. */
+    private static final long COMPACT_MIN_DEAD_BYTES = 4L * 1024 * 1024;
+
+    static final class Entry {
+        final long offset;
+        final int width;
+        final int height;
+        final long writtenAt;
+        final String contentHash;
+        final BundleFingerprint fingerprint;
+
+        Entry(long offset, int width, int height, long writtenAt, String contentHash, BundleFingerprint fingerprint) {
+            this.offset = offset;
+            this.width = width;
+            this.height = height;
+            this.writtenAt = writtenAt;
+            this.contentHash = contentHash;
+            this.fingerprint = fingerprint;
+        }
+
+        long byteLength() { return (long) width * height * 4L; }
+    }
+
+    private final Path dir;
+    private final Path indexFile;
+    private final Map<String, Entry> index = new HashMap<>();
+    // Kept in step with index: raster offset -> keys using it, and pixels -> the raster holding them
+    private final Map<Long, Integer> rasterRefs = new HashMap<>();
+    private final Map<String, Long> byContent = new HashMap<>();
+
+    private long generation;
+    private FileChannel data;
+    private FileChannel indexOut;
+    private MappedByteBuffer mapped;
+    private long liveBytes;
+
+    IconAtlas(Path dir) {
+        this.dir = dir;
+        this.indexFile = dir.resolve("iconAtlas.idx");
+    }
+
+    /* ===================== Open / close ===================== */
+
+    synchronized void open() throws IOException {
+        Files.createDirectories(dir);
+        if (!readIndex()) {
+            // Missing or unreadable index: start a fresh generation.
+            index.clear();
+            generation = System.currentTimeMillis();
+            writeFreshIndex(indexFile, generation, Map.of());
+        }
+        data = FileChannel.open(dataFile(generation),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        indexOut = FileChannel.open(indexFile, StandardOpenOption.WRITE);
+        indexOut.position(indexOut.size());
+
+        // Drop entries whose bytes never made it to disk (e.g. data file lost).
+        long size = data.size();
+        index.values().removeIf(e -> e.offset + e.byteLength() > size);
+        rebuildRasterTables();
+
+        deleteOrphanGenerations();
+        remap();
+
+        if (size - liveBytes > Math.max(liveBytes, COMPACT_MIN_DEAD_BYTES)) compact();
+    }
+
+    synchronized void close() {
+        try { if (indexOut != null) indexOut.close(); } catch (IOException ignore) {}
+        try { if (data != null) data.close(); } catch (IOException ignore) {}
+        indexOut = null;
+        data = null;
+        mapped = null;
+    }
+
+    /* ===================== Queries ===================== */
+
+    synchronized boolean contains(String key) { return index.containsKey(key); }
+
+    synchronized Entry entry(String key) { return index.get(key); }
+
+    synchronized int size() { return index.size(); }
+
+    synchronized List<String> keys() { return new ArrayList<>(index.keySet()); }
+
+    /** Build an ARGB image straight from the mapped bytes, or null if the key is absent. */
+    synchronized BufferedImage get(String key) {
+        Entry e = index.get(key);
+        if (e == null || data == null) return null;
+        try {
+            long end = e.offset + e.byteLength();
+            if (mapped == null || end > mapped.capacity()) remap();
+            if (mapped == null || end > mapped.capacity()) return null;
+
+            int[] px = new int[e.width * e.height];
+            mapped.slice((int) e.offset, (int) e.byteLength()).asIntBuffer().get(px);
+            return wrapArgb(px, e.width, e.height);
+        } catch (Exception ex) {
+            return null;
+        }
+    }
+
+    /* ===================== Updates ===================== */
+
+    /**
+     * Store a raster for {@code key}, replacing any previous one. If another key already holds
+     * identical pixels ({@code contentHash}) its raster is shared instead of appending a copy.
+     */
+    synchronized boolean put(String key, BufferedImage img, String contentHash) {
+        return put(key, img, contentHash, BundleFingerprint.NONE);
+    }
+
+    /** {@link #put(String, BufferedImage, String)}, recording the bundle's fingerprint at this time. */
+    synchronized boolean put(String key, BufferedImage img, String contentHash, BundleFingerprint fingerprint) {
+        if (data == null || img == null) return false;
+        int w = img.getWidth(), h = img.getHeight();
+        if (w <= 0 || h <= 0) return false;
+        try {
+            Long same = byContent.get(contentKey(contentHash, w, h));
+
+            long offset;
+            if (same != null) {
+                offset = same;
+            } else {
+                int[] px = argbPixels(img);
+                ByteBuffer buf = ByteBuffer.allocate(px.length * 4);
+                buf.asIntBuffer().put(px);
+
+                offset = data.size();
+                while (buf.hasRemaining()) data.write(buf, offset + buf.position());
+                data.force(false);
+            }
+
+            Entry e = new Entry(offset, w, h, System.currentTimeMillis(), contentHash, fingerprint);
+            appendRecord(putRecord(key, e));
+            link(e);
+            unlink(index.put(key, e));
+            return true;
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            return false;
+        }
+    }
+
+    synchronized void remove(String key) {
+        Entry old = index.remove(key);
+        if (old == null) return;
+        unlink(old);
+        if (indexOut == null) return;
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            DataOutputStream out = new DataOutputStream(bos);
+            out.writeByte(REC_REMOVE);
+            out.writeUTF(key);
+            appendRecord(bos.toByteArray());
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    synchronized void clear() {
+        close();
+        index.clear();
+        rebuildRasterTables();
+        try {
+            Files.deleteIfExists(indexFile);
+            open();
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /** Rewrite live rasters into a new data generation and atomically swap the index. */
+    synchronized void compact() {
+        if (data == null) return;
+        long newGen = Math.max(generation + 1, System.currentTimeMillis());
+        Path newData = dataFile(newGen);
+        Map<String, Entry> moved = new HashMap<>();
+        Map<Long, Long> relocated = new HashMap<>(); // shared rasters are copied once
+        try (FileChannel out = FileChannel.open(newData,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            long pos = 0;
+            for (Map.Entry<String, Entry> me : index.entrySet()) {
+                Entry e = me.getValue();
+                Long at = relocated.get(e.offset);
+                if (at == null) {
+                    long n = e.byteLength();
+                    long copied = 0;
+                    while (copied < n) copied += data.transferTo(e.offset + copied, n - copied, out);
+                    at = pos;
+                    relocated.put(e.offset, at);
+                    pos += n;
+                }
+                moved.put(me.getKey(), new Entry(at, e.width, e.height, e.writtenAt, e.contentHash, e.fingerprint));
+            }
+            out.force(true);
+        } catch (IOException ex) {
+            ex.printStackTrace();
+            try { Files.deleteIfExists(newData); } catch (IOException ignore) {}
+            return;
+        }
+
+        try {
+            Path tmp = dir.resolve("iconAtlas.idx.tmp");
+            writeFreshIndex(tmp, newGen, moved);
+            close();
+            Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            open();
+        } catch (IOException ex) {
+            ex.printStackTrace();
+        }
+    }
+
+    /* ===================== Index I/O ===================== */
+
+    private Path dataFile(long gen) {
+        return dir.resolve("iconAtlas-" + gen + ".dat");
+    }
+
+    private boolean readIndex() {
+        if (!Files.exists(indexFile)) return false;
+        index.clear();
+        int version;
+        try (FileChannel ch = FileChannel.open(indexFile, StandardOpenOption.READ, StandardOpenOption.WRITE);
+             DataInputStream in = new DataInputStream(new java.io.BufferedInputStream(
+                     java.nio.channels.Channels.newInputStream(ch.position(0))))) {
+            if (in.readInt() != MAGIC) return false;
+            version = in.readInt();
+            if (version != VERSION && version != VERSION_NO_FINGERPRINT) return false;
+            generation = in.readLong();
+
+            long good = HEADER_BYTES;
+            while (true) {
+                int len;
+                try { len = in.readInt(); } catch (EOFException eof) { break; }
+                if (len <= 0 || len > 64 * 1024) break;
+                byte[] body = new byte[len];
+                int crc;
+                try {
+                    in.readFully(body);
+                    crc = in.readInt();
+                } catch (EOFException eof) { break; }
+                if (crc != crc32(body)) break;
+                applyRecord(body, version);
+                good += 4 + len + 4;
+            }
+            // Cut off any torn tail so later appends follow a valid record.
+            if (ch.size() > good) ch.truncate(good);
+        } catch (IOException ex) {
+            return false;
+        }
+        // An index from before fingerprints: rewrite it in the current format (same data
+        // generation) before anything is appended; its entries keep BundleFingerprint.NONE.
+        return version == VERSION || rewriteIndex();
+    }
+
+    private boolean rewriteIndex() {
+        try {
+            Path tmp = dir.resolve("iconAtlas.idx.tmp");
+            writeFreshIndex(tmp, generation, index);
+            Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            return true;
+        } catch (IOException ex) {
+            return false;
+        }
+    }
+
+    private void applyRecord(byte[] body, int version) throws IOException {
+        DataInputStream in = new DataInputStream(new java.io.ByteArrayInputStream(body));
+        byte type = in.readByte();
+        String key = in.readUTF();
+        if (type == REC_PUT) {
+            long offset = in.readLong();
+            int w = in.readInt(), h = in.readInt();
+            long writtenAt = in.readLong();
+            String hash = in.readUTF();
+            BundleFingerprint fp = BundleFingerprint.NONE;
+            if (version >= VERSION) fp = BundleFingerprint.read(in);
+            index.put(key, new Entry(offset, w, h, writtenAt, hash, fp));
+        } else if (type == REC_REMOVE) {
+            index.remove(key);
+        }
+    }
+
+    private static byte[] putRecord(String key, Entry e) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bos);
+        out.writeByte(REC_PUT);
+        out.writeUTF(key);
+        out.writeLong(e.offset);
+        out.writeInt(e.width);
+        out.writeInt(e.height);
+        out.writeLong(e.writtenAt);
+        out.writeUTF(e.contentHash);
+        e.fingerprint.write(out);
+        return bos.toByteArray();
+    }
+
+    private void appendRecord(byte[] body) throws IOException {
+        if (indexOut == null) return;
+        ByteBuffer rec = ByteBuffer.allocate(4 + body.length + 4);
+        rec.putInt(body.length).put(body).putInt(crc32(body)).flip();
+        while (rec.hasRemaining()) indexOut.write(rec);
+        indexOut.force(false);
+    }
+
+    private static void writeFreshIndex(Path target, long gen, Map<String, Entry> entries) throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bos);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(gen);
+        for (Map.Entry<String, Entry> me : entries.entrySet()) {
+            byte[] body = putRecord(me.getKey(), me.getValue());
+            out.writeInt(body.length);
+            out.write(body);
+            out.writeInt(crc32(body));
+        }
+        try (FileChannel ch = FileChannel.open(target,
+                StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer buf = ByteBuffer.wrap(bos.toByteArray());
+            while (buf.hasRemaining()) ch.write(buf);
+            ch.force(true);
+        }
+    }
+
+    private void deleteOrphanGenerations() {
+        String current = dataFile(generation).getFileName().toString();
+        try (var s = Files.list(dir)) {
+            s.filter(p -> {
+                String n = p.getFileName().toString();
+                return n.startsWith("iconAtlas-") && n.endsWith(".dat") && !n.equals(current);
+            }).forEach(p -> { try { Files.deleteIfExists(p); } catch (IOException ignore) {} });
+        } catch (IOException ignore) {}
+    }
+
+    /* ===================== Shared rasters ===================== */
+
+    private static String contentKey(String contentHash, int w, int h) {
+        return contentHash + '/' + w + 'x' + h;
+    }
+
+    /** One more key uses this entry's raster. Live bytes count each distinct raster once. */
+    private void link(Entry e) {
+        if (rasterRefs.merge(e.offset, 1, Integer::sum) == 1) liveBytes += e.byteLength();
+        byContent.putIfAbsent(contentKey(e.contentHash, e.width, e.height), e.offset);
+    }
+
+    /** A key stopped using this entry's raster (null: nothing). */
+    private void unlink(Entry e) {
+        if (e == null) return;
+        Integer refs = rasterRefs.get(e.offset);
+        if (refs == null) return;
+        if (refs > 1) {
+            rasterRefs.put(e.offset, refs - 1);
+            return;
+        }
+        rasterRefs.remove(e.offset);
+        liveBytes -= e.byteLength();
+        byContent.remove(contentKey(e.contentHash, e.width, e.height), e.offset);
+    }
+
+    /** After the index was loaded or cleared as a whole. */
+    private void rebuildRasterTables() {
+        rasterRefs.clear();
+        byContent.clear();
+        liveBytes = 0;
+        for (Entry e : index.values()) link(e);
+    }
+
+    private void remap() throws IOException {
+        long size = data.size();
+        mapped = (size > 0) ? data.map(FileChannel.MapMode.READ_ONLY, 0, size) : null;
+    }
+
+    private static int crc32(byte[] b) {
+        CRC32 crc = new CRC32();
+        crc.update(b);
+        return (int) crc.getValue();
+    }
+
+    /* ===================== Raster helpers ===================== */
+
+    private static final DirectColorModel ARGB = (DirectColorModel) ColorModel.getRGBdefault();
+
+    /** Wrap packed ARGB ints as a TYPE_INT_ARGB image without another copy. */
+    static BufferedImage wrapArgb(int[] px, int w, int h) {
+        DataBufferInt db = new DataBufferInt(px, px.length);
+        SinglePixelPackedSampleModel sm = new SinglePixelPackedSampleModel(
+                DataBuffer.TYPE_INT, w, h, ARGB.getMasks());
+        WritableRaster raster = Raster.createWritableRaster(sm, db, null);
+        return new BufferedImage(ARGB, raster, false, null);
+    }
+
+    /** Packed ARGB pixels for any image; avoids a copy for plain TYPE_INT_ARGB rasters. */
+    static int[] argbPixels(BufferedImage img) {
+        int w = img.getWidth(), h = img.getHeight();
+        if (img.getType() == BufferedImage.TYPE_INT_ARGB
+                && img.getRaster().getDataBuffer() instanceof DataBufferInt db
+                && db.getNumBanks() == 1
+                && img.getRaster().getSampleModel() instanceof SinglePixelPackedSampleModel sm
+                && sm.getScanlineStride() == w
+                && db.getOffset() == 0
+                && db.getData().length == w * h
+                && img.getRaster().getParent() == null) {
+            return db.getData();
+        }
+        return img.getRGB(0, 0, w, h, null, 0, w);
+    }
+}
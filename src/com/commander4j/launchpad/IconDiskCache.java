@@ -0,0 +1,273 @@
+package com.commander4j.launchpad;
+
+/*******************************************************************************
+ * Title:        Commander4j
+ * Description:  Content-addressed PNG icon cache keyed by bundle identity
+ *               (canonical path + CFBundleIdentifier + CFBundleVersion)
+ * Author:       Dave (with ChatGPT assistance)
+ * License:      GNU General Public License
+ *******************************************************************************/
+
+import java.awt.image.BufferedImage;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import javax.imageio.ImageIO;
+
+/**
+ * PNG blobs are named by the SHA-1 of their pixels ({@code <contentHash>.png}), so identical
+ * icons are written once however many bundles use them. A small index maps each bundle identity
+ * key to its blob and the time it was written. Changes mark it dirty; it is rewritten atomically
+ * once they have been quiet for {@link #QUIET_MS} (at the latest {@link #MAX_DELAY_MS} after the
+ * first), on {@link #flush} and at exit, so a Refresh All writes it a handful of times rather than
+ * once per icon. Blobs are always written before the index that names them; an index lost in a
+ * crash only means those icons are resolved again.
+ * <p>
+ * Blobs live in their own directory so garbage collection can never touch the UI artwork that
+ * shares ./images/appIcons.
+ */
+final class IconDiskCache {
+
+    private static final String INDEX_NAME = "index.properties";
+
+    /** {@code visible} is null for entries written before the verdict was recorded. */
+    private record Ref(String contentHash, long writtenAt, Boolean visible) {}
+
+    static final long QUIET_MS = 1_000;       // write the index after this long without changes
+    static final long MAX_DELAY_MS = 5_000;   // ... but never hold changes longer than this
+
+    private static final ScheduledExecutorService WRITER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "lp-iconcache-index");
+        t.setDaemon(true);
+        return t;
+    });
+
+    private final Path dir;
+    private final Path indexFile;
+    private final Map<String, Ref> refs = new HashMap<>();
+    private final Map<String, Integer> blobRefs = new HashMap<>();  // content hash -> entries using it
+
+    private boolean dirty, flushScheduled;
+    private long firstChangeAt, lastChangeAt;
+
+    IconDiskCache(Path dir) {
+        this.dir = dir;
+        this.indexFile = dir.resolve(INDEX_NAME);
+        load();
+        Runtime.getRuntime().addShutdownHook(new Thread(this::flush, "lp-iconcache-flush"));
+    }
+
+    /* ===================== Queries ===================== */
+
+    /** Blob for an identity key, or null if none is cached (or the blob has gone missing). */
+    synchronized Path lookup(String identityKey) {
+        Ref r = refs.get(identityKey);
+        if (r == null) return null;
+        Path blob = blobFile(r.contentHash());
+        return Files.exists(blob) ? blob : null;
+    }
+
+    /** Where the blob for an identity key lives, without checking the file system; null if not indexed. */
+    synchronized Path blobPath(String identityKey) {
+        Ref r = refs.get(identityKey);
+        return (r != null) ? blobFile(r.contentHash()) : null;
+    }
+
+    /** When the icon for this identity was written, or -1. */
+    synchronized long writtenAt(String identityKey) {
+        Ref r = refs.get(identityKey);
+        return (r != null) ? r.writtenAt() : -1;
+    }
+
+    synchronized String contentHash(String identityKey) {
+        Ref r = refs.get(identityKey);
+        return (r != null) ? r.contentHash() : null;
+    }
+
+    /** Stored visibility verdict for this identity's icon, or null if unknown. */
+    synchronized Boolean visible(String identityKey) {
+        Ref r = refs.get(identityKey);
+        return (r != null) ? r.visible() : null;
+    }
+
+    /* ===================== Updates ===================== */
+
+    /** Store an icon for an identity; the blob is only written if no identical icon exists yet. */
+    synchronized Path store(String identityKey, BufferedImage img, String contentHash, boolean visible) {
+        try {
+            Files.createDirectories(dir);
+            Path blob = blobFile(contentHash);
+            if (!Files.exists(blob)) {
+                Path tmp = Files.createTempFile(dir, "ico-", ".tmp");
+                try (OutputStream out = Files.newOutputStream(tmp)) {
+                    ImageIO.write(img, "PNG", out);
+                }
+                Files.move(tmp, blob, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+            Ref old = put(identityKey, new Ref(contentHash, System.currentTimeMillis(), visible));
+            changed();
+            if (old != null) release(old.contentHash());
+            return blob;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    /** Record the verdict for an entry that predates it (the write time is kept). */
+    synchronized void setVisible(String identityKey, boolean visible) {
+        Ref r = refs.get(identityKey);
+        if (r == null || Boolean.valueOf(visible).equals(r.visible())) return;
+        refs.put(identityKey, new Ref(r.contentHash(), r.writtenAt(), visible));
+        changed();
+    }
+
+    synchronized void remove(String identityKey) {
+        Ref old = refs.remove(identityKey);
+        if (old == null) return;
+        changed();
+        release(old.contentHash());
+    }
+
+    synchronized void clear() {
+        refs.clear();
+        blobRefs.clear();
+        dirty = false;
+        try (var s = Files.list(dir)) {
+            s.forEach(p -> { try { Files.deleteIfExists(p); } catch (IOException ignore) {} });
+        } catch (IOException ignore) {}
+    }
+
+    /**
+     * Drop index entries whose identity is not in {@code live}, then delete every blob (and stray
+     * temp file) that no remaining entry references. Returns the number of files deleted.
+     */
+    synchronized int collectGarbage(Collection<String> live) {
+        Set<String> keep = new HashSet<>(live);
+        if (refs.keySet().retainAll(keep)) {
+            recountBlobRefs();
+            dirty = true;
+        }
+        flush();
+
+        Set<String> referenced = new HashSet<>();
+        for (Ref r : refs.values()) referenced.add(r.contentHash() + ".png");
+
+        int deleted = 0;
+        try (var s = Files.list(dir)) {
+            for (Path p : (Iterable<Path>) s::iterator) {
+                String n = p.getFileName().toString();
+                if (n.equals(INDEX_NAME) || referenced.contains(n)) continue;
+                if (!n.endsWith(".png") && !n.endsWith(".tmp")) continue;
+                try { if (Files.deleteIfExists(p)) deleted++; } catch (IOException ignore) {}
+            }
+        } catch (IOException ignore) {}
+        return deleted;
+    }
+
+    /* ===================== Persistence ===================== */
+
+    private Path blobFile(String contentHash) {
+        return dir.resolve(contentHash + ".png");
+    }
+
+    private Ref put(String identityKey, Ref r) {
+        blobRefs.merge(r.contentHash(), 1, Integer::sum);
+        return refs.put(identityKey, r);
+    }
+
+    /** An entry stopped using this blob: delete it once nothing references it. */
+    private void release(String contentHash) {
+        Integer n = blobRefs.get(contentHash);
+        if (n != null && n > 1) {
+            blobRefs.put(contentHash, n - 1);
+            return;
+        }
+        blobRefs.remove(contentHash);
+        try { Files.deleteIfExists(blobFile(contentHash)); } catch (IOException ignore) {}
+    }
+
+    private void recountBlobRefs() {
+        blobRefs.clear();
+        for (Ref r : refs.values()) blobRefs.merge(r.contentHash(), 1, Integer::sum);
+    }
+
+    /** The index changed: schedule a write for when changes have been quiet for a while. */
+    private void changed() {
+        long now = System.currentTimeMillis();
+        if (!dirty) firstChangeAt = now;
+        lastChangeAt = now;
+        dirty = true;
+        if (!flushScheduled) {
+            flushScheduled = true;
+            WRITER.schedule(this::flushWhenQuiet, QUIET_MS, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private synchronized void flushWhenQuiet() {
+        flushScheduled = false;
+        if (!dirty) return;
+        long now = System.currentTimeMillis();
+        long due = Math.min(lastChangeAt + QUIET_MS, firstChangeAt + MAX_DELAY_MS);
+        if (due > now) {
+            flushScheduled = true;
+            WRITER.schedule(this::flushWhenQuiet, due - now, TimeUnit.MILLISECONDS);
+            return;
+        }
+        save();
+    }
+
+    /** Write the index now if it has unsaved changes (background pass finished, exit). */
+    synchronized void flush() {
+        if (dirty) save();
+    }
+
+    private void load() {
+        if (!Files.exists(indexFile)) return;
+        Properties p = new Properties();
+        try (InputStream in = Files.newInputStream(indexFile)) {
+            p.load(in);
+        } catch (IOException e) {
+            return;
+        }
+        for (String key : p.stringPropertyNames()) {
+            String[] v = p.getProperty(key).split(",", 3);
+            try {
+                Boolean visible = (v.length > 2) ? Boolean.valueOf(v[2]) : null;
+                put(key, new Ref(v[0], (v.length > 1) ? Long.parseLong(v[1]) : 0L, visible));
+            } catch (NumberFormatException ignore) {}
+        }
+    }
+
+    private void save() {
+        Properties p = new Properties();
+        for (Map.Entry<String, Ref> e : refs.entrySet()) {
+            Ref r = e.getValue();
+            p.setProperty(e.getKey(), r.contentHash() + "," + r.writtenAt() + ((r.visible() != null) ? "," + r.visible() : ""));
+        }
+        try {
+            Files.createDirectories(dir);
+            Path tmp = Files.createTempFile(dir, "index-", ".tmp");
+            try (OutputStream out = Files.newOutputStream(tmp)) {
+                p.store(out, "LaunchPad icon cache: identity key -> content hash, written at, visible");
+            }
+            Files.move(tmp, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            dirty = false;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package com.commander4j.launchpad;
+
+/*******************************************************************************
+ * Title:        Commander4j
+ * Description:  Persisted negative cache for bundles whose icon could not be
+ *               resolved (reason, fingerprint, exponential backoff)
+ * Author:       Dave (with ChatGPT assistance)
+ * License:      GNU General Public License
+ *******************************************************************************/
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Bundles for which every icon strategy failed, so the background refresh pass does not resolve
+ * them again on every launch (each attempt may cost an osascript and a qlmanage timeout). An entry
+ * holds the failure reason, the bundle fingerprint at the time and when it happened. The bundle is
+ * left alone until either its fingerprint changes (the app was updated or repaired) or the backoff
+ * runs out: {@link #BASE_BACKOFF_MS} after the first failure, doubling with every further one, up
+ * to {@link #MAX_BACKOFF_MS}. A successful resolution removes the entry.
+ * <p>
+ * Explicit requests (Refresh Icon, import) are never suppressed, but their outcome is recorded.
+ * The table survives restarts in launchpad.failures, so a broken bundle is not retried on every
+ * launch.
+ */
+public final class IconFailureCache {
+
+    static final long BASE_BACKOFF_MS = 60L * 60 * 1000;            // 1 hour
+    static final long MAX_BACKOFF_MS = 7L * 24 * 60 * 60 * 1000;    // 1 week
+
+    private static final int MAGIC = 0x4C504E43; // "LPNC"
+    private static final int VERSION = 1;
+
+    record Entry(String reason, long fingerprint, long failedAt, int failures) {
+        long retryAt() {
+            long backoff = BASE_BACKOFF_MS << Math.min(failures - 1, 20);
+            return failedAt + Math.min(backoff, MAX_BACKOFF_MS);
+        }
+    }
+
+    /** Counters since startup, plus the size of the table; see {@link MacAppUtils#getIconFailureStats()}. */
+    public record Stats(int knownBad, long suppressed, long recorded, long cleared, long fingerprintChanged) {}
+
+    private final Path file;
+    private final Map<String, Entry> entries = new HashMap<>();
+    private long suppressed, recorded, cleared, fingerprintChanged;
+    private boolean dirty;
+
+    IconFailureCache(Path file) {
+        this.file = file;
+        load();
+    }
+
+    /**
+     * True if a retry of this bundle should be skipped: it failed before, it has not changed since
+     * and its backoff has not run out. A changed fingerprint drops the entry.
+     */
+    synchronized boolean suppress(String canonicalPath, long fingerprint, long now) {
+        Entry e = entries.get(canonicalPath);
+        if (e == null) return false;
+        if (e.fingerprint() != fingerprint) {
+            entries.remove(canonicalPath);
+            fingerprintChanged++;
+            dirty = true;
+            return false;
+        }
+        if (now >= e.retryAt()) return false;
+        suppressed++;
+        return true;
+    }
+
+    /** Every strategy failed for this bundle. */
+    synchronized void recordFailure(String canonicalPath, long fingerprint, String reason, long now) {
+        Entry prev = entries.get(canonicalPath);
+        int failures = (prev != null && prev.fingerprint() == fingerprint) ? prev.failures() + 1 : 1;
+        entries.put(canonicalPath, new Entry((reason != null) ? reason : "", fingerprint, now, failures));
+        recorded++;
+        dirty = true;
+    }
+
+    /** The icon resolved: forget any earlier failure. */
+    synchronized void recordSuccess(String canonicalPath) {
+        if (entries.remove(canonicalPath) != null) {
+            cleared++;
+            dirty = true;
+        }
+    }
+
+    synchronized Entry get(String canonicalPath) {
+        return entries.get(canonicalPath);
+    }
+
+    /** Keep only the entries for these canonical paths (the apps currently placed). */
+    synchronized void retain(Collection<String> canonicalPaths) {
+        Set<String> keep = new HashSet<>(canonicalPaths);
+        if (entries.keySet().retainAll(keep)) dirty = true;
+    }
+
+    synchronized Stats stats() {
+        return new Stats(entries.size(), suppressed, recorded, cleared, fingerprintChanged);
+    }
+
+    /* ===================== Persistence ===================== */
+
+    private void load() {
+        if (!Files.exists(file)) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return;
+            int n = in.readInt();
+            for (int i = 0; i < n; i++) {
+                String path = in.readUTF();
+                entries.put(path, new Entry(in.readUTF(), in.readLong(), in.readLong(), in.readInt()));
+            }
+        } catch (IOException e) {
+            entries.clear(); // unreadable: forget the failures, every bundle simply gets tried again
+        }
+    }
+
+    synchronized void save() {
+        if (!dirty) return;
+        try {
+            LayoutStore.writeBytes(encode(), file);
+            dirty = false;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + entries.size() * 128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(entries.size());
+        for (Map.Entry<String, Entry> me : entries.entrySet()) {
+            Entry e = me.getValue();
+            out.writeUTF(me.getKey());
+            out.writeUTF(e.reason());
+            out.writeLong(e.fingerprint());
+            out.writeLong(e.failedAt());
+            out.writeInt(e.failures());
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,113 @@
+package com.commander4j.launchpad;
+
+/*******************************************************************************
+ * Title:        Commander4j
+ * Description:  Bounded in-memory icon cache (byte budget, LRU, pinning, stats)
+ * Author:       Dave (with ChatGPT assistance)
+ * License:      GNU General Public License
+ *******************************************************************************/
+
+import java.awt.Image;
+import java.awt.image.MultiResolutionImage;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import javax.swing.ImageIcon;
+
+/**
+ * Access-ordered LRU of ImageIcons, weighed by raster bytes (w * h * 4). Entries are evicted
+ * oldest-first once the resident total exceeds the budget; pinned keys (icons for the cells on
+ * the visible tab) are never evicted. Evicted icons are not lost: callers fall back to the disk
+ * tier (icon atlas) on the next miss.
+ */
+public final class IconMemoryCache {
+
+    /** Point-in-time counters, see {@link MacAppUtils#getIconCacheStats()}. */
+    public record Stats(long hits, long misses, long evictions, long residentBytes, long budgetBytes,
+                        int entries, int pinned) {
+        public double hitRatio() {
+            long total = hits + misses;
+            return (total == 0) ? 0.0 : (double) hits / total;
+        }
+    }
+
+    private final long budgetBytes;
+    private final LinkedHashMap<String, ImageIcon> map = new LinkedHashMap<>(256, 0.75f, true);
+    private final Set<String> pinned = new HashSet<>();
+
+    private long residentBytes;
+    private long hits;
+    private long misses;
+    private long evictions;
+
+    public IconMemoryCache(long budgetBytes) {
+        this.budgetBytes = Math.max(0, budgetBytes);
+    }
+
+    public synchronized ImageIcon get(String key) {
+        ImageIcon icon = map.get(key);
+        if (icon != null) hits++; else misses++;
+        return icon;
+    }
+
+    public synchronized void put(String key, ImageIcon icon) {
+        if (key == null || icon == null) return;
+        ImageIcon old = map.put(key, icon);
+        if (old != null) residentBytes -= weight(old);
+        residentBytes += weight(icon);
+        evictToBudget();
+    }
+
+    public synchronized void remove(String key) {
+        ImageIcon old = map.remove(key);
+        if (old != null) residentBytes -= weight(old);
+    }
+
+    public synchronized void clear() {
+        map.clear();
+        residentBytes = 0;
+    }
+
+    /** Replace the pinned set; keys no longer pinned become evictable again. */
+    public synchronized void setPinned(Collection<String> keys) {
+        pinned.clear();
+        if (keys != null) pinned.addAll(keys);
+        evictToBudget();
+    }
+
+    public synchronized Stats stats() {
+        int pinnedResident = 0;
+        for (String k : pinned) if (map.containsKey(k)) pinnedResident++;
+        return new Stats(hits, misses, evictions, residentBytes, budgetBytes, map.size(), pinnedResident);
+    }
+
+    private void evictToBudget() {
+        if (residentBytes <= budgetBytes) return;
+        Iterator<Map.Entry<String, ImageIcon>> it = map.entrySet().iterator();
+        while (residentBytes > budgetBytes && it.hasNext()) {
+            Map.Entry<String, ImageIcon> e = it.next();
+            if (pinned.contains(e.getKey())) continue;
+            residentBytes -= weight(e.getValue());
+            it.remove();
+            evictions++;
+        }
+    }
+
+    /** Raster bytes; a multi-resolution icon counts every variant it holds (1x + 2x). */
+    private static long weight(ImageIcon icon) {
+        if (icon.getImage() instanceof MultiResolutionImage mr) {
+            long sum = 0;
+            for (Image v : mr.getResolutionVariants()) {
+                sum += Math.max(0, v.getWidth(null)) * (long) Math.max(0, v.getHeight(null)) * 4L;
+            }
+            return Math.max(1, sum);
+        }
+        long w = Math.max(0, icon.getIconWidth());
+        long h = Math.max(0, icon.getIconHeight());
+        return Math.max(1, w * h * 4L);
+    }
+}
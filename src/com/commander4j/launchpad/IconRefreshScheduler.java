@@ -0,0 +1,355 @@
+package com.commander4j.launchpad;
+
+/*******************************************************************************
+ * Title:        Commander4j
+ * Description:  Priority queue for background icon refreshes (viewport first,
+ *               re-ordered on tab switch and scroll, cancelled with the cell)
+ * Author:       Dave (with ChatGPT assistance)
+ * License:      GNU General Public License
+ *******************************************************************************/
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+import javax.swing.ImageIcon;
+import javax.swing.SwingUtilities;
+
+/**
+ * Every background icon refresh goes through here: the startup pass, tabs built later, bundles the
+ * watcher saw change, Refresh All Icons and the per-cell Refresh Icon. Work is queued per cell and
+ * taken in rank order rather than submission order:
+ * <ol>
+ *   <li>{@link #EXPLICIT} - a cell the user asked for (Refresh Icon);</li>
+ *   <li>{@link #VISIBLE} - cells in the selected tab's viewport;</li>
+ *   <li>{@link #SELECTED_TAB} - the rest of the selected tab;</li>
+ *   <li>{@link #OTHER_TAB} - other tabs, nearest first.</li>
+ * </ol>
+ * The ranks come from the owner (see the {@code ranking} constructor argument), evaluated on the
+ * EDT when cells are queued and again whenever {@link #reprioritize} is called - on tab switch and
+ * scroll - so the queue follows what the user is looking at. Workers take up to
+ * {@link #BATCH_SIZE} cells of one tier at a time and resolve them with one
+ * {@link MacAppUtils#refreshIconsBatch} call (two if forced and stale-only cells share the tier),
+ * so a viewport batch is never padded with cells nobody can see. Forced refreshes never defer for
+ * a busy icon worker pool; only stale checks are left for a later pass.
+ * <p>
+ * A cell whose app is replaced, cleared or moved away ({@link #cellChanged}) loses its queued work.
+ * A batch already running still completes; its icon goes to the app if it is placed anywhere, and a
+ * changed icon path is journaled for the cell the app is in then.
+ */
+final class IconRefreshScheduler {
+
+    // Tiers, most urgent first; see rank()
+    static final int EXPLICIT = 0;
+    static final int VISIBLE = 1;
+    static final int SELECTED_TAB = 2;
+    static final int OTHER_TAB = 3;
+
+    // Stale bundles are refreshed in groups: one NSWorkspace worker request per group.
+    static final int BATCH_SIZE = 16;
+    private static final long BATCH_TIMEOUT_MS = 30_000;
+
+    private static final int TIER_SHIFT = 48;
+
+    /** Counters since startup; see {@link #stats()}. */
+    record Stats(int queued, long completed, long cancelled, long reordered) {}
+
+    /** Callers waiting for a group of cells (Refresh All Icons, Refresh Icon). */
+    private static final class Pass {
+        private int left;
+        private final Runnable onDone;
+
+        Pass(int left, Runnable onDone) {
+            this.left = left;
+            this.onDone = onDone;
+        }
+
+        /** EDT only. */
+        void jobDone() {
+            if (--left == 0 && onDone != null) onDone.run();
+        }
+    }
+
+    private static final class Job {
+        final LaunchCell cell;
+        final AppComponent app;
+        final File bundle;
+        final long seq;
+        final List<Pass> passes = new ArrayList<>(1);
+        boolean force;     // re-resolve even if the cached icon is current
+        boolean explicit;  // keeps EXPLICIT rank through re-ordering
+        long rank;
+
+        Job(LaunchCell cell, AppComponent app, long seq) {
+            this.cell = cell;
+            this.app = app;
+            this.bundle = new File(app.getAppPath());
+            this.seq = seq;
+        }
+    }
+
+    private static final Comparator<Job> ORDER =
+        Comparator.<Job>comparingLong(j -> j.rank).thenComparingLong(j -> j.seq);
+
+    private static volatile IconRefreshScheduler active;
+
+    private final Supplier<ToLongFunction<LaunchCell>> ranking;
+    private final int threads;
+
+    // Guarded by this
+    private final List<Job> queue = new ArrayList<>();           // sorted by ORDER
+    private final Map<LaunchCell, Job> byCell = new HashMap<>();
+    private int running;
+    private long seq, completed, cancelled, reordered;
+
+    private boolean reorderPending; // EDT only
+
+    /**
+     * @param ranking called on the EDT; returns the rank of each cell for the current tab and
+     *                scroll position (build it with {@link #rank})
+     */
+    IconRefreshScheduler(Supplier<ToLongFunction<LaunchCell>> ranking, int threads) {
+        this.ranking = ranking;
+        this.threads = Math.max(1, threads);
+    }
+
+    /** A cell's place in the queue: its tier, then {@code order} within the tier (lower first). */
+    static long rank(int tier, long order) {
+        return ((long) tier << TIER_SHIFT) | Math.min(Math.max(order, 0), (1L << TIER_SHIFT) - 1);
+    }
+
+    private static int tier(long rank) {
+        return (int) (rank >>> TIER_SHIFT);
+    }
+
+    /** Start the worker threads; from now on {@link #active()} and {@link #cellChanged} reach this one. */
+    synchronized void start() {
+        if (active == this) return;
+        for (int i = 0; i < threads; i++) {
+            Thread t = new Thread(this::work, "lp-icon-refresh");
+            t.setDaemon(true);
+            t.start();
+        }
+        active = this;
+    }
+
+    static IconRefreshScheduler active() {
+        return active;
+    }
+
+    /* ===================== Submission (EDT) ===================== */
+
+    /** Refresh these cells' icons if their bundles changed since the icon was cached. */
+    void refreshStale(List<LaunchCell> cells) {
+        submit(cells, false, false, null);
+    }
+
+    /** Re-resolve these cells' icons; {@code onDone} runs on the EDT when all are done or cancelled. */
+    void refresh(List<LaunchCell> cells, Runnable onDone) {
+        submit(cells, true, false, onDone);
+    }
+
+    /** Re-resolve one cell's icon ahead of everything else queued. */
+    void refreshNow(LaunchCell cell, Runnable onDone) {
+        submit(List.of(cell), true, true, onDone);
+    }
+
+    private void submit(List<LaunchCell> cells, boolean force, boolean explicit, Runnable onDone) {
+        ToLongFunction<LaunchCell> rankOf = explicit ? null : ranking.get();
+        List<Job> jobs = new ArrayList<>();
+        List<Job> replaced = new ArrayList<>();
+        synchronized (this) {
+            for (LaunchCell cell : cells) {
+                AppComponent app = cell.getApp();
+                if (app == null) continue;
+                long r = explicit ? rank(EXPLICIT, 0) : rankOf.applyAsLong(cell);
+                Job job = byCell.get(cell);
+                if (job == null || job.app != app) {
+                    if (job != null) {
+                        cancel(job);
+                        replaced.add(job);
+                    }
+                    job = new Job(cell, app, seq++);
+                    job.rank = r;
+                    byCell.put(cell, job);
+                    queue.add(job);
+                } else {
+                    job.rank = Math.min(job.rank, r);
+                }
+                job.force |= force;
+                job.explicit |= explicit;
+                jobs.add(job);
+            }
+            if (onDone != null) {
+                Pass pass = new Pass(jobs.size(), onDone);
+                for (Job job : jobs) job.passes.add(pass);
+            }
+            queue.sort(ORDER);
+            notifyAll();
+        }
+        for (Job job : replaced) job.passes.forEach(Pass::jobDone);
+        if (jobs.isEmpty() && onDone != null) SwingUtilities.invokeLater(onDone);
+    }
+
+    /**
+     * The selected tab or its scroll position changed: rank the queued cells again. Calls are
+     * coalesced into one re-ordering per EDT turn, so it is fine to call on every scroll event.
+     */
+    void reprioritize() {
+        if (reorderPending) return;
+        synchronized (this) {
+            if (queue.isEmpty()) return;
+        }
+        reorderPending = true;
+        SwingUtilities.invokeLater(() -> {
+            reorderPending = false;
+            ToLongFunction<LaunchCell> rankOf = ranking.get();
+            synchronized (this) {
+                for (Job job : queue) {
+                    if (!job.explicit) job.rank = rankOf.applyAsLong(job.cell);
+                }
+                queue.sort(ORDER);
+                reordered++;
+            }
+        });
+    }
+
+    /** A cell's content changed (EDT): drop its queued work unless it still shows the same app. */
+    static void cellChanged(LaunchCell cell) {
+        IconRefreshScheduler s = active;
+        if (s != null) s.dropIfChanged(cell);
+    }
+
+    private void dropIfChanged(LaunchCell cell) {
+        Job job;
+        synchronized (this) {
+            job = byCell.get(cell);
+            if (job == null || job.app == cell.getApp()) return;
+            cancel(job);
+        }
+        // Off this call: a waiting caller's onDone must not run inside setApp
+        SwingUtilities.invokeLater(() -> job.passes.forEach(Pass::jobDone));
+    }
+
+    /** Caller holds the lock and completes the job's passes. */
+    private void cancel(Job job) {
+        queue.remove(job);
+        byCell.remove(job.cell, job);
+        cancelled++;
+    }
+
+    synchronized Stats stats() {
+        return new Stats(queue.size(), completed, cancelled, reordered);
+    }
+
+    /* ===================== Workers ===================== */
+
+    private void work() {
+        try {
+            while (true) {
+                List<Job> batch = take();
+                try {
+                    run(batch);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                    SwingUtilities.invokeLater(() -> finish(batch));
+                }
+                boolean idle;
+                synchronized (this) {
+                    running--;
+                    idle = queue.isEmpty() && running == 0;
+                }
+                // Keep what was learnt (winning strategies, bundles that failed) even if we crash later
+                if (idle) MacAppUtils.saveResolutionHistory();
+            }
+        } catch (InterruptedException e) {
+            // shut down
+        }
+    }
+
+    /** The head of the queue and the cells that follow it in the same tier, up to BATCH_SIZE. */
+    private synchronized List<Job> take() throws InterruptedException {
+        while (queue.isEmpty()) wait();
+        int tier = tier(queue.get(0).rank);
+        int n = 0;
+        while (n < queue.size() && n < BATCH_SIZE && tier(queue.get(n).rank) == tier) n++;
+        List<Job> batch = new ArrayList<>(queue.subList(0, n));
+        queue.subList(0, n).clear();
+        for (Job job : batch) byCell.remove(job.cell, job);
+        running++;
+        return batch;
+    }
+
+    private void run(List<Job> batch) {
+        // Cells painted from the bundle index are confirmed against the file system first. The
+        // apps are the ones captured when the cells were queued: cells are only read on the EDT.
+        Map<LaunchCell, AppComponent> unchecked = new LinkedHashMap<>();
+        for (Job job : batch) if (!job.force) unchecked.put(job.cell, job.app);
+        if (!unchecked.isEmpty()) PersistenceHelper.validateIndex(unchecked);
+
+        // Group by bundle; cells only asking for a refresh-if-changed drop out if it has not changed
+        Map<File, List<Job>> work = new LinkedHashMap<>();
+        Map<File, Boolean> stale = new HashMap<>();
+        List<File> forced = new ArrayList<>();
+        for (Job job : batch) {
+            if (job.force || stale.computeIfAbsent(job.bundle, MacAppUtils::needsIconRefresh)) {
+                work.computeIfAbsent(job.bundle, _ -> new ArrayList<>()).add(job);
+                if (job.force && !forced.contains(job.bundle)) forced.add(job.bundle);
+            }
+        }
+        List<File> staleOnly = new ArrayList<>(work.keySet());
+        staleOnly.removeAll(forced);
+
+        // A stale check may leave a bundle for a later pass when no icon worker is free; a forced
+        // refresh is completed now (its pass reports done), so it must not defer.
+        Map<File, ImageIcon> icons = new HashMap<>();
+        resolve(forced, false, icons);
+        resolve(staleOnly, true, icons);
+
+        // Resolved here, not on the EDT: canonicalises the bundle path and stats the cache
+        Map<File, String> cached = new HashMap<>();
+        for (File bundle : icons.keySet()) {
+            cached.put(bundle, MacAppUtils.getCachedIconPathForBundle(bundle));
+        }
+
+        SwingUtilities.invokeLater(() -> {
+            icons.forEach((bundle, icon) -> apply(icon, cached.get(bundle), work.get(bundle)));
+            finish(batch);
+        });
+    }
+
+    private static void resolve(List<File> bundles, boolean deferIfBusy, Map<File, ImageIcon> into) {
+        if (bundles.isEmpty()) return;
+        MacAppUtils.IconBatchResult result = MacAppUtils.refreshIconsBatch(bundles, BATCH_TIMEOUT_MS, deferIfBusy);
+        result.failures().forEach((bundle, why) ->
+            System.err.println("Icon refresh failed for " + bundle + ": " + why));
+        into.putAll(result.icons());
+    }
+
+    /** EDT. A cell whose icon path changed is journaled, as the per-cell edits are. */
+    private static void apply(ImageIcon icon, String cached, List<Job> jobs) {
+        for (Job job : jobs) {
+            LaunchCell cell = job.app.getCell();
+            if (cell == null) continue; // removed from the grid meanwhile
+            boolean pathChanged = !Objects.equals(job.app.getCustomIconPath(), cached);
+            job.app.setIcon(icon);
+            job.app.setCustomIconPath(cached);
+            if (pathChanged) LayoutJournal.cellChanged(cell);
+        }
+    }
+
+    /** EDT: the batch's cells are done; tell whoever is waiting on them. */
+    private void finish(List<Job> batch) {
+        synchronized (this) {
+            completed += batch.size();
+        }
+        for (Job job : batch) job.passes.forEach(Pass::jobDone);
+    }
+}
@@ -0,0 +1,332 @@
+package com.commander4j.launchpad;
+
+/*******************************************************************************
+ * Title:        Commander4j
+ * Description:  Icon resampling engine (box pre-reduction + separable Lanczos-2 on int[] rasters)
+ * Author:       Dave (with ChatGPT assistance)
+ * License:      GNU General Public License
+ *******************************************************************************/
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.PixelInterleavedSampleModel;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Fits an image into a transparent square, centred, keeping its aspect ratio.
+ * <p>
+ * Java2D's single bicubic drawImage from 1024px to 120px only looks at 4x4 source pixels per
+ * output pixel, so it aliases. Here a large source is first box-reduced by a power of two, in the
+ * same pass that reads it, until it is within 2x of the target; a Lanczos-2 filter widened by the
+ * remaining scale factor then finishes the job in two 1-D passes. Everything runs on premultiplied
+ * alpha so transparent edges do not pick up dark fringes, and all of it is integer arithmetic: the
+ * box sums are exact, the Lanczos weights are 12-bit fixed point.
+ * <p>
+ * Per thread, the reduced raster and the filtered rows live in scratch arrays that are reused
+ * between calls; only the result image is allocated. Filter weights are cached per (source
+ * length, target length) pair, of which icons have few.
+ */
+final class IconResampler {
+
+    private IconResampler() {}
+
+    private static final double SUPPORT = 2.0;
+    /** Largest box reduction done while reading; a source beyond 128x the target leaves the rest to Lanczos. */
+    private static final int MAX_BOX = 64;
+    /** Fixed-point scales: reduced raster channels x16, Lanczos weights x4096, filtered rows x256. */
+    private static final int SRC_BITS = 4, WEIGHT_BITS = 12, MID_BITS = 8;
+    private static final long HALF = 1L << 31;
+    /** Scratch arrays above this many elements are not kept after the call (one-off huge sources). */
+    private static final int MAX_RETAINED = 4 * 1024 * 1024;
+
+    private static final class Scratch {
+        int[] px = new int[0];    // reduced raster: premultiplied A,R,G,B per pixel, x16
+        int[] sums = new int[0];  // box sums for one reduced row: A, R*A, G*A, B*A per pixel
+        int[] row = new int[0];   // one source row as straight ARGB (layouts read via getRGB)
+        int[] mid = new int[0];   // horizontally filtered rows, 4 channels each, x256
+        int[] acc = new int[0];   // one output row being accumulated
+    }
+
+    private static final ThreadLocal<Scratch> SCRATCH = ThreadLocal.withInitial(Scratch::new);
+
+    /** Precomputed taps for one axis: for each output index, {@code count} weights starting at source {@code first}. */
+    private record Kernel(int[] first, int[] count, int[] weights, int taps) {}
+
+    private static final ConcurrentHashMap<Long, Kernel> KERNELS = new ConcurrentHashMap<>();
+
+    /** 65536 * 255 / a, for turning premultiplied channels back into straight ones. */
+    private static final int[] UNPREMULTIPLY = new int[256];
+    static {
+        for (int a = 1; a < 256; a++) UNPREMULTIPLY[a] = (255 * 65536 + a / 2) / a;
+    }
+
+    /* ===================== Public entry point ===================== */
+
+    static BufferedImage scaleToSquare(BufferedImage img, int side) {
+        int w = img.getWidth(), h = img.getHeight();
+        float scale = Math.min((float) side / w, (float) side / h);
+        int newW = Math.max(1, Math.round(w * scale));
+        int newH = Math.max(1, Math.round(h * scale));
+
+        BufferedImage out = new BufferedImage(side, side, BufferedImage.TYPE_INT_ARGB);
+        int[] dst = ((DataBufferInt) out.getRaster().getDataBuffer()).getData();
+        int x0 = (side - newW) / 2, y0 = (side - newH) / 2;
+
+        if (newW == w && newH == h) {
+            // Same size: just centre it
+            img.getRGB(0, 0, w, h, dst, y0 * side + x0, side);
+            return out;
+        }
+
+        // Box factor: halve while the source is still at least 2x the target, so the Lanczos pass
+        // only ever sees a reduction under 2x (a few taps instead of ~35 for 1024 -> 120).
+        int box = 1;
+        while (box < MAX_BOX && (w + box - 1) / box >= 2 * newW && (h + box - 1) / box >= 2 * newH) box *= 2;
+
+        Scratch s = SCRATCH.get();
+        int[] px = readReduced(img, box, s);
+        resample(px, (w + box - 1) / box, (h + box - 1) / box, dst, side, x0, y0, newW, newH, s);
+
+        if (s.px.length > MAX_RETAINED) s.px = new int[0];
+        if (s.mid.length > MAX_RETAINED) s.mid = new int[0];
+        return out;
+    }
+
+    /* ===================== Filtering ===================== */
+
+    private static void resample(int[] src, int sw, int sh, int[] dst, int dstStride, int x0, int y0,
+                                 int dw, int dh, Scratch s) {
+        Kernel kx = kernel(sw, dw);
+        Kernel ky = kernel(sh, dh);
+        int rowLen = dw * 4;
+
+        // Horizontal pass: sh rows of dw pixels, 4 premultiplied channels each
+        if (s.mid.length < sh * rowLen) s.mid = new int[sh * rowLen];
+        int[] mid = s.mid;
+        int[] kxFirst = kx.first(), kxCount = kx.count(), kxW = kx.weights();
+        int taps = kx.taps();
+        int midShift = SRC_BITS + WEIGHT_BITS - MID_BITS, midRound = 1 << (midShift - 1);
+
+        for (int y = 0; y < sh; y++) {
+            int row = y * sw * 4;
+            int m = y * rowLen;
+            for (int x = 0; x < dw; x++, m += 4) {
+                int p = row + kxFirst[x] * 4, n = kxCount[x], wo = x * taps;
+                int a = 0, r = 0, g = 0, b = 0;
+                for (int k = 0; k < n; k++, p += 4) {
+                    int wt = kxW[wo + k];
+                    a += src[p] * wt;
+                    r += src[p + 1] * wt;
+                    g += src[p + 2] * wt;
+                    b += src[p + 3] * wt;
+                }
+                mid[m] = (a + midRound) >> midShift;
+                mid[m + 1] = (r + midRound) >> midShift;
+                mid[m + 2] = (g + midRound) >> midShift;
+                mid[m + 3] = (b + midRound) >> midShift;
+            }
+        }
+
+        // Vertical pass: add whole weighted rows into an accumulator (sequential access), then pack
+        if (s.acc.length < rowLen) s.acc = new int[rowLen];
+        int[] acc = s.acc;
+        int[] kyFirst = ky.first(), kyCount = ky.count(), kyW = ky.weights();
+        int outShift = MID_BITS + WEIGHT_BITS, outRound = 1 << (outShift - 1);
+        for (int y = 0; y < dh; y++) {
+            int first = kyFirst[y], n = kyCount[y], wo = y * ky.taps();
+            Arrays.fill(acc, 0, rowLen, 0);
+            for (int k = 0; k < n; k++) {
+                int wt = kyW[wo + k];
+                int m = (first + k) * rowLen;
+                for (int i = 0; i < rowLen; i++) acc[i] += mid[m + i] * wt;
+            }
+            int d = (y0 + y) * dstStride + x0;
+            for (int x = 0, i = 0; x < dw; x++, i += 4) {
+                dst[d + x] = pack((acc[i] + outRound) >> outShift, (acc[i + 1] + outRound) >> outShift,
+                                  (acc[i + 2] + outRound) >> outShift, (acc[i + 3] + outRound) >> outShift);
+            }
+        }
+    }
+
+    private static Kernel kernel(int srcLen, int dstLen) {
+        return KERNELS.computeIfAbsent(((long) srcLen << 32) | dstLen, _ -> buildKernel(srcLen, dstLen));
+    }
+
+    private static Kernel buildKernel(int srcLen, int dstLen) {
+        double scale = (double) dstLen / srcLen;
+        double stretch = Math.max(1.0, 1.0 / scale);     // widen the filter when reducing
+        double radius = SUPPORT * stretch;
+        int taps = (int) Math.ceil(radius * 2) + 1;
+        int one = 1 << WEIGHT_BITS;
+
+        int[] first = new int[dstLen];
+        int[] count = new int[dstLen];
+        int[] weights = new int[dstLen * taps];
+
+        for (int i = 0; i < dstLen; i++) {
+            double center = (i + 0.5) / scale - 0.5;
+            int lo = Math.max(0, (int) Math.floor(center - radius));
+            int hi = Math.min(srcLen - 1, (int) Math.ceil(center + radius));
+            int n = Math.min(taps, hi - lo + 1);
+
+            double sum = 0;
+            for (int k = 0; k < n; k++) sum += lanczos((lo + k - center) / stretch);
+            // Rounded weights, with the rounding error put on the largest so each row sums to exactly one
+            int total = 0, peak = 0;
+            for (int k = 0; k < n; k++) {
+                int wt = (int) Math.round((sum != 0) ? one * lanczos((lo + k - center) / stretch) / sum : 0);
+                weights[i * taps + k] = wt;
+                total += wt;
+                if (wt > weights[i * taps + peak]) peak = k;
+            }
+            weights[i * taps + peak] += one - total;
+            first[i] = lo;
+            count[i] = n;
+        }
+        return new Kernel(first, count, weights, taps);
+    }
+
+    private static double lanczos(double x) {
+        if (x == 0) return 1.0;
+        if (x <= -SUPPORT || x >= SUPPORT) return 0.0;
+        double px = Math.PI * x;
+        return SUPPORT * Math.sin(px) * Math.sin(px / SUPPORT) / (px * px);
+    }
+
+    /* ===================== Pixel access ===================== */
+
+    /**
+     * The source, box-reduced by {@code box} (a power of two; 1 for none), as premultiplied
+     * channels in the thread's scratch raster. A 2x box averages all four pixels; a larger one
+     * averages a 2x2 grid of samples spread over it, one per quadrant, so reading costs the same
+     * per reduced pixel whatever the source size (only the last, Lanczos, step needs the full
+     * neighbourhood). Source rows are summed straight out of the data buffer for INT_ARGB and
+     * 4BYTE_ABGR (the PNG decoder's output), through getRGB otherwise; the full-size raster is
+     * never materialised, and there are no divisions per pixel.
+     */
+    private static int[] readReduced(BufferedImage img, int box, Scratch s) {
+        int w = img.getWidth(), h = img.getHeight();
+        int shift = Integer.numberOfTrailingZeros(box);
+        int ow = (w + box - 1) / box, oh = (h + box - 1) / box;
+        if (s.px.length < ow * oh * 4) s.px = new int[ow * oh * 4];
+        if (s.sums.length < ow * 4) s.sums = new int[ow * 4];
+        int[] px = s.px, sums = s.sums;
+        int step = Math.max(1, box / 2), first = step / 2;   // sample offsets within a box: first + k * step
+
+        Raster r = img.getRaster();
+        boolean untranslated = r.getSampleModelTranslateX() == 0 && r.getSampleModelTranslateY() == 0;
+        int[] ints = null;
+        byte[] bytes = null;
+        int base = 0, scan = 0, ao = 0, ro = 0, go = 0, bo = 0;
+        if (img.getType() == BufferedImage.TYPE_INT_ARGB && untranslated
+                && r.getDataBuffer() instanceof DataBufferInt db
+                && r.getSampleModel() instanceof SinglePixelPackedSampleModel sm) {
+            ints = db.getData();
+            base = db.getOffset();
+            scan = sm.getScanlineStride();
+        } else if (img.getType() == BufferedImage.TYPE_4BYTE_ABGR && untranslated
+                && r.getDataBuffer() instanceof DataBufferByte db
+                && r.getSampleModel() instanceof PixelInterleavedSampleModel sm
+                && sm.getPixelStride() == 4) {
+            bytes = db.getData();
+            base = db.getOffset();
+            scan = sm.getScanlineStride();
+            int[] off = sm.getBandOffsets();   // R, G, B, A
+            ro = off[0]; go = off[1]; bo = off[2]; ao = off[3];
+        } else {
+            if (s.row.length < w) s.row = new int[w];
+            ints = s.row;
+        }
+
+        for (int oy = 0; oy < oh; oy++) {
+            Arrays.fill(sums, 0, ow * 4, 0);
+            int y1 = Math.min(h, (oy + 1) * box);
+            for (int y = oy * box + first; y < y1; y += step) {
+                if (bytes != null) {
+                    sumRow(bytes, base + y * scan + 4 * first, ao, ro, go, bo, first, w, step, shift, sums);
+                } else if (ints == s.row) {
+                    img.getRGB(0, y, w, 1, ints, 0, w);
+                    sumRow(ints, first, first, w, step, shift, sums);
+                } else {
+                    sumRow(ints, base + y * scan + first, first, w, step, shift, sums);
+                }
+            }
+            int o = oy * ow * 4;
+            int rows = samples(y1 - oy * box, first, step);
+            if (rows == 0) {
+                // A sliver of a last row no sample fell in (never the first row: h > box)
+                System.arraycopy(px, o - ow * 4, px, o, ow * 4);
+                continue;
+            }
+            // Mean alpha and mean premultiplied colour of each box, as 32-bit fixed-point reciprocals
+            // of the sample count (computed once per row; only a partial last box needs its own)
+            long inA = (1L << (32 + SRC_BITS)) / (rows * samples(box, first, step)), inC = inA / 255;
+            for (int ox = 0, i = 0; ox < ow; ox++, i += 4, o += 4) {
+                if (ox == ow - 1 && w % box != 0) {
+                    int n = rows * samples(w - ox * box, first, step);
+                    if (n == 0) {
+                        System.arraycopy(px, o - 4, px, o, 4);   // same for a last column (w > box)
+                        break;
+                    }
+                    inA = (1L << (32 + SRC_BITS)) / n;
+                    inC = inA / 255;
+                }
+                px[o] = (int) ((sums[i] * inA + HALF) >>> 32);
+                px[o + 1] = (int) ((sums[i + 1] * inC + HALF) >>> 32);
+                px[o + 2] = (int) ((sums[i + 2] * inC + HALF) >>> 32);
+                px[o + 3] = (int) ((sums[i + 3] * inC + HALF) >>> 32);
+            }
+        }
+        if (s.row.length > MAX_RETAINED) s.row = new int[0];
+        return px;
+    }
+
+    /** Samples at {@code first, first + step, ...} that fall in a span of {@code len} pixels. */
+    private static int samples(int len, int first, int step) {
+        return (len > first) ? (len - first + step - 1) / step : 0;
+    }
+
+    /**
+     * Adds every {@code step}-th pixel of an ARGB row, from {@code x} on ({@code o} is its offset),
+     * to the sums of the box (1 &lt;&lt; shift wide) it falls in.
+     */
+    private static void sumRow(int[] data, int o, int x, int w, int step, int shift, int[] sums) {
+        for (; x < w; x += step, o += step) {
+            int p = data[o], a = p >>> 24, i = (x >> shift) << 2;
+            sums[i] += a;
+            sums[i + 1] += ((p >> 16) & 0xFF) * a;
+            sums[i + 2] += ((p >> 8) & 0xFF) * a;
+            sums[i + 3] += (p & 0xFF) * a;
+        }
+    }
+
+    /** {@link #sumRow(int[], int, int, int, int, int, int[])} for interleaved bytes with the given channel offsets. */
+    private static void sumRow(byte[] data, int o, int ao, int ro, int go, int bo, int x, int w, int step,
+                               int shift, int[] sums) {
+        for (; x < w; x += step, o += 4 * step) {
+            int a = data[o + ao] & 0xFF, i = (x >> shift) << 2;
+            sums[i] += a;
+            sums[i + 1] += (data[o + ro] & 0xFF) * a;
+            sums[i + 2] += (data[o + go] & 0xFF) * a;
+            sums[i + 3] += (data[o + bo] & 0xFF) * a;
+        }
+    }
+
+    /** Clamp premultiplied channels and store as straight (non-premultiplied) ARGB. */
+    private static int pack(int a, int r, int g, int b) {
+        int ia = clamp(a);
+        if (ia == 0) return 0;
+        int inv = UNPREMULTIPLY[ia];
+        int ir = Math.min(ia, clamp(r)), ig = Math.min(ia, clamp(g)), ib = Math.min(ia, clamp(b));
+        return (ia << 24) | (((ir * inv + 32768) >> 16) << 16) | (((ig * inv + 32768) >> 16) << 8)
+             | ((ib * inv + 32768) >> 16);
+    }
+
+    private static int clamp(int v) {
+        return (v < 0) ? 0 : Math.min(v, 255);
+    }
+}
@@ -0,0 +1,325 @@
+package com.commander4j.launchpad;
+
+/*******************************************************************************
+ * Title:        Commander4j
+ * Description:  Orders the icon resolution strategies per bundle from what won
+ *               (and what kept failing) on earlier resolutions; persisted
+ * Author:       Dave (with ChatGPT assistance)
+ * License:      GNU General Public License
+ *******************************************************************************/
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Decision table for {@code MacAppUtils.resolveIconAtAddTime}. The fixed chain (NSWorkspace for
+ * Assets.car apps, ICNS, iOS PNGs, NSWorkspace, Quick Look, system icon) is still the starting
+ * point, but every attempt is recorded - outcome and latency - per bundle and per bundle class, and
+ * the next resolution of the same bundle is routed from that history:
+ * <ul>
+ *   <li>a strategy that failed {@link #SKIP_AFTER} times in a row for a bundle is skipped (an ICNS
+ *       that is a blank stub is no longer decoded and rejected on every refresh), except on every
+ *       {@link #PROBE_EVERY}th resolution, so a strategy that failed for a passing reason (a
+ *       timed-out osascript) gets another chance;</li>
+ *   <li>the bundle's last winner is tried first once it has won {@link #PROMOTE_AFTER} times in a
+ *       row, so one timed-out NSWorkspace call does not demote it for good;</li>
+ *   <li>a bundle with no history of its own starts with the strategy that wins most often for its
+ *       class, if that is clear enough ({@link #CLASS_MIN_WINS}).</li>
+ * </ul>
+ * The system icon is the last resort and is never promoted or skipped. Bundles are keyed by the
+ * icon identity key, which changes when the app is updated, so an update starts from the default
+ * chain again.
+ * <p>
+ * The history is kept in launchpad.strategies and written out with the layout whenever a
+ * resolution has added to it; an unreadable file just means starting without history.
+ */
+public final class IconStrategyRouter {
+
+    enum Strategy { NSWORKSPACE, ICNS, IOS_PNG, QUICKLOOK, SYSTEM }
+
+    enum BundleClass { ASSETS_CAR, IOS_WRAPPER, CLASSIC }
+
+    static final int SKIP_AFTER = 3;
+    static final int PROMOTE_AFTER = 2;
+    static final int CLASS_MIN_WINS = 5;
+    static final int PROBE_EVERY = 10;
+
+    private static final int MAGIC = 0x4C505352; // "LPSR"
+    private static final int VERSION = 1;
+
+    /** Outcome counters of one strategy, for one bundle or a whole class. */
+    private static final class Tally {
+        int wins, failures, consecutiveFailures;
+        int timedAttempts;
+        long totalNanos;
+
+        void record(boolean won, long nanos) {
+            if (won) {
+                wins++;
+                consecutiveFailures = 0;
+            } else {
+                failures++;
+                consecutiveFailures++;
+            }
+            if (nanos >= 0) {
+                timedAttempts++;
+                totalNanos += nanos;
+            }
+        }
+    }
+
+    private static final class BundleRecord {
+        final BundleClass bundleClass;
+        final EnumMap<Strategy, Tally> tallies = new EnumMap<>(Strategy.class);
+        Strategy winner;
+        int winnerStreak;
+        int routes;
+
+        BundleRecord(BundleClass bundleClass) {
+            this.bundleClass = bundleClass;
+        }
+    }
+
+    /** Per-strategy counters for one bundle class, see {@link #stats()}. */
+    public record StrategyStats(int wins, int failures, double meanMillis) {}
+
+    /** Point-in-time view of the table, see {@link MacAppUtils#getIconStrategyStats()}. */
+    public record Stats(int bundlesTracked, long routed, long winnerFirst, long skipped,
+                        Map<BundleClass, Map<Strategy, StrategyStats>> byClass) {}
+
+    private final Path file;
+    private final Map<String, BundleRecord> bundles = new HashMap<>();
+    private final EnumMap<BundleClass, EnumMap<Strategy, Tally>> classes = new EnumMap<>(BundleClass.class);
+    private long routed, winnerFirst, skipped;
+    private boolean dirty;
+
+    IconStrategyRouter(Path file) {
+        this.file = file;
+        load();
+    }
+
+    /** The default chain for a class: the order used before anything is known. */
+    static List<Strategy> defaultChain(BundleClass c) {
+        return switch (c) {
+            case ASSETS_CAR -> List.of(Strategy.NSWORKSPACE, Strategy.ICNS, Strategy.IOS_PNG,
+                                       Strategy.QUICKLOOK, Strategy.SYSTEM);
+            case IOS_WRAPPER -> List.of(Strategy.NSWORKSPACE);
+            case CLASSIC -> List.of(Strategy.ICNS, Strategy.IOS_PNG, Strategy.NSWORKSPACE, Strategy.SYSTEM);
+        };
+    }
+
+    /** The order to try the strategies in for this bundle; record each attempt with {@link #record}. */
+    synchronized List<Strategy> route(String bundleKey, BundleClass c) {
+        routed++;
+        return order(bundleKey, c, true);
+    }
+
+    /** The strategy {@link #route} would try first, without counting it as a routing. */
+    synchronized Strategy first(String bundleKey, BundleClass c) {
+        return order(bundleKey, c, false).get(0);
+    }
+
+    /**
+     * The strategy that last produced this bundle's icon, or null if none is known. Read-only:
+     * nothing is counted, so other render sizes (the HiDPI variant) can follow it without skewing
+     * the table.
+     */
+    synchronized Strategy winner(String bundleKey, BundleClass c) {
+        BundleRecord rec = bundles.get(bundleKey);
+        return (rec != null && rec.bundleClass == c) ? rec.winner : null;
+    }
+
+    private List<Strategy> order(String bundleKey, BundleClass c, boolean count) {
+        List<Strategy> order = new ArrayList<>(defaultChain(c));
+        BundleRecord rec = bundles.get(bundleKey);
+        if (rec != null && rec.bundleClass != c) rec = null;  // the bundle changed shape: no history
+
+        Strategy first;
+        if (rec != null) {
+            first = (rec.winner != null && rec.winnerStreak >= PROMOTE_AFTER) ? rec.winner : null;
+        } else {
+            first = classLeader(c);
+        }
+        if (first != null && first != order.get(0) && first != Strategy.SYSTEM && order.remove(first)) {
+            order.add(0, first);
+            if (count && rec != null) winnerFirst++;
+        }
+
+        if (rec != null && count) rec.routes++;
+        boolean probe = (rec != null && rec.routes % PROBE_EVERY == 0);
+
+        if (rec != null && !probe) {
+            List<Strategy> kept = new ArrayList<>(order.size());
+            for (Strategy s : order) {
+                Tally t = rec.tallies.get(s);
+                if (s != Strategy.SYSTEM && t != null && t.consecutiveFailures >= SKIP_AFTER) {
+                    if (count) skipped++;
+                } else {
+                    kept.add(s);
+                }
+            }
+            // Everything known to fail: fall back to the full chain rather than to nothing
+            if (!kept.isEmpty()) order = kept;
+        }
+        return order;
+    }
+
+    /**
+     * One attempt: {@code won} if it produced a usable icon. {@code nanos} is its latency, or -1
+     * when it was not measured (a result prefetched by a batch).
+     */
+    synchronized void record(String bundleKey, BundleClass c, Strategy s, boolean won, long nanos) {
+        BundleRecord rec = bundles.get(bundleKey);
+        if (rec == null || rec.bundleClass != c) {
+            rec = new BundleRecord(c);
+            bundles.put(bundleKey, rec);
+        }
+        rec.tallies.computeIfAbsent(s, _ -> new Tally()).record(won, nanos);
+        if (won) {
+            rec.winnerStreak = (rec.winner == s) ? rec.winnerStreak + 1 : 1;
+            rec.winner = s;
+        } else if (rec.winner == s) {
+            rec.winnerStreak = 0;  // the winner let us down: back to the default order until it wins again
+        }
+        classes.computeIfAbsent(c, _ -> new EnumMap<>(Strategy.class))
+               .computeIfAbsent(s, _ -> new Tally()).record(won, nanos);
+        dirty = true;
+    }
+
+    /** Keep only the records of these bundle keys (the apps currently placed). */
+    synchronized void retain(Collection<String> bundleKeys) {
+        Set<String> keep = new HashSet<>(bundleKeys);
+        if (bundles.keySet().retainAll(keep)) dirty = true;
+    }
+
+    synchronized Stats stats() {
+        Map<BundleClass, Map<Strategy, StrategyStats>> byClass = new EnumMap<>(BundleClass.class);
+        classes.forEach((c, tallies) -> {
+            Map<Strategy, StrategyStats> m = new EnumMap<>(Strategy.class);
+            tallies.forEach((s, t) -> m.put(s, new StrategyStats(t.wins, t.failures,
+                    (t.timedAttempts > 0) ? t.totalNanos / 1e6 / t.timedAttempts : 0)));
+            byClass.put(c, m);
+        });
+        return new Stats(bundles.size(), routed, winnerFirst, skipped, byClass);
+    }
+
+    /** The strategy that wins most for a class, if it has won enough and more often than it failed. */
+    private Strategy classLeader(BundleClass c) {
+        EnumMap<Strategy, Tally> tallies = classes.get(c);
+        if (tallies == null) return null;
+        Strategy best = null;
+        int bestWins = 0;
+        for (Map.Entry<Strategy, Tally> e : tallies.entrySet()) {
+            Tally t = e.getValue();
+            if (t.wins > bestWins && t.wins > t.failures) {
+                best = e.getKey();
+                bestWins = t.wins;
+            }
+        }
+        return (bestWins >= CLASS_MIN_WINS) ? best : null;
+    }
+
+    /* ===================== Persistence ===================== */
+
+    private void load() {
+        if (!Files.exists(file)) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return;
+            int nClasses = in.readInt();
+            for (int i = 0; i < nClasses; i++) {
+                BundleClass c = BundleClass.values()[in.readByte()];
+                EnumMap<Strategy, Tally> tallies = new EnumMap<>(Strategy.class);
+                readTallies(in, tallies);
+                classes.put(c, tallies);
+            }
+            int nBundles = in.readInt();
+            for (int i = 0; i < nBundles; i++) {
+                String key = in.readUTF();
+                BundleRecord rec = new BundleRecord(BundleClass.values()[in.readByte()]);
+                int w = in.readByte();
+                rec.winner = (w >= 0) ? Strategy.values()[w] : null;
+                rec.winnerStreak = in.readInt();
+                rec.routes = in.readInt();
+                readTallies(in, rec.tallies);
+                bundles.put(key, rec);
+            }
+        } catch (IOException | RuntimeException e) {
+            // unreadable history is worth nothing: drop it and let the default chain decide
+            bundles.clear();
+            classes.clear();
+        }
+    }
+
+    synchronized void save() {
+        if (!dirty) return;
+        try {
+            LayoutStore.writeBytes(encode(), file);
+            dirty = false;
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private byte[] encode() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(256 + bundles.size() * 128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(classes.size());
+        for (Map.Entry<BundleClass, EnumMap<Strategy, Tally>> e : classes.entrySet()) {
+            out.writeByte(e.getKey().ordinal());
+            writeTallies(out, e.getValue());
+        }
+        out.writeInt(bundles.size());
+        for (Map.Entry<String, BundleRecord> e : bundles.entrySet()) {
+            BundleRecord rec = e.getValue();
+            out.writeUTF(e.getKey());
+            out.writeByte(rec.bundleClass.ordinal());
+            out.writeByte((rec.winner != null) ? rec.winner.ordinal() : -1);
+            out.writeInt(rec.winnerStreak);
+            out.writeInt(rec.routes);
+            writeTallies(out, rec.tallies);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static void readTallies(DataInputStream in, EnumMap<Strategy, Tally> into) throws IOException {
+        int n = in.readByte();
+        for (int i = 0; i < n; i++) {
+            Tally t = new Tally();
+            Strategy s = Strategy.values()[in.readByte()];
+            t.wins = in.readInt();
+            t.failures = in.readInt();
+            t.consecutiveFailures = in.readInt();
+            t.timedAttempts = in.readInt();
+            t.totalNanos = in.readLong();
+            into.put(s, t);
+        }
+    }
+
+    private static void writeTallies(DataOutputStream out, EnumMap<Strategy, Tally> tallies) throws IOException {
+        out.writeByte(tallies.size());
+        for (Map.Entry<Strategy, Tally> e : tallies.entrySet()) {
+            Tally t = e.getValue();
+            out.writeByte(e.getKey().ordinal());
+            out.writeInt(t.wins);
+            out.writeInt(t.failures);
+            out.writeInt(t.consecutiveFailures);
+            out.writeInt(t.timedAttempts);
+            out.writeLong(t.totalNanos);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.commander4j.launchpad;
+
+/*******************************************************************************
+ * Title:        Commander4j
+ * Description:  Alpha-coverage check that reads the raster directly
+ * Author:       Dave (with ChatGPT assistance)
+ * License:      GNU General Public License
+ *******************************************************************************/
+
+import java.awt.image.BufferedImage;
+import java.awt.image.ComponentSampleModel;
+import java.awt.image.DataBufferByte;
+import java.awt.image.DataBufferInt;
+import java.awt.image.Raster;
+import java.awt.image.SinglePixelPackedSampleModel;
+
+/**
+ * Decides whether an icon has visible content: at least 0.5% of its pixels (and at least 10)
+ * with alpha above 10/255. Same rule as the old getRGB loop, but:
+ * <ul>
+ *   <li>images without alpha are visible by definition;</li>
+ *   <li>INT_ARGB(_PRE) and 4BYTE_ABGR(_PRE) rasters are read straight from their data arrays;</li>
+ *   <li>rows are counted from the middle outwards and the count stops as soon as the threshold
+ *       is met, so ordinary icons (opaque centre, transparent margins) are accepted after a few
+ *       rows; only sparse or blank images are read in full.</li>
+ * </ul>
+ * Every pixel is counted at most once and the verdict rests on the count alone, so it is exactly
+ * the verdict of a full scan, whatever the order.
+ */
+final class IconVisibility {
+
+    private IconVisibility() {}
+
+    private static final int ALPHA_MIN = 10;
+
+    static boolean hasVisibleContent(BufferedImage img) {
+        if (img == null) return false;
+        int w = img.getWidth(), h = img.getHeight();
+        if (w <= 0 || h <= 0) return false;
+        if (!img.getColorModel().hasAlpha()) return true;
+
+        AlphaReader alpha = alphaReader(img);
+        int n = w * h;
+        int threshold = Math.max(10, n / 200);
+
+        // Middle row, then alternately below and above it
+        int opaque = 0;
+        for (int k = 0; k < h; k++) {
+            int y = h / 2 + (((k & 1) == 0) ? k / 2 : -(k + 1) / 2);
+            for (int i = y * w, end = i + w; i < end; i++) {
+                if (alpha.at(i) > ALPHA_MIN && ++opaque >= threshold) return true;
+            }
+        }
+        return false;
+    }
+
+    /* ===================== Raster access ===================== */
+
+    /** Alpha (0..255) of the i-th pixel in row-major order. */
+    private interface AlphaReader {
+        int at(int i);
+    }
+
+    private static AlphaReader alphaReader(BufferedImage img) {
+        Raster r = img.getRaster();
+        int w = img.getWidth();
+
+        switch (img.getType()) {
+            case BufferedImage.TYPE_INT_ARGB:
+            case BufferedImage.TYPE_INT_ARGB_PRE:
+                if (r.getDataBuffer() instanceof DataBufferInt db
+                        && r.getSampleModel() instanceof SinglePixelPackedSampleModel sm
+                        && r.getSampleModelTranslateX() == 0 && r.getSampleModelTranslateY() == 0) {
+                    int[] px = db.getData();
+                    int base = db.getOffset();
+                    int scan = sm.getScanlineStride();
+                    if (scan == w) return i -> px[base + i] >>> 24;
+                    return i -> px[base + (i / w) * scan + (i % w)] >>> 24;
+                }
+                break;
+            case BufferedImage.TYPE_4BYTE_ABGR:
+            case BufferedImage.TYPE_4BYTE_ABGR_PRE:
+                if (r.getDataBuffer() instanceof DataBufferByte db
+                        && r.getSampleModel() instanceof ComponentSampleModel sm
+                        && r.getSampleModelTranslateX() == 0 && r.getSampleModelTranslateY() == 0) {
+                    byte[] px = db.getData();
+                    int base = db.getOffset() + sm.getBandOffsets()[3];
+                    int scan = sm.getScanlineStride();
+                    int step = sm.getPixelStride();
+                    return i -> px[base + (i / w) * scan + (i % w) * step] & 0xFF;
+                }
+                break;
+            default:
+                break;
+        }
+
+        // Any other layout (indexed, custom PNG rasters...): go through the alpha raster if there is one
+        Raster a = img.getAlphaRaster();
+        if (a != null) {
+            int ax = a.getMinX(), ay = a.getMinY();
+            int shift = Math.max(0, a.getSampleModel().getSampleSize(0) - 8); // 16-bit PNGs
+            return i -> a.getSample(ax + i % w, ay + i / w, 0) >>> shift;
+        }
+        return i -> img.getRGB(i % w, i / w) >>> 24;
+    }
+}
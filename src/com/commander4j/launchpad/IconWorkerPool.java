@@ -0,0 +1,341 @@
+package com.commander4j.launchpad;
+
+/*******************************************************************************
+ * Title:        Commander4j
+ * Description:  Pool of long-lived osascript/JXA workers for NSWorkspace icon extraction
+ * Author:       Dave (with ChatGPT assistance)
+ * License:      GNU General Public License
+ *******************************************************************************/
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Each worker is one {@code osascript -l JavaScript} process running a small read-eval loop, so
+ * hundreds of icons share a handful of process spawns and JavaScriptCore start-ups.
+ * <p>
+ * Line protocol on the worker's stdin/stdout (tab separated, one request per line):
+ * <pre>
+ *   PING &lt;id&gt;                               →  &lt;id&gt; PONG
+ *   ICON &lt;id&gt; &lt;dim&gt; &lt;bundle&gt; &lt;outPng&gt;     →  &lt;id&gt; OK   |   &lt;id&gt; ERR &lt;message&gt;
+ *   BATCH &lt;id&gt; &lt;dim&gt; &lt;bundle1&gt; &lt;out1&gt; …   →  &lt;id&gt; &lt;i&gt; OK | &lt;id&gt; &lt;i&gt; ERR &lt;message&gt; (per item), then &lt;id&gt; END
+ * </pre>
+ * Configuration (system properties):
+ * <ul>
+ *   <li>{@code launchpad.iconWorker.command}  – worker executable + args; the script path is appended.
+ *       Defaults to {@code /usr/bin/osascript -l JavaScript}. Point it at a stub script to run on Linux.</li>
+ *   <li>{@code launchpad.iconWorker.poolSize} – number of workers (default 2).</li>
+ *   <li>{@code launchpad.iconWorker.timeoutMs} – per-request timeout; a worker that misses it is
+ *       killed and respawned (default 4000).</li>
+ * </ul>
+ */
+final class IconWorkerPool {
+
+    private static final String DEFAULT_COMMAND = "/usr/bin/osascript -l JavaScript";
+    private static final long HEALTH_CHECK_IDLE_MS = 15_000;
+    private static final long PING_TIMEOUT_MS = 1_500;
+
+    private static final String SCRIPT =
+        "ObjC.import('AppKit');\n" +
+        "ObjC.import('Foundation');\n" +
+        "function run(argv) {\n" +
+        "  var stdin = $.NSFileHandle.fileHandleWithStandardInput;\n" +
+        "  var stdout = $.NSFileHandle.fileHandleWithStandardOutput;\n" +
+        "  var ws = $.NSWorkspace.sharedWorkspace;\n" +
+        "  var buf = '';\n" +
+        "  function reply(s) { stdout.writeData($(s + '\\n').dataUsingEncoding($.NSUTF8StringEncoding)); }\n" +
+        "  function icon(dim, bundle, out) {\n" +
+        "    var img = ws.iconForFile(bundle);\n" +
+        "    img.setSize({width: dim, height: dim});\n" +
+        "    var rep = $.NSBitmapImageRep.imageRepWithData(img.TIFFRepresentation);\n" +
+        "    var png = rep.representationUsingTypeProperties($.NSBitmapImageFileTypePNG, $.NSDictionary.dictionary);\n" +
+        "    return png.writeToFileAtomically(out, true);\n" +
+        "  }\n" +
+        "  while (true) {\n" +
+        "    var data = stdin.availableData;\n" +
+        "    if (data.length == 0) break;\n" +
+        "    buf += $.NSString.alloc.initWithDataEncoding(data, $.NSUTF8StringEncoding).js;\n" +
+        "    var nl;\n" +
+        "    while ((nl = buf.indexOf('\\n')) >= 0) {\n" +
+        "      var f = buf.substring(0, nl).split('\\t');\n" +
+        "      buf = buf.substring(nl + 1);\n" +
+        "      try {\n" +
+        "        if (f[0] == 'PING') reply(f[1] + '\\tPONG');\n" +
+        "        else if (f[0] == 'ICON') reply(f[1] + (icon(parseInt(f[2]), f[3], f[4]) ? '\\tOK' : '\\tERR\\twrite failed'));\n" +
+        "        else if (f[0] == 'BATCH') {\n" +
+        "          for (var i = 3, k = 0; i + 1 < f.length; i += 2, k++) {\n" +
+        "            try { reply(f[1] + '\\t' + k + (icon(parseInt(f[2]), f[i], f[i + 1]) ? '\\tOK' : '\\tERR\\twrite failed')); }\n" +
+        "            catch (e) { reply(f[1] + '\\t' + k + '\\tERR\\t' + String(e).replace(/[\\t\\n]/g, ' ')); }\n" +
+        "          }\n" +
+        "          reply(f[1] + '\\tEND');\n" +
+        "        }\n" +
+        "        else reply(f[1] + '\\tERR\\tunknown command');\n" +
+        "      } catch (e) { reply(f[1] + '\\tERR\\t' + String(e).replace(/[\\t\\n]/g, ' ')); }\n" +
+        "    }\n" +
+        "  }\n" +
+        "}\n";
+
+    private final List<String> command;
+    private final int poolSize;
+    private final long timeoutMs;
+    private final BlockingQueue<Worker> idle;
+    private final AtomicLong ids = new AtomicLong();
+    private Path scriptFile;
+
+    IconWorkerPool() {
+        this(Arrays.asList(System.getProperty("launchpad.iconWorker.command", DEFAULT_COMMAND).trim().split("\\s+")),
+             Integer.getInteger("launchpad.iconWorker.poolSize", 2),
+             Long.getLong("launchpad.iconWorker.timeoutMs", 4000L));
+    }
+
+    IconWorkerPool(List<String> command, int poolSize, long timeoutMs) {
+        this.command = List.copyOf(command);
+        this.poolSize = Math.max(1, poolSize);
+        this.timeoutMs = Math.max(500, timeoutMs);
+        this.idle = new ArrayBlockingQueue<>(this.poolSize);
+        for (int i = 0; i < this.poolSize; i++) idle.add(new Worker(i));
+        Runtime.getRuntime().addShutdownHook(new Thread(this::shutdown, "lp-iconworker-shutdown"));
+    }
+
+    /** True if the worker executable exists (and, for the default osascript, we are on macOS). */
+    boolean isAvailable() {
+        if (command.isEmpty()) return false;
+        if (DEFAULT_COMMAND.equals(String.join(" ", command))) {
+            String os = System.getProperty("os.name", "").toLowerCase(Locale.ROOT);
+            if (!os.contains("mac")) return false;
+        }
+        return Files.isExecutable(Paths.get(command.get(0)));
+    }
+
+    /** Outcome of {@link #renderIcon}. NO_WORKER: every worker stayed busy, nothing was attempted. */
+    enum Result { OK, FAILED, NO_WORKER }
+
+    /**
+     * Ask a worker to write the NSWorkspace icon of {@code bundle} at {@code dim} px to {@code outPng}.
+     * OK only if the worker reported success and the file is non-empty.
+     */
+    Result renderIcon(Path bundle, int dim, Path outPng) {
+        String b = bundle.toAbsolutePath().toString();
+        String o = outPng.toAbsolutePath().toString();
+        if (hasControlChars(b) || hasControlChars(o)) return Result.FAILED;
+
+        Worker w = acquire(timeoutMs);
+        if (w == null) return Result.NO_WORKER;
+        try {
+            String reply = w.call("ICON", dim + "\t" + b + "\t" + o, timeoutMs);
+            boolean ok = reply != null && reply.startsWith("OK")
+                && Files.exists(outPng) && Files.size(outPng) > 0;
+            return ok ? Result.OK : Result.FAILED;
+        } catch (IOException e) {
+            return Result.FAILED;
+        } finally {
+            idle.offer(w);
+        }
+    }
+
+    /**
+     * Render many icons with one request to one worker. {@code timeoutMs} bounds the wait for a free
+     * worker and then the whole batch. The result has one entry per bundle: {@code "OK"},
+     * {@code "ERR <message>"}, or null if the batch timed out (or the worker died) before that item
+     * was answered. The result itself is null if no worker became free: nothing was attempted.
+     */
+    String[] renderBatch(List<Path> bundles, List<Path> outPngs, int dim, long timeoutMs) {
+        String[] results = new String[bundles.size()];
+        StringBuilder args = new StringBuilder().append(dim);
+        List<Integer> sent = new ArrayList<>();
+        for (int i = 0; i < bundles.size(); i++) {
+            String b = bundles.get(i).toAbsolutePath().toString();
+            String o = outPngs.get(i).toAbsolutePath().toString();
+            if (hasControlChars(b) || hasControlChars(o)) {
+                results[i] = "ERR unsupported path";
+                continue;
+            }
+            args.append('\t').append(b).append('\t').append(o);
+            sent.add(i);
+        }
+        if (sent.isEmpty()) return results;
+
+        Worker w = acquire(Math.max(timeoutMs, this.timeoutMs));
+        if (w == null) return null;
+        try {
+            w.callBatch(args.toString(), Math.max(500, timeoutMs), (k, reply) -> {
+                if (k >= 0 && k < sent.size()) {
+                    int i = sent.get(k);
+                    boolean ok = reply.startsWith("OK") && outPngs.get(i).toFile().length() > 0;
+                    results[i] = ok ? "OK" : reply.replace('\t', ' ');
+                }
+            });
+        } catch (IOException ignore) {
+            // Timed out or died part-way: items already answered keep their results.
+        } finally {
+            idle.offer(w);
+        }
+        return results;
+    }
+
+    void shutdown() {
+        List<Worker> all = new ArrayList<>();
+        idle.drainTo(all);
+        for (Worker w : all) w.stop();
+    }
+
+    /** An idle worker, waiting up to {@code waitMs} for one; null if none became free. */
+    private Worker acquire(long waitMs) {
+        Worker w;
+        try {
+            w = idle.poll(waitMs, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+        if (w == null) return null;
+        // Health check: a worker that has sat idle for a while is pinged before reuse.
+        if (w.isRunning() && System.currentTimeMillis() - w.lastUsed > HEALTH_CHECK_IDLE_MS) {
+            try {
+                String pong = w.call("PING", null, PING_TIMEOUT_MS);
+                if (!"PONG".equals(pong)) w.stop();
+            } catch (IOException e) {
+                w.stop();
+            }
+        }
+        return w;
+    }
+
+    private static boolean hasControlChars(String s) {
+        return s.indexOf('\t') >= 0 || s.indexOf('\n') >= 0 || s.indexOf('\r') >= 0;
+    }
+
+    private synchronized Path scriptFile() throws IOException {
+        if (scriptFile == null || !Files.exists(scriptFile)) {
+            scriptFile = Files.createTempFile("lp-iconworker-", ".js");
+            Files.writeString(scriptFile, SCRIPT, StandardCharsets.UTF_8);
+            scriptFile.toFile().deleteOnExit();
+        }
+        return scriptFile;
+    }
+
+    /* ===================== Worker ===================== */
+
+    private final class Worker {
+        private final int slot;
+        private Process proc;
+        private BufferedWriter toWorker;
+        private BlockingQueue<String> replies;
+        private volatile long lastUsed;
+
+        Worker(int slot) { this.slot = slot; }
+
+        boolean isRunning() { return proc != null && proc.isAlive(); }
+
+        /** Send one request and wait for the reply carrying its id; the payload after the id is returned. */
+        String call(String verb, String args, long waitMs) throws IOException {
+            if (!isRunning()) start();
+            String id = Long.toString(ids.incrementAndGet());
+            String line = verb + "\t" + id + ((args != null) ? "\t" + args : "");
+            try {
+                toWorker.write(line);
+                toWorker.write('\n');
+                toWorker.flush();
+
+                long deadline = System.currentTimeMillis() + waitMs;
+                while (true) {
+                    long left = deadline - System.currentTimeMillis();
+                    String r = (left > 0) ? replies.poll(left, TimeUnit.MILLISECONDS) : null;
+                    if (r == null) {
+                        // Hung (or died): kill it; the next call respawns a fresh process.
+                        stop();
+                        throw new IOException("icon worker " + slot + " timed out");
+                    }
+                    int tab = r.indexOf('\t');
+                    if (tab > 0 && r.substring(0, tab).equals(id)) return r.substring(tab + 1);
+                    // Anything else is noise (e.g. osascript warnings); keep waiting.
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stop();
+                throw new IOException("interrupted", e);
+            } catch (IOException e) {
+                stop();
+                throw e;
+            } finally {
+                lastUsed = System.currentTimeMillis();
+            }
+        }
+
+        /** Send a BATCH request and feed each per-item reply to {@code onItem} until END. */
+        void callBatch(String args, long waitMs, java.util.function.BiConsumer<Integer, String> onItem) throws IOException {
+            if (!isRunning()) start();
+            String id = Long.toString(ids.incrementAndGet());
+            try {
+                toWorker.write("BATCH\t" + id + "\t" + args);
+                toWorker.write('\n');
+                toWorker.flush();
+
+                long deadline = System.currentTimeMillis() + waitMs;
+                while (true) {
+                    long left = deadline - System.currentTimeMillis();
+                    String r = (left > 0) ? replies.poll(left, TimeUnit.MILLISECONDS) : null;
+                    if (r == null) {
+                        stop();
+                        throw new IOException("icon worker " + slot + " batch timed out");
+                    }
+                    String[] f = r.split("\t", 3);
+                    if (f.length < 2 || !f[0].equals(id)) continue;
+                    if ("END".equals(f[1])) return;
+                    try {
+                        onItem.accept(Integer.parseInt(f[1]), (f.length > 2) ? f[2] : "");
+                    } catch (NumberFormatException ignore) {}
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                stop();
+                throw new IOException("interrupted", e);
+            } catch (IOException e) {
+                stop();
+                throw e;
+            } finally {
+                lastUsed = System.currentTimeMillis();
+            }
+        }
+
+        private void start() throws IOException {
+            List<String> cmd = new ArrayList<>(command);
+            cmd.add(scriptFile().toString());
+            Process p = ProcessRunner.start(new ProcessBuilder(cmd)
+                    .redirectError(ProcessBuilder.Redirect.DISCARD)
+                    .directory(new File(System.getProperty("java.io.tmpdir"))), timeoutMs);
+            if (p == null) throw new IOException("no process slot free for icon worker " + slot);
+            BlockingQueue<String> q = new LinkedBlockingQueue<>();
+            ProcessRunner.drain(p.getInputStream(), q::offer);
+
+            proc = p;
+            replies = q;
+            toWorker = new BufferedWriter(new OutputStreamWriter(p.getOutputStream(), StandardCharsets.UTF_8));
+            lastUsed = System.currentTimeMillis();
+        }
+
+        void stop() {
+            if (proc == null) return;
+            try { toWorker.close(); } catch (IOException ignore) {}
+            proc.destroyForcibly();
+            proc = null;
+            toWorker = null;
+            replies = null;
+        }
+    }
+}
@@ -19,25 +19,19 @@ import java.awt.event.ActionListener;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.io.File;
-import java.nio.file.FileVisitOption;
-import java.nio.file.Files;
+import java.io.IOException;
 import java.nio.file.Path;
-import java.nio.file.Paths;
 
 import java.util.ArrayList;
-import java.util.LinkedHashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
-import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.stream.Stream;
+import java.util.Map;
+import java.util.function.ToLongFunction;
 
 import java.awt.Cursor;
 import java.awt.Window;
 
 import javax.swing.ImageIcon;
-import javax.swing.JComponent;
 import javax.swing.JFileChooser;
 import javax.swing.JFrame;
 import javax.swing.JOptionPane;
@@ -65,6 +59,24 @@ public class JLaunchPad extends JFrame
     public static String version = "2.02";
 
     private final JTabbedPane tabs;
+    private LaunchTabPanel visiblePanel;
+    private transient FolderImporter folderImport;
+
+    // Idle-time build of the tabs next to the selected one (-Dlaunchpad.prefetchTabs=false to disable)
+    private static final boolean PREFETCH_TABS =
+        Boolean.parseBoolean(System.getProperty("launchpad.prefetchTabs", "true"));
+    private final javax.swing.Timer prefetchTimer = new javax.swing.Timer(1500, _ -> prefetchNeighbourTabs());
+
+    // Live invalidation when placed bundles are updated, removed or moved (-Dlaunchpad.watchBundles=false to disable)
+    private static final boolean WATCH_BUNDLES =
+        Boolean.parseBoolean(System.getProperty("launchpad.watchBundles", "true"));
+    private static final long WATCH_QUIET_MS = 1_000;
+    private static final long WATCH_MAX_DELAY_MS = 10_000;
+    private transient BundleWatcher bundleWatcher;
+
+    // Background icon refreshes, viewport of the selected tab first (see IconRefreshScheduler)
+    private final transient IconRefreshScheduler iconRefresh = new IconRefreshScheduler(this::iconRanking,
+        Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() / 2)));
 
     public JLaunchPad()
     {
@@ -108,6 +120,7 @@ public class JLaunchPad extends JFrame
                 JScrollPane sp = wrapPanel(panel);
                 // Allow drops when pointer is over the scroller/viewport
                 sp.setTransferHandler(sharedDropHandler);
+                LayoutJournal.tabAdded(tabs.getTabCount(), name);
                 tabs.addTab(name, sp);
                 tabs.setSelectedComponent(sp);
             }
@@ -130,6 +143,7 @@ public class JLaunchPad extends JFrame
                 if (name != null && !name.isBlank())
                 {
                     tabs.setTitleAt(selected, name);
+                    LayoutJournal.tabRenamed(selected, name);
                 }
             }
         });
@@ -148,6 +162,8 @@ public class JLaunchPad extends JFrame
 
                 if (result == JOptionPane.YES_OPTION)
                 {
+                    LaunchPadUtils.forgetPanel(panelFromTabIndex(selected));
+                    LayoutJournal.tabRemoved(selected);
                     tabs.remove(selected);
                 }
             }
@@ -262,9 +278,8 @@ public class JLaunchPad extends JFrame
 
         // Ensure all existing tab components (added by loadState) have our drop handler
         attachDropHandlerToAllTabComponents(sharedDropHandler);
-
-        // Reassert popups on all cells after load (so right-click works immediately)
-        reassertPopupsAllTabs();
+        watchMaterialization();
+        prefetchTimer.setRepeats(false);
 
         // If no tabs loaded, add a default
         if (tabs.getTabCount() == 0)
@@ -275,6 +290,20 @@ public class JLaunchPad extends JFrame
             tabs.addTab("Default", sp);
         }
 
+        // Icon refresh workers; tab switches and scrolling re-order their queue from here on
+        iconRefresh.start();
+
+        // Only the visible tab keeps its icons (pinned in the memory cache); hidden tabs release
+        // theirs and re-acquire them from the cache / disk tier when selected again.
+        tabs.addChangeListener(_ -> onSelectedTabChanged());
+        onSelectedTabChanged();
+
+        // From here on every edit is journaled and saved in the background (crash-safe);
+        // the full save on exit below remains the checkpoint.
+        tabs.addChangeListener(_ -> LayoutJournal.tabSelected(tabs.getSelectedIndex()));
+        PersistenceHelper.startJournal(tabs);
+        if (WATCH_BUNDLES) startBundleWatcher();
+
         // Save on exit
         addWindowListener(new WindowAdapter()
         {
@@ -311,61 +340,192 @@ public class JLaunchPad extends JFrame
 
     /**
      * After the window is visible, walk every occupied cell and re-resolve the icon ONLY for
-     * apps whose bundle has changed since its cached PNG was written (MacAppUtils.needsIconRefresh).
-     * Resolution (which may spawn osascript/qlmanage) runs off the EDT on a small bounded pool so
-     * we never fire hundreds of subprocesses at once; each result is pushed back via invokeLater.
+     * apps whose bundle has changed since its cached icon was written (MacAppUtils.needsIconRefresh).
+     * The cells are queued on the icon refresh scheduler, which works through the selected tab's
+     * viewport first and resolves stale bundles in batches off the EDT.
      */
     private void startBackgroundIconRefresh() {
-        // Collect occupied cells across all tabs on the EDT.
+        // Collect occupied cells across all built tabs on the EDT; the others get the same pass
+        // when they are built (see watchMaterialization).
         final List<LaunchCell> occupied = new ArrayList<>();
         for (int i = 0; i < tabs.getTabCount(); i++) {
             LaunchTabPanel p = panelFromTabIndex(i);
-            if (p == null) continue;
-            for (int c = 0; c < p.getComponentCount(); c++) {
-                if (p.getComponent(c) instanceof LaunchCell cell && !cell.isEmpty()) {
-                    occupied.add(cell);
-                }
+            if (p == null || !p.isMaterialized()) continue;
+            occupied.addAll(occupiedCells(p));
+        }
+        iconRefresh.refreshStale(occupied);
+    }
+
+    /**
+     * Rank of each cell for the icon refresh queue, as things stand now (EDT): the selected tab's
+     * viewport, the rest of that tab, then the other tabs by distance from the selected one; top to
+     * bottom within each.
+     */
+    private ToLongFunction<LaunchCell> iconRanking() {
+        int selected = tabs.getSelectedIndex();
+        LaunchTabPanel current = currentPanel();
+        Rectangle view = (current != null) ? current.getVisibleRect() : new Rectangle();
+        Map<LaunchTabPanel, Integer> tabIndex = new IdentityHashMap<>();
+        for (int i = 0; i < tabs.getTabCount(); i++) {
+            LaunchTabPanel p = panelFromTabIndex(i);
+            if (p != null) tabIndex.put(p, i);
+        }
+        return cell -> {
+            LaunchTabPanel p = cell.getPanel();
+            if (p == current) {
+                boolean visible = view.intersects(p.cellBounds(cell.getIndex()));
+                return IconRefreshScheduler.rank(visible ? IconRefreshScheduler.VISIBLE
+                                                         : IconRefreshScheduler.SELECTED_TAB, cell.getIndex());
             }
+            Integer t = tabIndex.get(p);
+            long distance = (t != null && selected >= 0) ? Math.abs(t - selected) : tabs.getTabCount();
+            return IconRefreshScheduler.rank(IconRefreshScheduler.OTHER_TAB, (distance << 24) | cell.getIndex());
+        };
+    }
+
+    private static List<LaunchCell> occupiedCells(LaunchTabPanel panel) {
+        List<LaunchCell> occupied = new ArrayList<>();
+        for (LaunchCell cell : panel.getCells()) {
+            if (!cell.isEmpty()) occupied.add(cell);
         }
-        if (occupied.isEmpty()) return;
+        return occupied;
+    }
 
-        new SwingWorker<Void, Void>() {
-            @Override
-            protected Void doInBackground() {
-                int threads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
-                ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
-                    Thread th = new Thread(r, "lp-icon-refresh");
-                    th.setDaemon(true);
-                    return th;
-                });
-                try {
-                    List<Future<?>> futures = new ArrayList<>();
-                    for (LaunchCell cell : occupied) {
-                        final AppComponent app = cell.getApp();
-                        if (app == null) continue;
-                        final File bundle = new File(app.getAppPath());
-                        if (!MacAppUtils.needsIconRefresh(bundle)) continue; // only refresh if changed
-                        futures.add(pool.submit(() -> {
-                            ImageIcon icon = MacAppUtils.refreshIcon(bundle);
-                            if (icon != null) {
-                                SwingUtilities.invokeLater(() -> {
-                                    app.setIcon(icon);
-                                    app.setCustomIconPath(MacAppUtils.getCachedIconPathForBundle(bundle));
-                                    cell.revalidate();
-                                    cell.repaint();
-                                });
-                            }
-                        }));
+    /** Tabs loaded unbuilt get the startup validation / icon refresh pass when they are built. */
+    private void watchMaterialization() {
+        for (int i = 0; i < tabs.getTabCount(); i++) {
+            LaunchTabPanel p = panelFromTabIndex(i);
+            if (p != null && !p.isMaterialized()) {
+                p.addPropertyChangeListener("materialized", _ -> iconRefresh.refreshStale(occupiedCells(p)));
+            }
+        }
+    }
+
+    /* ===================== Bundle watcher ===================== */
+
+    /** Watch every placed bundle, built tabs or not; apps placed later are added by LaunchCell. */
+    private void startBundleWatcher() {
+        List<Path> placed = new ArrayList<>();
+        for (LayoutStore.Tab tab : LayoutStore.capture(tabs).tabs()) {
+            for (LayoutStore.Cell cell : tab.cells()) placed.add(Path.of(cell.path()));
+        }
+        try {
+            bundleWatcher = new BundleWatcher(changes -> SwingUtilities.invokeLater(() -> onBundlesChanged(changes)),
+                                              WATCH_QUIET_MS, WATCH_MAX_DELAY_MS);
+            bundleWatcher.sync(placed);
+            bundleWatcher.start();
+        } catch (IOException e) {
+            e.printStackTrace(); // no watch service: freshness is still checked at startup
+        }
+    }
+
+    /**
+     * Apply what the watcher saw: bundles that changed get the startup validation / icon refresh
+     * pass (after their in-memory icon is dropped), bundles that are gone are removed from the grid,
+     * and moved bundles are placed again under their new path in the same cell. Tabs not built yet
+     * need nothing for changes or removals, they read the bundles when built; a move builds the tab
+     * holding the app so the cell can be re-pointed.
+     */
+    private void onBundlesChanged(BundleWatcher.Changes changes) {
+        List<LaunchCell> changed = new ArrayList<>();
+        for (Path p : changes.changed()) {
+            MacAppUtils.forgetCachedIcon(p.toFile());
+            changed.addAll(cellsShowing(p.toString(), false));
+        }
+        iconRefresh.refreshStale(changed);
+
+        for (Path p : changes.removed()) {
+            for (LaunchCell cell : cellsShowing(p.toString(), false)) cell.clear();
+        }
+
+        changes.moved().forEach((from, to) -> {
+            List<LaunchCell> cells = cellsShowing(from.toString(), true);
+            if (cells.isEmpty()) return;
+            new SwingWorker<MacAppUtils.AppStub, Void>() {
+                @Override
+                protected MacAppUtils.AppStub doInBackground() {
+                    return MacAppUtils.prepareAppStub(to.toFile(), false);
+                }
+                @Override
+                protected void done() {
+                    try {
+                        MacAppUtils.AppStub stub = get();
+                        for (LaunchCell cell : cells) {
+                            AppComponent old = cell.getApp();
+                            if (old == null || !old.getAppPath().equals(from.toString())) continue;
+                            if (stub != null) cell.setApp(stub.toComponent());
+                            else cell.clear();
+                        }
+                    } catch (Exception ex) {
+                        ex.printStackTrace();
                     }
-                    for (Future<?> f : futures) {
-                        try { f.get(); } catch (Exception ignore) {}
+                }
+            }.execute();
+        });
+    }
+
+    /** Cells showing the bundle at {@code appPath}; with {@code build}, tabs holding it are built first. */
+    private List<LaunchCell> cellsShowing(String appPath, boolean build) {
+        List<LaunchCell> out = new ArrayList<>();
+        for (int i = 0; i < tabs.getTabCount(); i++) {
+            LaunchTabPanel p = panelFromTabIndex(i);
+            if (p == null) continue;
+            if (!p.isMaterialized()) {
+                if (!build || p.getSavedCells().stream().noneMatch(c -> c.path().equals(appPath))) continue;
+            }
+            for (LaunchCell cell : p.getCells()) {
+                if (!cell.isEmpty() && cell.getApp().getAppPath().equals(appPath)) out.add(cell);
+            }
+        }
+        return out;
+    }
+
+    /** After the selection has settled, build the neighbouring tabs in the background. */
+    private void prefetchNeighbourTabs() {
+        int idx = tabs.getSelectedIndex();
+        if (idx < 0) return;
+        for (int n : new int[] { idx + 1, idx - 1 }) {
+            LaunchTabPanel p = panelFromTabIndex(n);
+            if (p != null) p.prefetch();
+        }
+    }
+
+    /**
+     * Keep icon memory bounded: release icons held by every tab except the selected one, pin the
+     * selected tab's icons in the memory cache, and re-acquire any of its icons that were released
+     * (from memory if still resident, else from the on-disk atlas).
+     */
+    private void onSelectedTabChanged() {
+        LaunchTabPanel selected = currentPanel();
+        if (selected == visiblePanel) return;
+
+        if (PREFETCH_TABS) prefetchTimer.restart();
+
+        for (int i = 0; i < tabs.getTabCount(); i++) {
+            LaunchTabPanel p = panelFromTabIndex(i);
+            if (p == null || p == selected || !p.isMaterialized()) continue;
+            for (LaunchCell cell : p.getCells()) {
+                if (!cell.isEmpty()) cell.getApp().releaseIcon();
+            }
+        }
+
+        List<String> visible = new ArrayList<>();
+        if (selected != null) {
+            // First time this tab is shown it is built here (getCells materializes it)
+            for (LaunchCell cell : selected.getCells()) {
+                if (!cell.isEmpty()) {
+                    AppComponent app = cell.getApp();
+                    visible.add(app.getCanonicalPath());
+                    if (app.getIcon() == null) {
+                        ImageIcon icon = MacAppUtils.getCachedIcon(new File(app.getAppPath()));
+                        app.setIcon(icon != null ? icon : new ImageIcon());
                     }
-                } finally {
-                    pool.shutdown();
                 }
-                return null;
             }
-        }.execute();
+        }
+        MacAppUtils.pinVisibleIcons(visible);
+        visiblePanel = selected;
+        iconRefresh.reprioritize();
     }
 
     /** Wrap a LaunchTabPanel in a vertical-only scroller. */
@@ -377,32 +537,17 @@ public class JLaunchPad extends JFrame
         );
         sp.setBorder(null);
         sp.getVerticalScrollBar().setUnitIncrement(24);
+        // Scrolling changes which cells are in view: icon refreshes follow it
+        sp.getViewport().addChangeListener(_ -> iconRefresh.reprioritize());
         return sp;
     }
 
-    /** After loadState, ensure the inner scrollers accept drops too. */
+    /** After loadState, ensure the inner scrollers accept drops too (the grid keeps its own handler). */
     private void attachDropHandlerToAllTabComponents(TransferHandler h) {
         for (int i = 0; i < tabs.getTabCount(); i++) {
             var c = tabs.getComponentAt(i);
             if (c instanceof JScrollPane sp) {
                 sp.setTransferHandler(h);
-                var v = (sp.getViewport() != null) ? sp.getViewport().getView() : null;
-                if (v instanceof JComponent jc) {
-                    jc.setTransferHandler(null); // cells handle their own DnD
-                }
-            }
-        }
-    }
-
-    /** Reassert popups on all cells in all tabs (post-load hardening). */
-    private void reassertPopupsAllTabs() {
-        for (int i = 0; i < tabs.getTabCount(); i++) {
-            LaunchTabPanel p = panelFromTabIndex(i);
-            if (p == null) continue;
-            for (java.awt.Component c : p.getComponents()) {
-                if (c instanceof LaunchCell lc) {
-                    lc.reassertPopup();
-                }
             }
         }
     }
@@ -453,6 +598,7 @@ public class JLaunchPad extends JFrame
         var tooltip = tabs.getToolTipTextAt(from);
         var enabled = tabs.isEnabledAt(from);
 
+        LayoutJournal.tabMoved(from, to);
         tabs.removeTabAt(from);
         tabs.insertTab(title, icon, comp, tooltip, to);
         tabs.setEnabledAt(to, enabled);
@@ -525,6 +671,7 @@ public class JLaunchPad extends JFrame
     private void importAppsFromFolderViaChooser() {
         LaunchTabPanel panel = currentPanel();
         if (panel == null) return;
+        if (folderImport != null && !folderImport.isDone()) return; // one import at a time
 
         JFileChooser fc = new JFileChooser();
         fc.setDialogTitle("Choose a Folder to Import Applications From");
@@ -540,107 +687,9 @@ public class JLaunchPad extends JFrame
         if (folder == null || !folder.isDirectory()) return;
 
         boolean topLevelOnly = true; // avoids helpers/updaters deep inside bundles
-        List<File> apps = findAllApps(folder.toPath(), topLevelOnly);
-
-        if (apps.isEmpty()) {
-            JOptionPane.showMessageDialog(this, "No applications (.app) found in that folder.",
-                "Nothing Found", JOptionPane.INFORMATION_MESSAGE);
-            return;
-        }
-
-        int skippedDuplicates = 0;
-        int imported = 0;
-
-        List<File> toImport = new ArrayList<>();
-        for (File f : apps) {
-            String nameLower = f.getName().toLowerCase(java.util.Locale.ROOT);
-            if (nameLower.contains("uninstall")) continue;
-            String canon = LaunchPadUtils.canonicalPath(f);
-            if (LaunchPadUtils.findApp(tabs, canon) != null) {
-                skippedDuplicates++;
-                continue;
-            }
-            toImport.add(f);
-        }
-
-        panel.ensureCapacityFor(toImport.size());
-
-        for (File f : toImport) {
-            LaunchCell empty = panel.findFirstEmptyCell();
-            if (empty == null) {
-                panel.addRows(1);
-                empty = panel.findFirstEmptyCell();
-                if (empty == null) break;
-            }
-            AppComponent app = MacAppUtils.createAppComponent(f);
-            if (app != null) {
-                empty.setApp(app);
-                imported++;
-            }
-        }
-
-        if (skippedDuplicates > 0) {
-            JOptionPane.showMessageDialog(
-                this,
-                "One or more apps were not imported as they already exist in LaunchPad.",
-                "Some Skipped",
-                JOptionPane.INFORMATION_MESSAGE
-            );
-        } else if (imported == 0) {
-            JOptionPane.showMessageDialog(
-                this,
-                "No applications were imported.",
-                "Nothing Imported",
-                JOptionPane.INFORMATION_MESSAGE
-            );
-        }
-    }
-
-    // Walk roots and return real *.app bundles (handles /Applications + /System/Applications)
-    private List<File> findAllApps(Path chosenRoot, boolean topLevelOnly) {
-        Set<String> seen = new LinkedHashSet<>();
-        List<File> result = new ArrayList<>();
-
-        List<Path> roots = new ArrayList<>();
-        roots.add(chosenRoot);
-
-        try {
-            String chosenReal = chosenRoot.toRealPath().toString();
-            if ("/Applications".equals(chosenReal)) {
-                Path sysApps = Paths.get("/System/Applications");
-                if (Files.isDirectory(sysApps)) roots.add(sysApps);
-                Path sysUtils = Paths.get("/System/Applications/Utilities");
-                if (Files.isDirectory(sysUtils)) roots.add(sysUtils);
-            }
-        } catch (Exception ignore) {}
-
-        int maxDepth = topLevelOnly ? 1 : Integer.MAX_VALUE;
-
-        for (Path root : roots) {
-            try (Stream<Path> s =
-                     Files.walk(root, maxDepth, FileVisitOption.FOLLOW_LINKS)) {
-
-                s.filter(p -> {
-                        var name = (p.getFileName() != null) ? p.getFileName().toString() : "";
-                        return name.endsWith(".app");
-                    })
-                 .map(p -> LaunchPadUtils.resolveRealAppBundle(p.toFile()))
-                 .filter(java.util.Objects::nonNull)
-                 .filter(f -> {
-                     String path = f.getAbsolutePath();
-                     return !path.contains("/Contents/Library/LoginItems/")
-                         && !path.contains("/Contents/Helpers/");
-                 })
-                 .filter(MacAppUtils::isLikelyUserFacingApp)
-                 .forEach(f -> {
-                     String key = LaunchPadUtils.canonicalPath(f);
-                     if (seen.add(key)) result.add(f);
-                 });
-
-            } catch (Exception ignore) {}
-        }
-
-        return result;
+        folderImport = new FolderImporter(this, tabs, panel,
+            FolderImporter.rootsFor(folder.toPath()), topLevelOnly ? 1 : Integer.MAX_VALUE);
+        folderImport.start();
     }
 
     private void packCurrentTab() {
@@ -655,10 +704,8 @@ public class JLaunchPad extends JFrame
 
         // Collect all occupied cells up-front on the EDT
         List<LaunchCell> occupied = new ArrayList<>();
-        for (int i = 0; i < panel.getComponentCount(); i++) {
-            if (panel.getComponent(i) instanceof LaunchCell cell && !cell.isEmpty()) {
-                occupied.add(cell);
-            }
+        for (LaunchCell cell : panel.getCells()) {
+            if (!cell.isEmpty()) occupied.add(cell);
         }
         if (occupied.isEmpty()) return;
 
@@ -666,31 +713,10 @@ public class JLaunchPad extends JFrame
         Window win = SwingUtilities.getWindowAncestor(this);
         if (win != null) win.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
 
-        new SwingWorker<Void, Void>() {
-            @Override
-            protected Void doInBackground() {
-                for (LaunchCell cell : occupied) {
-                    AppComponent app = cell.getApp();
-                    if (app == null) continue;
-                    File bundle = new File(app.getAppPath());
-                    ImageIcon icon = MacAppUtils.refreshIcon(bundle);
-                    if (icon != null) {
-                        SwingUtilities.invokeLater(() -> {
-                            app.setIcon(icon);
-                            app.setCustomIconPath(MacAppUtils.getCachedIconPathForBundle(bundle));
-                            cell.revalidate();
-                            cell.repaint();
-                        });
-                    }
-                }
-                return null;
-            }
-            @Override
-            protected void done() {
-                if (win != null) win.setCursor(Cursor.getDefaultCursor());
-                triggerButton.setEnabled(true);
-            }
-        }.execute();
+        iconRefresh.refresh(occupied, () -> {
+            if (win != null) win.setCursor(Cursor.getDefaultCursor());
+            triggerButton.setEnabled(true);
+        });
     }
 
     /**
@@ -778,7 +804,7 @@ public class JLaunchPad extends JFrame
                         payload.sourceCell != null &&
                         tabs.getComponentAt(where.tabIndex) != null &&
                         panelFromTabIndex(where.tabIndex) != null &&
-                        panelFromTabIndex(where.tabIndex).getComponent(where.cellIndex) == payload.sourceCell;
+                        panelFromTabIndex(where.tabIndex).getCell(where.cellIndex) == payload.sourceCell;
 
                     if (!isSameSource)
                     {
@@ -2,240 +2,158 @@ package com.commander4j.launchpad;
 
 /*******************************************************************************
  * Title:        Commander4j
- * Description:  LaunchPad Grid Cell (DnD import, context menu, delete key, custom icon)
+ * Description:  LaunchPad Grid Cell (one slot of a LaunchTabPanel; custom icon,
+ *               refresh, reveal)
  * Author:       Dave (with ChatGPT assistance)
  * License:      GNU General Public License
  *******************************************************************************/
 
-import java.awt.BorderLayout;
+import java.awt.Component;
 import java.awt.Cursor;
-import java.awt.Dimension;
 import java.awt.Window;
-import java.awt.event.KeyEvent;
 import java.io.File;
 
-import javax.swing.AbstractAction;
-import javax.swing.BorderFactory;
 import javax.swing.ImageIcon;
-import javax.swing.JComponent;
 import javax.swing.JFileChooser;
-import javax.swing.JMenuItem;
-import javax.swing.JPanel;
-import javax.swing.JPopupMenu;
-import javax.swing.KeyStroke;
 import javax.swing.SwingUtilities;
-import javax.swing.SwingWorker;
-import javax.swing.event.PopupMenuEvent;
-import javax.swing.event.PopupMenuListener;
 import javax.swing.filechooser.FileNameExtensionFilter;
 
-public class LaunchCell extends JPanel
+/**
+ * One slot of the grid. A plain object: the panel paints it, hit-tests mouse and drop events to
+ * it, and runs its context menu against it (see {@link LaunchTabPanel}). Every change of content
+ * goes through {@link #setApp}, {@link #clear} or {@link #detachAppForMove}, which keep the
+ * duplicate index and the layout journal current and repaint just this cell.
+ */
+public class LaunchCell
 {
-    private static final long serialVersionUID = 1L;
-
+    private final LaunchTabPanel panel;
+    private final int index;
     private AppComponent app;
-    private final JPopupMenu popup;
 
-    public LaunchCell()
+    LaunchCell(LaunchTabPanel panel, int index)
     {
-        setBorder(BorderFactory.createEmptyBorder());
-        setPreferredSize(new Dimension(100, 100));
-        setLayout(new BorderLayout());
-
-        // DnD importer (Finder files + internal moves)
-        setTransferHandler(new LaunchCellTransferHandler(this));
-
-        // Build context menu
-        popup = buildPopup();
-
-        // Let Swing handle right-clicks anywhere on this component
-        setComponentPopupMenu(popup);
-
-        // Keyboard: Delete key removes app
-        setFocusable(true);
-        getInputMap(JComponent.WHEN_FOCUSED).put(KeyStroke.getKeyStroke(KeyEvent.VK_DELETE, 0), "removeApp");
-        getActionMap().put("removeApp", new AbstractAction() {
-            private static final long serialVersionUID = 1L;
-            @Override public void actionPerformed(java.awt.event.ActionEvent e) {
-                if (!isEmpty()) clear();
-            }
-        });
-
-        // When popup opens, grab focus so Delete works immediately after using it
-        popup.addPopupMenuListener(new PopupMenuListener() {
-            @Override public void popupMenuWillBecomeVisible(PopupMenuEvent e) { requestFocusInWindow(); }
-            @Override public void popupMenuWillBecomeInvisible(PopupMenuEvent e) {}
-            @Override public void popupMenuCanceled(PopupMenuEvent e) {}
-        });
+        this.panel = panel;
+        this.index = index;
     }
 
-    private JPopupMenu buildPopup()
-    {
-        JPopupMenu pm = new JPopupMenu();
-
-        JMenuItem assignIcon = new JMenuItem("Assign Custom Icon...");
-        assignIcon.addActionListener(_ -> {
-            AppComponent a = getApp();
-            if (a == null) return;
-
-            JFileChooser fc = new JFileChooser(MacAppUtils.getLastChooserDir());
-            fc.setDialogTitle("Choose an icon image");
-            fc.setAcceptAllFileFilterUsed(false); // don’t show “All files”
-            fc.addChoosableFileFilter(new FileNameExtensionFilter(
-                "Image files (PNG, JPG, JPEG, GIF, ICNS)", "png", "jpg", "jpeg", "gif", "icns"
-            ));
-
-            if (fc.showOpenDialog(this) == JFileChooser.APPROVE_OPTION) {
-                File chosen = fc.getSelectedFile();
-                MacAppUtils.setLastChooserDir(chosen.getParentFile());
-                try {
-                    File bundle = new File(a.getAppPath());
-                    ImageIcon icon = MacAppUtils.loadAndCacheCustomIcon(bundle, chosen, MacAppUtils.ICON_RENDER_SIZE);
-                    if (icon != null) {
-                        a.setIcon(icon);
-                        a.setCustomIconPath(MacAppUtils.getCachedIconPathForBundle(bundle));
-                        revalidate();
-                        repaint();
-                    } else {
-                        javax.swing.JOptionPane.showMessageDialog(
-                            this, "Unable to read that image file.",
-                            "Icon Import", javax.swing.JOptionPane.WARNING_MESSAGE
-                        );
-                    }
-                } catch (Exception ex) {
-                    ex.printStackTrace();
-                    javax.swing.JOptionPane.showMessageDialog(
-                        this, "Failed to assign icon:\n" + ex.getMessage(),
-                        "Icon Import Error", javax.swing.JOptionPane.ERROR_MESSAGE
-                    );
-                }
-            }
-        });
-        pm.add(assignIcon);
-
-        JMenuItem refreshIcon = new JMenuItem("Refresh Icon");
-        refreshIcon.addActionListener(_ -> {
-            AppComponent a = getApp();
-            if (a == null) return;
+    public LaunchTabPanel getPanel() { return panel; }
 
-            File bundle = new File(a.getAppPath());
+    /** Position in the panel, row-major. */
+    public int getIndex() { return index; }
 
-            // Switch to wait cursor while the background resolution runs
-            Window win = SwingUtilities.getWindowAncestor(this);
-            Cursor savedCursor = (win != null) ? win.getCursor() : null;
-            if (win != null) win.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
-            refreshIcon.setEnabled(false);
-
-            new SwingWorker<ImageIcon, Void>() {
-                @Override
-                protected ImageIcon doInBackground() {
-                    return MacAppUtils.refreshIcon(bundle);
-                }
-                @Override
-                protected void done() {
-                    if (win != null) win.setCursor(savedCursor != null
-                            ? savedCursor : Cursor.getDefaultCursor());
-                    refreshIcon.setEnabled(true);
-                    try {
-                        ImageIcon icon = get();
-                        if (icon != null) {
-                            a.setIcon(icon);
-                            a.setCustomIconPath(MacAppUtils.getCachedIconPathForBundle(bundle));
-                            revalidate();
-                            repaint();
-                        }
-                    } catch (Exception ex) {
-                        ex.printStackTrace();
-                    }
-                }
-            }.execute();
-        });
-        pm.add(refreshIcon);
-
-        JMenuItem remove = new JMenuItem("Remove App");
-        remove.addActionListener(_ -> { if (!isEmpty()) clear(); });
-        pm.add(remove);
-
-        JMenuItem reveal = new JMenuItem("Reveal in Finder");
-        reveal.addActionListener(_ -> {
-            AppComponent a = getApp();
-            if (a != null) {
-                try {
-                    new ProcessBuilder("open", "-R", new File(a.getAppPath()).getAbsolutePath()).start();
-                } catch (Exception ex) { ex.printStackTrace(); }
-            }
-        });
-        pm.add(reveal);
-
-        return pm;
-    }
+    public AppComponent getApp() { return app; }
 
     public boolean isEmpty() { return app == null; }
 
-    /** Reassert the cell’s popup on itself and its current content. */
-    public void reassertPopup() {
-        setComponentPopupMenu(popup);
-        installPopupRecursively(this, popup);
-        if (app != null) {
-            app.setComponentPopupMenu(popup);
-            installPopupRecursively(app, popup);
-        }
-    }
-
-    /** Detach the current app component for a MOVE operation without stripping popups. */
+    /** Detach the current app component for a MOVE operation. */
     public AppComponent detachAppForMove() {
         if (app == null) return null;
         AppComponent moving = app;
-        remove(moving);
+        LaunchPadUtils.unindexCell(moving, this);
+        if (moving.getCell() == this) moving.setCell(null);
         app = null;
-        revalidate();
+        IconRefreshScheduler.cellChanged(this);
         repaint();
-        // Do NOT clear popups here; destination will reassert.
+        LayoutJournal.cellChanged(this);
         return moving;
     }
 
     public void setApp(AppComponent newApp)
     {
-        removeAll();
-
-        // Do not strip popups from the previous app; it might be moved elsewhere.
+        if (this.app != newApp) {
+            LaunchPadUtils.unindexCell(this.app, this);
+            if (this.app != null && this.app.getCell() == this) this.app.setCell(null);
+        }
         this.app = newApp;
 
         if (this.app != null) {
-            add(this.app, BorderLayout.CENTER);
+            this.app.setCell(this);
+            LaunchPadUtils.indexCell(this.app, this);
+            BundleWatcher.placed(this.app.getAppPath());
         }
+        IconRefreshScheduler.cellChanged(this);
 
-        // Ensure right-click works everywhere on the cell and its new content
-        reassertPopup();
-
-        revalidate();
         repaint();
+        LayoutJournal.cellChanged(this);
     }
 
-    /** Install (or remove) the same popup on all descendants so right-click works anywhere. */
-    private void installPopupRecursively(java.awt.Component c, JPopupMenu pm) {
-        if (c instanceof JComponent jc) {
-            jc.setComponentPopupMenu(pm);
-        }
-        if (c instanceof java.awt.Container container) {
-            for (java.awt.Component child : container.getComponents()) {
-                installPopupRecursively(child, pm);
+    public void clear()
+    {
+        setApp(null);
+    }
+
+    public void repaint() {
+        panel.repaintCell(index);
+    }
+
+    /* ===================== Context menu actions ===================== */
+
+    void assignCustomIcon(Component parent) {
+        AppComponent a = getApp();
+        if (a == null) return;
+
+        JFileChooser fc = new JFileChooser(MacAppUtils.getLastChooserDir());
+        fc.setDialogTitle("Choose an icon image");
+        fc.setAcceptAllFileFilterUsed(false); // don’t show “All files”
+        fc.addChoosableFileFilter(new FileNameExtensionFilter(
+            "Image files (PNG, JPG, JPEG, GIF, ICNS)", "png", "jpg", "jpeg", "gif", "icns"
+        ));
+
+        if (fc.showOpenDialog(parent) == JFileChooser.APPROVE_OPTION) {
+            File chosen = fc.getSelectedFile();
+            MacAppUtils.setLastChooserDir(chosen.getParentFile());
+            try {
+                File bundle = new File(a.getAppPath());
+                ImageIcon icon = MacAppUtils.loadAndCacheCustomIcon(bundle, chosen, MacAppUtils.ICON_RENDER_SIZE);
+                if (icon != null) {
+                    a.setIcon(icon);
+                    a.setCustomIconPath(MacAppUtils.getCachedIconPathForBundle(bundle));
+                    LayoutJournal.cellChanged(this);
+                } else {
+                    javax.swing.JOptionPane.showMessageDialog(
+                        parent, "Unable to read that image file.",
+                        "Icon Import", javax.swing.JOptionPane.WARNING_MESSAGE
+                    );
+                }
+            } catch (Exception ex) {
+                ex.printStackTrace();
+                javax.swing.JOptionPane.showMessageDialog(
+                    parent, "Failed to assign icon:\n" + ex.getMessage(),
+                    "Icon Import Error", javax.swing.JOptionPane.ERROR_MESSAGE
+                );
             }
         }
     }
 
-    public AppComponent getApp() { return app; }
+    /**
+     * Re-resolve the icon in the background, ahead of any refresh already queued (see
+     * {@link IconRefreshScheduler}); {@code onDone} runs on the EDT afterwards.
+     */
+    void refreshIcon(Component parent, Runnable onDone) {
+        IconRefreshScheduler scheduler = IconRefreshScheduler.active();
+        if (getApp() == null || scheduler == null) {
+            onDone.run();
+            return;
+        }
 
-    public void clear()
-    {
-        removeAll();
-        // Don’t strip popups off the old app; it could be reused/moved elsewhere.
-        this.app = null;
+        // Switch to wait cursor while the background resolution runs
+        Window win = SwingUtilities.getWindowAncestor(parent);
+        Cursor savedCursor = (win != null) ? win.getCursor() : null;
+        if (win != null) win.setCursor(Cursor.getPredefinedCursor(Cursor.WAIT_CURSOR));
 
-        // Keep popup active on the empty cell
-        reassertPopup();
+        scheduler.refreshNow(this, () -> {
+            if (win != null) win.setCursor(savedCursor != null
+                    ? savedCursor : Cursor.getDefaultCursor());
+            onDone.run();
+        });
+    }
 
-        revalidate();
-        repaint();
+    void revealInFinder() {
+        AppComponent a = getApp();
+        if (a != null) {
+            try {
+                new ProcessBuilder("open", "-R", new File(a.getAppPath()).getAbsolutePath()).start();
+            } catch (Exception ex) { ex.printStackTrace(); }
+        }
     }
 }
@@ -2,7 +2,8 @@ package com.commander4j.launchpad;
 
 /*******************************************************************************
  * Title:        Commander4j
- * Description:  TransferHandler for LaunchPad Cells (MOVE-safe, resolves real bundles)
+ * Description:  TransferHandler for LaunchPad Cells (MOVE-safe, resolves real bundles);
+ *               installed once per LaunchTabPanel and hit-tested to the cell under the drop
  * Author:       Dave (with ChatGPT assistance)
  * License:      GNU General Public License
  *******************************************************************************/
@@ -22,16 +23,23 @@ import javax.swing.TransferHandler;
 
 public class LaunchCellTransferHandler extends TransferHandler {
     private static final long serialVersionUID = 1L;
-    private final LaunchCell cell;
+    private final LaunchTabPanel panel;
 
-    public LaunchCellTransferHandler(LaunchCell cell) {
-        this.cell = cell;
+    public LaunchCellTransferHandler(LaunchTabPanel panel) {
+        this.panel = panel;
+    }
+
+    /** The cell under the drop point; null for paste or drops between cells. */
+    private LaunchCell targetCell(TransferSupport support) {
+        if (!support.isDrop()) return null;
+        return panel.cellAt(support.getDropLocation().getDropPoint());
     }
 
     @Override
     public boolean canImport(TransferSupport support) {
         // Only accept drops into empty cells
-        if (!cell.isEmpty()) return false;
+        LaunchCell cell = targetCell(support);
+        if (cell == null || !cell.isEmpty()) return false;
         return support.isDataFlavorSupported(LaunchpadTransferable.DRAG_PAYLOAD_FLAVOR)
             || support.isDataFlavorSupported(DataFlavor.javaFileListFlavor)
             || support.isDataFlavorSupported(DataFlavor.stringFlavor);
@@ -40,6 +48,7 @@ public class LaunchCellTransferHandler extends TransferHandler {
     @Override
     public boolean importData(TransferSupport support) {
         if (!canImport(support)) return false;
+        LaunchCell cell = targetCell(support);
 
         try {
             final Transferable t = support.getTransferable();
@@ -82,7 +91,7 @@ public class LaunchCellTransferHandler extends TransferHandler {
             if (real == null || !real.getName().endsWith(".app")) return false;
 
             // Duplicate check across all tabs (by canonical real path)
-            JTabbedPane tabs = (JTabbedPane) SwingUtilities.getAncestorOfClass(JTabbedPane.class, cell);
+            JTabbedPane tabs = (JTabbedPane) SwingUtilities.getAncestorOfClass(JTabbedPane.class, panel);
             String dropCanon = LaunchPadUtils.canonicalPath(real);
             LaunchPadUtils.Location where = LaunchPadUtils.findApp(tabs, dropCanon);
             if (where != null) {
@@ -110,7 +119,8 @@ public class LaunchCellTransferHandler extends TransferHandler {
 
     @Override
     protected Transferable createTransferable(JComponent c) {
-        if (cell.getApp() != null) {
+        LaunchCell cell = panel.getPressedCell();
+        if (cell != null && cell.getApp() != null) {
             return new LaunchpadTransferable(
                 cell.getApp().getAppPath(),
                 new DragPayload(cell.getApp().getAppPath(), cell)
@@ -4,6 +4,8 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.LinkOption;
 import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.swing.JTabbedPane;
 import javax.swing.JScrollPane;
@@ -61,26 +63,57 @@ public final class LaunchPadUtils {
         return (fallback.isDirectory() && fallback.getName().endsWith(".app")) ? fallback : null;
     }
 
+    /* ===================== Placed-app index ===================== */
+    // Canonical bundle path -> the cell showing it. Kept current by LaunchCell.setApp / clear /
+    // detachAppForMove, so duplicate checks are a map lookup instead of a walk over every cell with
+    // a canonicalisation syscall each. Tab and cell indices are derived only on a hit, so moving
+    // tabs needs no upkeep; entries for removed tabs are dropped by forgetPanel (and validated on use).
+    private static final Map<String, LaunchCell> APP_INDEX = new ConcurrentHashMap<>();
+
+    static void indexCell(AppComponent app, LaunchCell cell) {
+        if (app != null && cell != null) APP_INDEX.put(app.getCanonicalPath(), cell);
+    }
+
+    static void unindexCell(AppComponent app, LaunchCell cell) {
+        if (app != null && cell != null) APP_INDEX.remove(app.getCanonicalPath(), cell);
+    }
+
+    /** Drop the index entries of every cell on a panel that is being removed. */
+    public static void forgetPanel(LaunchTabPanel panel) {
+        if (panel == null || !panel.isMaterialized()) return; // nothing indexed yet
+        for (LaunchCell cell : panel.getCells()) unindexCell(cell.getApp(), cell);
+    }
+
     /** Find an app by canonical path across all tabs; returns null if not found. */
     public static Location findApp(JTabbedPane tabs, String appPathCanonical) {
         if (tabs == null || appPathCanonical == null) return null;
 
+        LaunchCell cell = APP_INDEX.get(appPathCanonical);
+        if (cell == null) return findUnbuilt(tabs, appPathCanonical);
+
+        AppComponent app = cell.getApp();
+        LaunchTabPanel panel = cell.getPanel();
+        if (app == null || !appPathCanonical.equals(app.getCanonicalPath())) {
+            APP_INDEX.remove(appPathCanonical, cell);   // stale: cell emptied or reused without going through LaunchCell
+            return findUnbuilt(tabs, appPathCanonical);
+        }
+
         for (int t = 0; t < tabs.getTabCount(); t++) {
-            LaunchTabPanel panel = unwrapPanel(tabs.getComponentAt(t));
-            if (panel == null) continue;
-
-            for (int i = 0; i < panel.getComponentCount(); i++) {
-                if (panel.getComponent(i) instanceof LaunchCell cell) {
-                    AppComponent app = cell.getApp();
-                    if (app != null) {
-                        String existing = app.getAppPath();
-                        if (existing != null && appPathCanonical.equals(canonicalPath(new File(existing)))) {
-                            return new Location(t, i, tabs.getTitleAt(t));
-                        }
-                    }
-                }
+            if (unwrapPanel(tabs.getComponentAt(t)) == panel) {
+                return new Location(t, cell.getIndex(), tabs.getTitleAt(t));
             }
         }
+        APP_INDEX.remove(appPathCanonical, cell);       // its tab is gone
+        return findUnbuilt(tabs, appPathCanonical);
+    }
+
+    /** Apps of tabs not built yet are not in the index; look them up in their saved records. */
+    private static Location findUnbuilt(JTabbedPane tabs, String appPathCanonical) {
+        for (int t = 0; t < tabs.getTabCount(); t++) {
+            LaunchTabPanel panel = unwrapPanel(tabs.getComponentAt(t));
+            int index = (panel != null) ? panel.savedIndexOf(appPathCanonical) : -1;
+            if (index >= 0) return new Location(t, index, tabs.getTitleAt(t));
+        }
         return null;
     }
 
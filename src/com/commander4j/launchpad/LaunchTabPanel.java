@@ -2,14 +2,49 @@ package com.commander4j.launchpad;
 
 /*******************************************************************************
  * Title:        Commander4j
- * Description:  LaunchPad Tab Panel (grid using MigLayout; supports growth + pack)
+ * Description:  LaunchPad Tab Panel (painted grid; supports growth + pack)
  * Author:       Dave (with ChatGPT assistance)
  * License:      GNU General Public License
  *******************************************************************************/
 
+import java.awt.Dimension;
+import java.awt.Font;
+import java.awt.Graphics;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.Toolkit;
+import java.awt.event.KeyEvent;
+import java.awt.event.MouseEvent;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import javax.swing.AbstractAction;
+import javax.swing.ImageIcon;
+import javax.swing.JComponent;
+import javax.swing.JMenuItem;
 import javax.swing.JPanel;
-import net.miginfocom.swing.MigLayout;
+import javax.swing.JPopupMenu;
+import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
+import javax.swing.SwingWorker;
+import javax.swing.ToolTipManager;
+import javax.swing.UIManager;
 
+/**
+ * The grid of one tab, drawn as a single component. Cells are plain {@link LaunchCell} objects
+ * held in a list; paintComponent draws only the cells that intersect the clip (the viewport), and
+ * clicks, drags, drops, tooltips and the context menu are hit-tested to a cell from the mouse
+ * position. However many apps a tab holds, it is one component with one set of listeners, one
+ * TransferHandler and one popup menu.
+ * <p>
+ * A tab loaded from disk may start <em>unbuilt</em>: it holds only its saved cell records until it
+ * is first needed (see {@link #materialize}). Anything that reads the cells builds it first;
+ * whole-layout passes check {@link #isMaterialized} and use {@link #getSavedCells} instead.
+ */
 public class LaunchTabPanel extends JPanel {
     private static final long serialVersionUID = 1L;
 
@@ -18,23 +53,141 @@ public class LaunchTabPanel extends JPanel {
     private static final int CELL_SIZE = 150;
 
     // Start rows; you can change this default
-    private int rows = 7;
+    private static final int INITIAL_ROWS = 7;
+
+    private final transient List<LaunchCell> cells = new ArrayList<>();
+
+    // App names: wrapped to this width, at most two lines (see NameLayout)
+    private static final int NAME_WRAP_WIDTH = 130;
+    private final Font nameFont = UIManager.getFont("Label.font").deriveFont(12f);
+
+    // Saved cells not built yet (lazy tab); null once materialized
+    private transient List<LayoutStore.Cell> saved;
+    private transient Map<String, Integer> savedByCanonical;
+    private transient SwingWorker<List<AppComponent>, Void> prefetch;
+
+    private transient LaunchCell pressedCell;  // under the last mouse press: drag source, double-click target
+    private transient LaunchCell popupCell;    // the context menu acts on this one (and Delete, after it)
 
     public LaunchTabPanel() {
-        super(new MigLayout(
-            "insets 0, gap 0, hidemode 3, wrap " + COLS,
-            repeatCols(COLS),
-            ""               // let rows grow as needed
-        ));
-        addRows(rows); // initial capacity
-    }
-
-    private static String repeatCols(int count) {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < count; i++) {
-            sb.append("[").append(CELL_SIZE).append("px!]");
+        setOpaque(true);
+        setFocusable(true);
+        addRows(INITIAL_ROWS); // initial capacity
+
+        // DnD importer (Finder files + internal moves), hit-tested per cell
+        setTransferHandler(new LaunchCellTransferHandler(this));
+
+        GridMouse mouse = new GridMouse();
+        addMouseListener(mouse);
+        addMouseMotionListener(mouse);
+
+        // Right-click anywhere on the grid
+        setComponentPopupMenu(buildPopup());
+        ToolTipManager.sharedInstance().registerComponent(this);
+
+        // Keyboard: Delete key removes the app the popup was last opened on
+        getInputMap(JComponent.WHEN_FOCUSED).put(KeyStroke.getKeyStroke(KeyEvent.VK_DELETE, 0), "removeApp");
+        getActionMap().put("removeApp", new AbstractAction() {
+            private static final long serialVersionUID = 1L;
+            @Override public void actionPerformed(java.awt.event.ActionEvent e) {
+                if (popupCell != null && !popupCell.isEmpty()) popupCell.clear();
+            }
+        });
+    }
+
+    /* ===================== Lazy build ===================== */
+
+    /**
+     * An unbuilt tab holding {@code savedCells}; {@code byCanonical} maps each saved app's canonical
+     * path to its cell index, so duplicate checks can see it before it is built.
+     */
+    static LaunchTabPanel unbuilt(List<LayoutStore.Cell> savedCells, Map<String, Integer> byCanonical) {
+        LaunchTabPanel panel = new LaunchTabPanel();
+        if (!savedCells.isEmpty()) {
+            panel.saved = List.copyOf(savedCells);
+            panel.savedByCanonical = Map.copyOf(byCanonical);
         }
-        return sb.toString();
+        return panel;
+    }
+
+    public boolean isMaterialized() {
+        return saved == null;
+    }
+
+    /** The saved cells of an unbuilt tab (empty once built). */
+    List<LayoutStore.Cell> getSavedCells() {
+        return (saved != null) ? saved : List.of();
+    }
+
+    /** Saved cell index of an app in an unbuilt tab, -1 if absent or the tab is built. */
+    int savedIndexOf(String canonicalPath) {
+        if (savedByCanonical == null) return -1;
+        Integer index = savedByCanonical.get(canonicalPath);
+        return (index != null) ? index : -1;
+    }
+
+    /**
+     * Build the apps of an unbuilt tab and place them (EDT). Fires a "materialized" property change
+     * afterwards so the owner can bring the new cells' icons up to date.
+     */
+    public void materialize() {
+        if (saved == null) return;
+        place(PersistenceHelper.buildApps(saved));
+    }
+
+    /**
+     * Build an unbuilt tab's apps in the background and place them when done, unless it was built
+     * meanwhile. Icons are released straight away: they stay warm in the memory cache, and the tab
+     * re-acquires them when it is shown, as any hidden tab does.
+     */
+    public void prefetch() {
+        if (saved == null || prefetch != null) return;
+        final List<LayoutStore.Cell> cells = saved;
+        prefetch = new SwingWorker<>() {
+            @Override
+            protected List<AppComponent> doInBackground() {
+                return PersistenceHelper.buildApps(cells);
+            }
+            @Override
+            protected void done() {
+                prefetch = null;
+                if (saved != cells) return; // built (or rebuilt) while we worked
+                try {
+                    List<AppComponent> apps = get();
+                    place(apps);
+                    for (AppComponent app : apps) if (app != null) app.releaseIcon();
+                } catch (Exception e) {
+                    e.printStackTrace();
+                }
+            }
+        };
+        prefetch.execute();
+    }
+
+    private void place(List<AppComponent> apps) {
+        List<LayoutStore.Cell> cellsToPlace = saved;
+        saved = null;
+        savedByCanonical = null;
+        PersistenceHelper.placeApps(this, cellsToPlace, apps);
+        firePropertyChange("materialized", false, true);
+    }
+
+    /* ===================== Cells ===================== */
+
+    public int getCellCount() {
+        materialize();
+        return cells.size();
+    }
+
+    public LaunchCell getCell(int index) {
+        materialize();
+        return cells.get(index);
+    }
+
+    /** All cells in index order (read-only view). */
+    public List<LaunchCell> getCells() {
+        materialize();
+        return Collections.unmodifiableList(cells);
     }
 
     /** Add N more full rows of empty cells. */
@@ -42,15 +195,15 @@ public class LaunchTabPanel extends JPanel {
         if (n <= 0) return;
         int cellsToAdd = COLS * n;
         for (int i = 0; i < cellsToAdd; i++) {
-            add(new LaunchCell(), "w " + CELL_SIZE + "!, h " + CELL_SIZE + "!, grow 0");
+            cells.add(new LaunchCell(this, cells.size()));
         }
-        rows += n;
         revalidate();
         repaint();
     }
 
     /** Ensure there is at least one empty cell, growing the grid if needed. */
     public void ensureCapacityFor(int additionalNeeded) {
+        materialize();
         int empties = countEmptyCells();
         if (empties >= additionalNeeded) return;
 
@@ -60,53 +213,193 @@ public class LaunchTabPanel extends JPanel {
     }
 
     public LaunchCell findFirstEmptyCell() {
-        for (int i = 0; i < getComponentCount(); i++) {
-            if (getComponent(i) instanceof LaunchCell cell) {
-                if (cell.isEmpty()) return cell;
-            }
+        materialize();
+        for (LaunchCell cell : cells) {
+            if (cell.isEmpty()) return cell;
         }
         return null;
     }
 
     public int countEmptyCells() {
+        materialize();
         int c = 0;
-        for (int i = 0; i < getComponentCount(); i++) {
-            if (getComponent(i) instanceof LaunchCell cell) {
-                if (cell.isEmpty()) c++;
-            }
+        for (LaunchCell cell : cells) {
+            if (cell.isEmpty()) c++;
         }
         return c;
     }
 
     /** Defragment: move all apps to the top-left, eliminating gaps. */
     public void packIcons() {
+        materialize();
         java.util.List<AppComponent> apps = new java.util.ArrayList<>();
         // Collect and clear
-        for (int i = 0; i < getComponentCount(); i++) {
-            if (getComponent(i) instanceof LaunchCell cell) {
-                AppComponent app = cell.getApp();
-                if (app != null) apps.add(app);
-                cell.clear();
-            }
+        for (LaunchCell cell : cells) {
+            AppComponent app = cell.getApp();
+            if (app != null) apps.add(app);
+            cell.clear();
         }
         // Place sequentially
-        int idx = 0;
-        for (int i = 0; i < getComponentCount() && idx < apps.size(); i++) {
-            if (getComponent(i) instanceof LaunchCell cell) {
-                cell.setApp(apps.get(idx++));
-            }
+        for (int i = 0; i < apps.size(); i++) {
+            cells.get(i).setApp(apps.get(i));
         }
-        revalidate();
         repaint();
     }
-    
- // in LaunchTabPanel
+
     public void ensureCellIndex(int index) {
-        if (index < getComponentCount()) return;
-        int missing = index - getComponentCount() + 1;
-        int cols = 7; // keep in sync with COLS
-        int rowsNeeded = (int)Math.ceil(missing / (double) cols);
+        materialize();
+        if (index < cells.size()) return;
+        int missing = index - cells.size() + 1;
+        int rowsNeeded = (int)Math.ceil(missing / (double) COLS);
         addRows(rowsNeeded);
     }
 
+    /* ===================== Geometry / hit-testing ===================== */
+
+    /** The cell under {@code p} (panel coordinates), or null between/below the cells. */
+    public LaunchCell cellAt(Point p) {
+        materialize();
+        if (p == null || p.x < 0 || p.y < 0) return null;
+        int col = p.x / CELL_SIZE, row = p.y / CELL_SIZE;
+        if (col >= COLS) return null;
+        int index = row * COLS + col;
+        return (index < cells.size()) ? cells.get(index) : null;
+    }
+
+    public Rectangle cellBounds(int index) {
+        return new Rectangle((index % COLS) * CELL_SIZE, (index / COLS) * CELL_SIZE, CELL_SIZE, CELL_SIZE);
+    }
+
+    void repaintCell(int index) {
+        repaint(cellBounds(index));
+    }
+
+    @Override
+    public Dimension getPreferredSize() {
+        int rows = (cells.size() + COLS - 1) / COLS;
+        return new Dimension(COLS * CELL_SIZE, rows * CELL_SIZE);
+    }
+
+    /* ===================== Painting ===================== */
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        super.paintComponent(g);
+        if (saved != null) {
+            // Shown before anyone built it: build now, paint on the repaint that follows
+            SwingUtilities.invokeLater(this::materialize);
+            return;
+        }
+
+        Rectangle clip = g.getClipBounds();
+        if (clip == null) clip = new Rectangle(0, 0, getWidth(), getHeight());
+        int firstRow = Math.max(0, clip.y / CELL_SIZE);
+        int lastRow = (clip.y + clip.height - 1) / CELL_SIZE;
+        int firstCol = Math.max(0, clip.x / CELL_SIZE);
+        int lastCol = Math.min(COLS - 1, (clip.x + clip.width - 1) / CELL_SIZE);
+        Graphics2D g2 = (Graphics2D) g.create();
+        try {
+            paintCells(g2, firstRow, lastRow, firstCol, lastCol);
+        } finally {
+            g2.dispose();
+        }
+    }
+
+    private void paintCells(Graphics2D g, int firstRow, int lastRow, int firstCol, int lastCol) {
+        Object hints = Toolkit.getDefaultToolkit().getDesktopProperty("awt.font.desktophints");
+        if (hints instanceof Map<?, ?> map) g.addRenderingHints(map);
+        else g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, RenderingHints.VALUE_TEXT_ANTIALIAS_ON);
+        g.setFont(nameFont);
+        g.setColor(getForeground());
+        double scale = g.getTransform().getScaleX();
+
+        for (int row = firstRow; row <= lastRow; row++) {
+            for (int col = firstCol; col <= lastCol; col++) {
+                int index = row * COLS + col;
+                if (index >= cells.size()) return;
+                AppComponent app = cells.get(index).getApp();
+                if (app != null) paintApp(g, app, col * CELL_SIZE, row * CELL_SIZE, scale);
+            }
+        }
+    }
+
+    /** Icon centred above the name, the name wrapped and centred along the bottom of the cell. */
+    private void paintApp(Graphics2D g, AppComponent app, int x, int y, double scale) {
+        app.upgradeIconForScreen(scale);
+
+        NameLayout name = NameLayout.of(app.getDisplayName(), nameFont, NAME_WRAP_WIDTH, g.getFontRenderContext());
+        int iconArea = CELL_SIZE - name.height();
+
+        ImageIcon icon = app.getIcon();
+        if (icon != null && icon.getIconWidth() > 0) {
+            icon.paintIcon(this, g,
+                x + (CELL_SIZE - icon.getIconWidth()) / 2,
+                y + (iconArea - icon.getIconHeight()) / 2);
+        }
+
+        name.paint(g, x, y + iconArea, CELL_SIZE);
+    }
+
+    @Override
+    public String getToolTipText(MouseEvent e) {
+        LaunchCell cell = cellAt(e.getPoint());
+        return (cell != null && cell.getApp() != null) ? cell.getApp().getDisplayName() : null;
+    }
+
+    /* ===================== Mouse / context menu ===================== */
+
+    /** The cell a drag started on; read by the TransferHandler when it builds the transferable. */
+    LaunchCell getPressedCell() {
+        return pressedCell;
+    }
+
+    @Override
+    public Point getPopupLocation(MouseEvent event) {
+        // Called just before the popup shows: remember which cell it was opened on
+        if (event != null) popupCell = cellAt(event.getPoint());
+        requestFocusInWindow(); // so Delete works immediately after using it
+        return super.getPopupLocation(event);
+    }
+
+    private JPopupMenu buildPopup()
+    {
+        JPopupMenu pm = new JPopupMenu();
+
+        JMenuItem assignIcon = new JMenuItem("Assign Custom Icon...");
+        assignIcon.addActionListener(_ -> { if (popupCell != null) popupCell.assignCustomIcon(this); });
+        pm.add(assignIcon);
+
+        JMenuItem refreshIcon = new JMenuItem("Refresh Icon");
+        refreshIcon.addActionListener(_ -> {
+            if (popupCell == null) return;
+            refreshIcon.setEnabled(false);
+            popupCell.refreshIcon(this, () -> refreshIcon.setEnabled(true));
+        });
+        pm.add(refreshIcon);
+
+        JMenuItem remove = new JMenuItem("Remove App");
+        remove.addActionListener(_ -> { if (popupCell != null && !popupCell.isEmpty()) popupCell.clear(); });
+        pm.add(remove);
+
+        JMenuItem reveal = new JMenuItem("Reveal in Finder");
+        reveal.addActionListener(_ -> { if (popupCell != null) popupCell.revealInFinder(); });
+        pm.add(reveal);
+
+        return pm;
+    }
+
+    /** Drag after a small threshold, launch on double-click; both on the cell under the press. */
+    private final class GridMouse extends DragAwareDoubleClickAdapter {
+        GridMouse() {
+            super(LaunchTabPanel.this, () -> {
+                if (pressedCell != null && pressedCell.getApp() != null) pressedCell.getApp().launchApp();
+            });
+        }
+
+        @Override
+        public void mousePressed(MouseEvent e) {
+            pressedCell = cellAt(e.getPoint());
+            super.mousePressed(e);
+        }
+    }
 }
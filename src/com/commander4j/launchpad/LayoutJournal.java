@@ -0,0 +1,441 @@
+package com.commander4j.launchpad;
+
+/*******************************************************************************
+ * Title:        Commander4j
+ * Description:  Change journal (write-ahead log) for the layout: incremental,
+ *               debounced autosave off the EDT, replayed at startup
+ * Author:       Dave (with ChatGPT assistance)
+ * License:      GNU General Public License
+ *******************************************************************************/
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.CRC32;
+
+import javax.swing.JTabbedPane;
+import javax.swing.SwingUtilities;
+
+/**
+ * Keeps the saved layout current between full saves. Cell and tab edits are reported here as small
+ * events (see {@link #cellChanged}, {@link #tabAdded} ...); a single background writer waits for a
+ * short quiet period, coalesces what arrived (only the last state of each cell or tab title counts),
+ * and appends it to <b>launchpad.journal</b> next to the snapshot, forcing it to disk. After enough
+ * records the writer compacts: it writes a new snapshot from its own copy of the layout and starts
+ * an empty journal.
+ * <p>
+ * The journal header carries the checksum of the snapshot it continues from. At startup the
+ * records are replayed onto the snapshot (see {@link #replay}) up to the first torn or corrupt one;
+ * a journal whose base does not match the snapshot (a crash between the two steps of a compaction,
+ * or a newer launchpad.xml) is ignored, because the snapshot already holds everything it recorded.
+ * <p>
+ * Reporting never blocks: the EDT only enqueues. Events are ignored until {@link #start}, so
+ * loadState does not journal the layout it is building.
+ */
+final class LayoutJournal {
+
+    private LayoutJournal() {}
+
+    /* ===================== Events ===================== */
+
+    sealed interface Event permits CellSet, CellClear, TabAdded, TabRemoved, TabMoved, TabRenamed, TabSelected {}
+    record CellSet(int tab, int cell, String path, String icon) implements Event {}
+    record CellClear(int tab, int cell) implements Event {}
+    record TabAdded(int tab, String name) implements Event {}
+    record TabRemoved(int tab) implements Event {}
+    record TabMoved(int from, int to) implements Event {}
+    record TabRenamed(int tab, String name) implements Event {}
+    record TabSelected(int tab) implements Event {}
+
+    /**
+     * Replaces the writer's layout, writes it as the new base and, if asked, as XML too; then runs
+     * {@code afterwards}, if any (housekeeping that must not delay the layout write).
+     */
+    private record Checkpoint(LayoutStore.Layout layout, Path xml, CountDownLatch done,
+                              Runnable afterwards, CountDownLatch tidied) {}
+
+    private static final int MAGIC = 0x4C504A4C; // "LPJL"
+    private static final int VERSION = 1;
+
+    private static final long QUIET_MS = 500;          // flush after this long without new events
+    private static final long MAX_DELAY_MS = 2_000;    // ... but never hold events longer than this
+    private static final int COMPACT_AFTER = 256;      // records in the journal before compacting
+    private static final long EXIT_WAIT_MS = 5_000;
+
+    private static final BlockingQueue<Object> QUEUE = new LinkedBlockingQueue<>();
+    private static volatile boolean recording;
+    private static Path snapshotFile;
+    private static Path journalFile;
+
+    /* ===================== Lifecycle ===================== */
+
+    /**
+     * Start journaling on top of {@code current} (the layout just built, captured on the EDT). The
+     * writer first checkpoints it, so the journal continues from exactly what is on screen.
+     */
+    static synchronized void start(LayoutStore.Layout current, Path snapshot, Path journal) {
+        if (snapshotFile != null) return;
+        snapshotFile = snapshot;
+        journalFile = journal;
+        QUEUE.add(new Checkpoint(current, null, null, null, null));
+        Thread t = new Thread(LayoutJournal::runWriter, "lp-journal");
+        t.setDaemon(true);
+        t.start();
+        recording = true;
+    }
+
+    static boolean isRunning() {
+        return snapshotFile != null;
+    }
+
+    /**
+     * Full save at exit: events still pending are superseded by {@code layout}, which is written as
+     * XML and snapshot, and the journal is emptied. The writer then runs {@code afterwards} (may be
+     * null) off the EDT. Waits for both (bounded, together), which only the exit path may do.
+     * Returns false if the layout was not written in time; a slow {@code afterwards} is only cut short.
+     */
+    static boolean checkpoint(LayoutStore.Layout layout, Path xml, Runnable afterwards) {
+        CountDownLatch done = new CountDownLatch(1);
+        CountDownLatch tidied = new CountDownLatch(1);
+        QUEUE.add(new Checkpoint(layout, xml, done, afterwards, tidied));
+        long deadline = System.currentTimeMillis() + EXIT_WAIT_MS;
+        try {
+            if (!done.await(EXIT_WAIT_MS, TimeUnit.MILLISECONDS)) return false;
+            tidied.await(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return done.getCount() == 0;
+        }
+    }
+
+    /* ===================== Reporting (EDT) ===================== */
+
+    /** Record the current content of {@code cell}: its app, or empty. */
+    static void cellChanged(LaunchCell cell) {
+        if (!recording) return;
+        int tab = tabIndexOf(cell.getPanel());
+        if (tab < 0) return;
+        int index = cell.getIndex();
+        AppComponent app = cell.getApp();
+        if (app == null) {
+            emit(new CellClear(tab, index));
+        } else {
+            String icon = app.getCustomIconPath();
+            emit(new CellSet(tab, index, app.getAppPath(), (icon != null && !icon.isBlank()) ? icon : null));
+        }
+    }
+
+    // Structural events are reported BEFORE the Swing change, so the selection events the change
+    // fires already refer to the new tab order.
+    static void tabAdded(int tab, String name) { emit(new TabAdded(tab, name)); }
+    static void tabRemoved(int tab)            { emit(new TabRemoved(tab)); }
+    static void tabMoved(int from, int to)     { emit(new TabMoved(from, to)); }
+    static void tabRenamed(int tab, String name) { emit(new TabRenamed(tab, name)); }
+    static void tabSelected(int tab)           { emit(new TabSelected(tab)); }
+
+    private static void emit(Event e) {
+        if (recording) QUEUE.add(e);
+    }
+
+    private static int tabIndexOf(LaunchTabPanel panel) {
+        if (!(SwingUtilities.getAncestorOfClass(JTabbedPane.class, panel) instanceof JTabbedPane tabs)) return -1;
+        for (int i = 0; i < tabs.getTabCount(); i++) {
+            if (LayoutStore.panelAt(tabs, i) == panel) return i;
+        }
+        return -1;
+    }
+
+    /* ===================== Writer thread ===================== */
+
+    private static Model model;
+    private static FileChannel channel;
+    private static int records;
+
+    private static void runWriter() {
+        while (true) {
+            try {
+                List<Object> batch = new ArrayList<>();
+                Object first = QUEUE.take();
+                batch.add(first);
+                if (!(first instanceof Checkpoint)) {
+                    // Debounce: keep collecting until things go quiet, a checkpoint arrives, or the
+                    // oldest event has waited long enough.
+                    long deadline = System.currentTimeMillis() + MAX_DELAY_MS;
+                    while (true) {
+                        long left = Math.min(QUIET_MS, deadline - System.currentTimeMillis());
+                        Object next = (left > 0) ? QUEUE.poll(left, TimeUnit.MILLISECONDS) : null;
+                        if (next == null) break;
+                        batch.add(next);
+                        if (next instanceof Checkpoint) break;
+                    }
+                }
+                process(batch);
+            } catch (InterruptedException e) {
+                return;
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    private static void process(List<Object> batch) throws IOException {
+        // Everything before the last checkpoint is already contained in its layout.
+        int from = 0;
+        for (int i = batch.size() - 1; i >= 0; i--) {
+            if (batch.get(i) instanceof Checkpoint cp) {
+                boolean written = false;
+                try {
+                    model = new Model(cp.layout());
+                    if (cp.xml() != null) LayoutStore.writeXml(cp.layout(), cp.xml());
+                    compact();
+                    written = true;
+                } finally {
+                    if (cp.done() != null) cp.done().countDown();
+                    if (!written && cp.tidied() != null) cp.tidied().countDown(); // no tidying after a failed save
+                }
+                if (cp.afterwards() != null) {
+                    try {
+                        cp.afterwards().run();
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                    } finally {
+                        cp.tidied().countDown();
+                    }
+                }
+                from = i + 1;
+                break;
+            }
+        }
+        if (model == null) return;
+
+        List<Event> events = coalesce(batch.subList(from, batch.size()));
+        if (events.isEmpty()) return;
+
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        for (Event e : events) {
+            model.apply(e);
+            frame(encode(e), buf);
+        }
+        ByteBuffer bytes = ByteBuffer.wrap(buf.toByteArray());
+        while (bytes.hasRemaining()) channel.write(bytes);
+        channel.force(false);
+        records += events.size();
+
+        if (records >= COMPACT_AFTER) compact();
+    }
+
+    /**
+     * Last state wins for each cell, tab title and the selection, within runs of events that do not
+     * reorder tabs; adds, removals and moves are kept in place since they change what the indices mean.
+     */
+    private static List<Event> coalesce(List<Object> items) {
+        List<Event> out = new ArrayList<>();
+        Map<Object, Event> run = new LinkedHashMap<>();
+        for (Object o : items) {
+            if (!(o instanceof Event e)) continue;
+            Object key = switch (e) {
+                case CellSet c     -> List.of(0, c.tab(), c.cell());
+                case CellClear c   -> List.of(0, c.tab(), c.cell());
+                case TabRenamed r  -> List.of(1, r.tab());
+                case TabSelected s -> 2;
+                default            -> null;
+            };
+            if (key != null) {
+                run.remove(key); // re-insert so the surviving event keeps its latest position
+                run.put(key, e);
+            } else {
+                out.addAll(run.values());
+                run.clear();
+                out.add(e);
+            }
+        }
+        out.addAll(run.values());
+        return out;
+    }
+
+    /** New snapshot from the writer's layout, then an empty journal based on it. */
+    private static void compact() throws IOException {
+        byte[] snapshot = LayoutStore.encodeSnapshot(model.toLayout());
+        LayoutStore.writeBytes(snapshot, snapshotFile);
+
+        if (channel != null) channel.close();
+        Path dir = journalFile.toAbsolutePath().getParent();
+        Path tmp = Files.createTempFile(dir, journalFile.getFileName().toString() + "-", ".tmp");
+        try {
+            try (DataOutputStream out = new DataOutputStream(Files.newOutputStream(tmp))) {
+                out.writeInt(MAGIC);
+                out.writeInt(VERSION);
+                out.writeLong(LayoutStore.checksum(snapshot));
+            }
+            Files.move(tmp, journalFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp);
+        }
+        channel = FileChannel.open(journalFile, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        records = 0;
+    }
+
+    /* ===================== Replay (startup) ===================== */
+
+    /**
+     * {@code base} with the journal's records applied, given the raw bytes {@code base} was read
+     * from. Returns {@code base} unchanged when there is no journal or it belongs to another snapshot.
+     */
+    static LayoutStore.Layout replay(LayoutStore.Layout base, byte[] baseBytes, Path journal) {
+        if (!Files.exists(journal)) return base;
+        Model m = new Model(base);
+        int applied = 0;
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(journal))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) return base;
+            if (in.readLong() != LayoutStore.checksum(baseBytes)) return base;
+            while (true) {
+                byte[] payload = readFrame(in);
+                if (payload == null) break; // end, or a torn / corrupt tail
+                m.apply(decode(payload));
+                applied++;
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return (applied > 0) ? m.toLayout() : base;
+    }
+
+    /* ===================== Framing ===================== */
+
+    // [int length][int crc32(payload)][payload]
+    private static void frame(byte[] payload, ByteArrayOutputStream out) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        ByteBuffer head = ByteBuffer.allocate(8).putInt(payload.length).putInt((int) crc.getValue());
+        out.write(head.array(), 0, 8);
+        out.write(payload, 0, payload.length);
+    }
+
+    private static byte[] readFrame(DataInputStream din) throws IOException {
+        try {
+            int length = din.readInt();
+            int crc = din.readInt();
+            if (length < 0 || length > (1 << 20)) return null;
+            byte[] payload = din.readNBytes(length);
+            if (payload.length != length) return null;
+            CRC32 check = new CRC32();
+            check.update(payload);
+            return ((int) check.getValue() == crc) ? payload : null;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    private static byte[] encode(Event e) {
+        try {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream(64);
+            DataOutputStream out = new DataOutputStream(buf);
+            switch (e) {
+                case CellSet c -> {
+                    out.writeByte(1); out.writeInt(c.tab()); out.writeInt(c.cell()); out.writeUTF(c.path());
+                    out.writeBoolean(c.icon() != null);
+                    if (c.icon() != null) out.writeUTF(c.icon());
+                }
+                case CellClear c   -> { out.writeByte(2); out.writeInt(c.tab()); out.writeInt(c.cell()); }
+                case TabAdded a    -> { out.writeByte(3); out.writeInt(a.tab()); out.writeUTF(a.name()); }
+                case TabRemoved r  -> { out.writeByte(4); out.writeInt(r.tab()); }
+                case TabMoved m    -> { out.writeByte(5); out.writeInt(m.from()); out.writeInt(m.to()); }
+                case TabRenamed r  -> { out.writeByte(6); out.writeInt(r.tab()); out.writeUTF(r.name()); }
+                case TabSelected s -> { out.writeByte(7); out.writeInt(s.tab()); }
+            }
+            out.flush();
+            return buf.toByteArray();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex); // in-memory stream: cannot happen
+        }
+    }
+
+    private static Event decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        return switch (in.readByte()) {
+            case 1 -> new CellSet(in.readInt(), in.readInt(), in.readUTF(), in.readBoolean() ? in.readUTF() : null);
+            case 2 -> new CellClear(in.readInt(), in.readInt());
+            case 3 -> new TabAdded(in.readInt(), in.readUTF());
+            case 4 -> new TabRemoved(in.readInt());
+            case 5 -> new TabMoved(in.readInt(), in.readInt());
+            case 6 -> new TabRenamed(in.readInt(), in.readUTF());
+            case 7 -> new TabSelected(in.readInt());
+            default -> throw new IOException("Unknown journal record");
+        };
+    }
+
+    /* ===================== Mutable layout ===================== */
+
+    /** The layout as the journal sees it; events with out-of-range indices are ignored. */
+    private static final class Model {
+        private static final class MTab {
+            String name;
+            final TreeMap<Integer, LayoutStore.Cell> cells = new TreeMap<>();
+            MTab(String name) { this.name = name; }
+        }
+
+        private final List<MTab> tabs = new ArrayList<>();
+        private int selected;
+
+        Model(LayoutStore.Layout layout) {
+            for (LayoutStore.Tab t : layout.tabs()) {
+                MTab m = new MTab(t.name());
+                for (LayoutStore.Cell c : t.cells()) m.cells.put(c.index(), c);
+                tabs.add(m);
+            }
+            selected = layout.selected();
+        }
+
+        void apply(Event e) {
+            switch (e) {
+                case CellSet c -> {
+                    if (in(c.tab())) tabs.get(c.tab()).cells.put(c.cell(), new LayoutStore.Cell(c.cell(), c.path(), c.icon()));
+                }
+                case CellClear c -> {
+                    if (in(c.tab())) tabs.get(c.tab()).cells.remove(c.cell());
+                }
+                case TabAdded a -> tabs.add(Math.max(0, Math.min(a.tab(), tabs.size())), new MTab(a.name()));
+                case TabRemoved r -> {
+                    if (in(r.tab())) tabs.remove(r.tab());
+                }
+                case TabMoved m -> {
+                    if (in(m.from()) && in(m.to())) tabs.add(m.to(), tabs.remove(m.from()));
+                }
+                case TabRenamed r -> {
+                    if (in(r.tab())) tabs.get(r.tab()).name = r.name();
+                }
+                case TabSelected s -> selected = s.tab();
+            }
+        }
+
+        private boolean in(int tab) {
+            return tab >= 0 && tab < tabs.size();
+        }
+
+        LayoutStore.Layout toLayout() {
+            List<LayoutStore.Tab> out = new ArrayList<>(tabs.size());
+            for (MTab m : tabs) out.add(new LayoutStore.Tab(m.name, List.copyOf(m.cells.values())));
+            return new LayoutStore.Layout(out, (selected >= 0 && selected < tabs.size()) ? selected : (tabs.isEmpty() ? -1 : 0));
+        }
+    }
+}
@@ -0,0 +1,263 @@
+package com.commander4j.launchpad;
+
+/*******************************************************************************
+ * Title:        Commander4j
+ * Description:  Layout model plus streaming XML and binary snapshot storage
+ * Author:       Dave (with ChatGPT assistance)
+ * License:      GNU General Public License
+ *******************************************************************************/
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import javax.swing.JScrollPane;
+import javax.swing.JTabbedPane;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import javax.xml.stream.XMLStreamWriter;
+import javax.xml.stream.XMLOutputFactory;
+
+/**
+ * The saved layout as plain records, detached from Swing, and the two ways it is stored:
+ * <ul>
+ *   <li><b>launchpad.xml</b> – the readable import/export format, read and written with StAX
+ *       (no DOM, no Transformer);</li>
+ *   <li><b>snapshot</b> – the same data as a length-prefixed binary file that loads with no XML
+ *       parsing at all; used at startup unless the XML is newer (edited or replaced by hand).</li>
+ * </ul>
+ * Both are written to a temp file in the same directory, closed, then moved over the live file
+ * with ATOMIC_MOVE, so a crash mid-save leaves the previous layout intact.
+ */
+final class LayoutStore {
+
+    private LayoutStore() {}
+
+    record Cell(int index, String path, String icon) {}
+    record Tab(String name, List<Cell> cells) {}
+    record Layout(List<Tab> tabs, int selected) {}
+
+    private static final int SNAPSHOT_MAGIC = 0x4C50534E; // "LPSN"
+    private static final int SNAPSHOT_VERSION = 1;
+
+    /* ===================== Swing -> model ===================== */
+
+    /** Snapshot of the tabs and their occupied cells. EDT only. */
+    static Layout capture(JTabbedPane tabs) {
+        List<Tab> out = new ArrayList<>(tabs.getTabCount());
+        for (int t = 0; t < tabs.getTabCount(); t++) {
+            List<Cell> cells = new ArrayList<>();
+            LaunchTabPanel panel = panelAt(tabs, t);
+            if (panel != null && !panel.isMaterialized()) {
+                cells.addAll(panel.getSavedCells()); // never shown: still exactly as loaded
+            } else if (panel != null) {
+                for (LaunchCell cell : panel.getCells()) {
+                    AppComponent app = cell.getApp();
+                    if (app == null) continue;
+                    String icon = app.getCustomIconPath();
+                    cells.add(new Cell(cell.getIndex(), app.getAppPath(), (icon != null && !icon.isBlank()) ? icon : null));
+                }
+            }
+            out.add(new Tab(tabs.getTitleAt(t), cells));
+        }
+        return new Layout(out, tabs.getSelectedIndex());
+    }
+
+    /** Unwrap LaunchTabPanel if it's inside a JScrollPane. */
+    static LaunchTabPanel panelAt(JTabbedPane tabs, int index) {
+        var comp = tabs.getComponentAt(index);
+        if (comp instanceof LaunchTabPanel p) return p;
+        if (comp instanceof JScrollPane sp) {
+            var view = (sp.getViewport() != null) ? sp.getViewport().getView() : null;
+            if (view instanceof LaunchTabPanel p) return p;
+        }
+        return null;
+    }
+
+    /* ===================== XML (StAX) ===================== */
+
+    static void writeXml(Layout layout, Path file) throws IOException {
+        writeAtomically(file, out -> {
+            try {
+                XMLStreamWriter w = XMLOutputFactory.newFactory().createXMLStreamWriter(out, "UTF-8");
+                w.writeStartDocument("UTF-8", "1.0");
+                w.writeCharacters("\n");
+                w.writeStartElement("launchpad");
+                for (int t = 0; t < layout.tabs().size(); t++) {
+                    Tab tab = layout.tabs().get(t);
+                    w.writeCharacters("\n  ");
+                    w.writeStartElement("tab");
+                    w.writeAttribute("name", tab.name());
+                    if (t == layout.selected()) w.writeAttribute("selected", "true");
+                    for (Cell c : tab.cells()) {
+                        w.writeCharacters("\n    ");
+                        w.writeEmptyElement("cell");
+                        w.writeAttribute("index", String.valueOf(c.index()));
+                        w.writeAttribute("path", c.path());
+                        if (c.icon() != null) w.writeAttribute("icon", c.icon());
+                    }
+                    if (!tab.cells().isEmpty()) w.writeCharacters("\n  ");
+                    w.writeEndElement();
+                }
+                w.writeCharacters("\n");
+                w.writeEndElement();
+                w.writeCharacters("\n");
+                w.writeEndDocument();
+                w.close(); // flushes; does not close the underlying stream
+            } catch (XMLStreamException e) {
+                throw new IOException(e);
+            }
+        });
+    }
+
+    static Layout readXml(Path file) throws IOException {
+        XMLInputFactory f = XMLInputFactory.newFactory();
+        f.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+
+        List<Tab> tabs = new ArrayList<>();
+        int selected = -1;
+        try (InputStream in = new BufferedInputStream(Files.newInputStream(file))) {
+            XMLStreamReader r = f.createXMLStreamReader(in);
+            try {
+                String tabName = null;
+                List<Cell> cells = null;
+                while (r.hasNext()) {
+                    int ev = r.next();
+                    if (ev == XMLStreamConstants.START_ELEMENT) {
+                        switch (r.getLocalName()) {
+                            case "tab" -> {
+                                tabName = attr(r, "name");
+                                cells = new ArrayList<>();
+                                if ("true".equalsIgnoreCase(attr(r, "selected"))) selected = tabs.size();
+                            }
+                            case "cell" -> {
+                                if (cells == null) break; // cell outside a tab: ignore
+                                String icon = attr(r, "icon");
+                                cells.add(new Cell(Integer.parseInt(attr(r, "index")), attr(r, "path"),
+                                    icon.isBlank() ? null : icon));
+                            }
+                            default -> { }
+                        }
+                    } else if (ev == XMLStreamConstants.END_ELEMENT && "tab".equals(r.getLocalName()) && cells != null) {
+                        tabs.add(new Tab(tabName, cells));
+                        cells = null;
+                    }
+                }
+            } finally {
+                r.close();
+            }
+        } catch (XMLStreamException | NumberFormatException e) {
+            throw new IOException("Unreadable layout " + file + ": " + e.getMessage(), e);
+        }
+        return new Layout(tabs, selected);
+    }
+
+    /** Attribute value, "" when absent (as DOM's getAttribute did). */
+    private static String attr(XMLStreamReader r, String name) {
+        String v = r.getAttributeValue(null, name);
+        return (v != null) ? v : "";
+    }
+
+    /* ===================== Binary snapshot ===================== */
+
+    static void writeSnapshot(Layout layout, Path file) throws IOException {
+        writeBytes(encodeSnapshot(layout), file);
+    }
+
+    static byte[] encodeSnapshot(Layout layout) {
+        try {
+            ByteArrayOutputStream buf = new ByteArrayOutputStream(4096);
+            DataOutputStream out = new DataOutputStream(buf);
+            out.writeInt(SNAPSHOT_MAGIC);
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeInt(layout.selected());
+            out.writeInt(layout.tabs().size());
+            for (Tab tab : layout.tabs()) {
+                out.writeUTF(tab.name());
+                out.writeInt(tab.cells().size());
+                for (Cell c : tab.cells()) {
+                    out.writeInt(c.index());
+                    out.writeUTF(c.path());
+                    out.writeBoolean(c.icon() != null);
+                    if (c.icon() != null) out.writeUTF(c.icon());
+                }
+            }
+            out.flush();
+            return buf.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e); // in-memory stream: cannot happen
+        }
+    }
+
+    /** Decoded snapshot bytes, or null if they are from another version or damaged. */
+    static Layout decodeSnapshot(byte[] bytes) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            if (in.readInt() != SNAPSHOT_MAGIC || in.readInt() != SNAPSHOT_VERSION) return null;
+            int selected = in.readInt();
+            int tabCount = in.readInt();
+            List<Tab> tabs = new ArrayList<>(tabCount);
+            for (int t = 0; t < tabCount; t++) {
+                String name = in.readUTF();
+                int n = in.readInt();
+                List<Cell> cells = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) {
+                    int index = in.readInt();
+                    String path = in.readUTF();
+                    String icon = in.readBoolean() ? in.readUTF() : null;
+                    cells.add(new Cell(index, path, icon));
+                }
+                tabs.add(new Tab(name, cells));
+            }
+            return new Layout(tabs, selected);
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /** Checksum that ties a change journal to the snapshot it continues from. */
+    static long checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    /* ===================== Atomic replace ===================== */
+
+    private interface Writer {
+        void write(OutputStream out) throws IOException;
+    }
+
+    static void writeBytes(byte[] bytes, Path file) throws IOException {
+        writeAtomically(file, out -> out.write(bytes));
+    }
+
+    private static void writeAtomically(Path file, Writer body) throws IOException {
+        Path dir = file.toAbsolutePath().getParent();
+        Files.createDirectories(dir);
+        Path tmp = Files.createTempFile(dir, file.getFileName().toString() + "-", ".tmp");
+        try {
+            try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(tmp))) {
+                body.write(out);
+            }
+            Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(tmp); // only still there if something failed
+        }
+    }
+}
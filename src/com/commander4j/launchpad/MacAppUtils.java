@@ -10,23 +10,21 @@ package com.commander4j.launchpad;
 import java.awt.Graphics2D;
 import java.awt.Image;
 import java.awt.RenderingHints;
+import java.awt.image.BaseMultiResolutionImage;
 import java.awt.image.BufferedImage;
+import java.awt.image.MultiResolutionImage;
 import java.io.*;
 import java.nio.file.*;
 import java.security.MessageDigest;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.function.Consumer;
 
 import javax.imageio.ImageIO;
 import javax.swing.Icon;
 import javax.swing.ImageIcon;
 import javax.swing.filechooser.FileSystemView;
 
-import com.dd.plist.NSArray;
-import com.dd.plist.NSDictionary;
-import com.dd.plist.NSObject;
-import com.dd.plist.PropertyListParser;
-
 public class MacAppUtils {
 
     /* ===================== Sizing ===================== */
@@ -50,139 +48,461 @@ public class MacAppUtils {
     }
 
     /* ===================== In-memory + on-disk cache ===================== */
-    private static final Map<String, ImageIcon> ICON_CACHE = new ConcurrentHashMap<>();
+    // Byte budget for decoded icons held in memory (~57 KB each at 120 px); override with
+    // -Dlaunchpad.iconCache.maxBytes=<bytes>. Evicted icons are reloaded from the atlas on demand.
+    private static final long ICON_CACHE_MAX_BYTES = Long.getLong("launchpad.iconCache.maxBytes", 24L * 1024 * 1024);
+    private static final IconMemoryCache ICON_CACHE = new IconMemoryCache(ICON_CACHE_MAX_BYTES);
     private static final Path DISK_CACHE_DIR = Paths.get("./images/appIcons");
 
-    private static void ensureDiskCacheDir() {
-        try { Files.createDirectories(DISK_CACHE_DIR); } catch (IOException ignore) {}
+    // Content-addressed PNG tier, keyed by bundle identity (see identityKey). It lives in its own
+    // subdirectory because ./images/appIcons also holds the application's UI artwork.
+    private static final IconDiskCache DISK_CACHE = new IconDiskCache(DISK_CACHE_DIR.resolve("cache"));
+
+    // Packed, memory-mapped store of decoded rasters, keyed like DISK_CACHE. This is the startup
+    // read path; DISK_CACHE backs customIconPath and refills the atlas if it is ever rebuilt.
+    private static final Path ATLAS_DIR = Paths.get("./images/iconAtlas");
+    private static final IconAtlas ATLAS = openAtlas();
+
+    private static IconAtlas openAtlas() {
+        IconAtlas atlas = new IconAtlas(ATLAS_DIR);
+        try {
+            atlas.open();
+            return atlas;
+        } catch (IOException e) {
+            e.printStackTrace();
+            return null;
+        }
     }
 
     private static String canonical(Path p) {
         try { return p.toFile().getCanonicalPath(); } catch (Exception e) { return p.toAbsolutePath().toString(); }
     }
 
-    @SuppressWarnings("unused")
     private static String sha1(String s) {
+        return sha1(s.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+    }
+
+    private static String sha1(byte[] bytes) {
         try {
             MessageDigest md = MessageDigest.getInstance("SHA-1");
-            byte[] d = md.digest(s.getBytes(java.nio.charset.StandardCharsets.UTF_8));
+            byte[] d = md.digest(bytes);
             StringBuilder sb = new StringBuilder();
             for (byte b : d) sb.append(String.format("%02x", b));
             return sb.toString();
-        } catch (Exception e) { return Integer.toHexString(s.hashCode()); }
+        } catch (Exception e) { return Integer.toHexString(Arrays.hashCode(bytes)); }
     }
 
-    /** Base filename used for cache: <BundleName>.png */
-    private static String bundlePngName(Path bundle) {
-        String base = bundle.getFileName().toString();
-        if (base.toLowerCase(Locale.ROOT).endsWith(".app")) base = base.substring(0, base.length() - 4);
-        return base + ".png";
+    /** SHA-1 of an image's dimensions and ARGB pixels; equal icons hash equal whatever their source. */
+    private static String contentHash(BufferedImage bi) {
+        int[] px = IconAtlas.argbPixels(bi);
+        java.nio.ByteBuffer buf = java.nio.ByteBuffer.allocate(8 + px.length * 4);
+        buf.putInt(bi.getWidth()).putInt(bi.getHeight());
+        buf.asIntBuffer().put(px);
+        return sha1(buf.array());
     }
 
-    /** Disk cache path: ./images/appIcons/<BundleName>.png */
-    private static Path iconCacheFile(Path bundle) {
-        ensureDiskCacheDir();
-        return DISK_CACHE_DIR.resolve(bundlePngName(bundle));
+    private record IdentityMemo(long plistMtime, String key) {}
+    private static final Map<String, IdentityMemo> IDENTITY_KEYS = new ConcurrentHashMap<>();
+
+    /**
+     * Stable cache key for a bundle: SHA-1 of canonical path + CFBundleIdentifier + CFBundleVersion.
+     * Two bundles with the same folder name no longer collide, and an app update (new version)
+     * gets a fresh key. Memoised per canonical path until Info.plist changes.
+     */
+    private static String identityKey(Path bundle) {
+        return identityKey(bundle, BundleInfo.plistMtime(bundle));
     }
 
-    /** True if cached PNG is newer than Info.plist / Assets.car / Resources dir. */
-    private static boolean diskIconFresh(Path bundle, Path iconPng) {
-        try {
-            if (!Files.exists(iconPng)) return false;
-            long iconTime = Files.getLastModifiedTime(iconPng).toMillis();
+    /** {@link #identityKey(Path)} with the Info.plist mtime already known (e.g. from a fingerprint). */
+    private static String identityKey(Path bundle, long mtime) {
+        String canon = canonical(bundle);
 
-            Path infoPlist = bundle.resolve("Contents/Info.plist");
-            if (Files.exists(infoPlist) && iconTime < Files.getLastModifiedTime(infoPlist).toMillis()) return false;
+        IdentityMemo memo = IDENTITY_KEYS.get(canon);
+        if (memo != null && memo.plistMtime() == mtime) return memo.key();
 
-            Path assets = bundle.resolve("Contents/Resources/Assets.car");
-            if (Files.exists(assets) && iconTime < Files.getLastModifiedTime(assets).toMillis()) return false;
+        BundleInfo info = BundleInfo.of(bundle);
+        String id = (info != null) ? firstNonBlank(info.identifier()) : "";
+        String version = (info != null) ? info.anyVersion() : "";
+        String key = sha1(canon + "|" + id + "|" + version);
+        IDENTITY_KEYS.put(canon, new IdentityMemo(mtime, key));
+        return key;
+    }
 
-            Path resources = bundle.resolve("Contents/Resources");
-            if (Files.exists(resources) && iconTime < Files.getLastModifiedTime(resources).toMillis()) return false;
+    /**
+     * Files written by earlier naming schemes: ./images/appIcons/<BundleName>.png and the
+     * underscore variant <Bundle_Name>.png. Only read for migration, then garbage-collected.
+     */
+    private static List<Path> legacyPngFiles(Path bundle) {
+        String base = bundle.getFileName().toString();
+        if (base.toLowerCase(Locale.ROOT).endsWith(".app")) base = base.substring(0, base.length() - 4);
+        List<Path> out = new ArrayList<>(2);
+        out.add(DISK_CACHE_DIR.resolve(base + ".png"));
+        String underscored = base.replace(' ', '_');
+        if (!underscored.equals(base)) out.add(DISK_CACHE_DIR.resolve(underscored + ".png"));
+        return out;
+    }
 
-            return true;
-        } catch (Exception e) {
-            return false;
+    /** When the cached icon for {@code key} was written (atlas, PNG tier, legacy PNG), -1 if none. */
+    private static long cachedIconTime(Path bundle, String key) {
+        if (ATLAS != null) {
+            IconAtlas.Entry e = ATLAS.entry(key);
+            if (e != null) return e.writtenAt;
+        }
+        long t = DISK_CACHE.writtenAt(key);
+        if (t >= 0) return t;
+        for (Path legacy : legacyPngFiles(bundle)) {
+            try {
+                if (Files.exists(legacy)) return Files.getLastModifiedTime(legacy).toMillis();
+            } catch (IOException ignore) {}
         }
+        return -1;
+    }
+
+    /**
+     * True if the cached icon still matches the bundle. Icons in the atlas carry the fingerprint
+     * taken when they were written, so this is one comparison; older entries (and the PNG tier)
+     * fall back to "written after the newest of Info.plist / Assets.car / Resources".
+     */
+    private static boolean iconFresh(Path bundle, BundleFingerprint now) {
+        String key = (now.plistMtime() >= 0) ? identityKey(bundle, now.plistMtime()) : identityKey(bundle);
+        IconAtlas.Entry e = (ATLAS != null) ? ATLAS.entry(key) : null;
+        if (e != null) return atlasEntryFresh(e, now);
+        long iconTime = cachedIconTime(bundle, key);
+        return iconTime >= 0 && now.newestMtime() <= iconTime;
+    }
+
+    /** {@link #iconFresh} for one atlas entry (1x or 2x). */
+    private static boolean atlasEntryFresh(IconAtlas.Entry e, BundleFingerprint now) {
+        if (!e.fingerprint.isNone()) return e.fingerprint.equals(now);
+        return now.newestMtime() <= e.writtenAt;
     }
 
     private static ImageIcon loadIconFromDisk(Path bundle) {
-        Path png = iconCacheFile(bundle);
-        if (!diskIconFresh(bundle, png)) return null;
-        try (InputStream in = Files.newInputStream(png)) {
-            BufferedImage bi = ImageIO.read(in);
-            if (bi == null) return null;
-            // Reject blank icons cached before the visibility-check code was added.
-            // This triggers a one-time re-resolution via NSWorkspace for affected apps.
-            if (!hasVisibleContent(bi)) { Files.deleteIfExists(png); return null; }
-            return new ImageIcon(bi);
-        } catch (Exception e) {
-            return null;
-        }
+        if (!iconFresh(bundle, BundleFingerprint.of(bundle))) return null;
+        return loadIconFromDiskAnyAge(bundle);
     }
 
     /**
-     * Load the on-disk cached PNG regardless of freshness. Used by the fast startup path so a
+     * Load the on-disk cached icon regardless of freshness. Used by the fast startup path so a
      * stale-but-present icon can be shown immediately; the background refresh pass replaces it
-     * later if the bundle has actually changed. Returns null if there is no usable cached PNG.
+     * later if the bundle has actually changed. Returns null if there is no usable cached icon.
+     * <p>
+     * Order: atlas (one bulk copy from the mapped file) → content-addressed PNG → legacy
+     * <BundleName>.png. Anything found below the atlas is written back up, so it is decoded once.
      */
     private static ImageIcon loadIconFromDiskAnyAge(Path bundle) {
-        Path png = iconCacheFile(bundle);
-        if (!Files.exists(png)) return null;
-        try (InputStream in = Files.newInputStream(png)) {
-            BufferedImage bi = ImageIO.read(in);
-            if (bi == null || !hasVisibleContent(bi)) return null;
+        String key = identityKey(bundle);
+        if (ATLAS != null) {
+            BufferedImage bi = ATLAS.get(key);
+            if (bi != null) return new ImageIcon(bi);
+        }
+
+        Path blob = DISK_CACHE.lookup(key);
+        Boolean visible = DISK_CACHE.visible(key);
+        if (blob != null && !Boolean.FALSE.equals(visible)) {
+            BufferedImage bi = readPng(blob);
+            if (bi != null) {
+                // The verdict is stored with the entry; only entries written before it was recorded get scanned.
+                if (visible == null) {
+                    visible = hasVisibleContent(bi);
+                    DISK_CACHE.setVisible(key, visible);
+                }
+                if (visible) {
+                    if (ATLAS != null) ATLAS.put(key, bi, DISK_CACHE.contentHash(key));
+                    return new ImageIcon(bi);
+                }
+            }
+        }
+
+        for (Path legacy : legacyPngFiles(bundle)) {
+            if (!Files.exists(legacy)) continue;
+            BufferedImage bi = readPng(legacy);
+            // Reject blank icons cached before the visibility-check code was added.
+            if (bi == null || !hasVisibleContent(bi)) continue;
+            saveIconToDisk(bundle, bi);
             return new ImageIcon(bi);
+        }
+        return null;
+    }
+
+    private static BufferedImage readPng(Path png) {
+        try (InputStream in = Files.newInputStream(png)) {
+            return ImageIO.read(in);
         } catch (Exception e) {
             return null;
         }
     }
 
-    /** Save image to disk cache as <BundleName>.png. Returns the final path or null on failure. */
+    /** Save image to the atlas and the content-addressed disk tier. Returns the PNG path or null on failure. */
     private static Path saveIconToDisk(Path bundle, BufferedImage bi) {
-        ensureDiskCacheDir();
-        Path out = iconCacheFile(bundle);
-        try {
-            Path tmp = Files.createTempFile(DISK_CACHE_DIR, "ico-", ".png");
-            ImageIO.write(bi, "PNG", tmp.toFile());
-            Files.move(tmp, out, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
-            return out;
-        } catch (Exception ignore) {
-            return null;
+        String key = identityKey(bundle);
+        String hash = contentHash(bi);
+        boolean visible = hasVisibleContent(bi);
+        if (ATLAS != null) {
+            IconAtlas.Entry prev = ATLAS.entry(key);
+            if (prev == null || !hash.equals(prev.contentHash)) dropHiDpiVariant(bundle, key);
         }
+        // Only visible rasters go into the atlas, so atlas reads never need re-checking.
+        if (ATLAS != null && visible) ATLAS.put(key, bi, hash, BundleFingerprint.of(bundle));
+        return DISK_CACHE.store(key, bi, hash, visible);
     }
 
+    /** Clears the memory cache, the atlas and the content-addressed PNGs (UI artwork is left alone). */
     public static void clearIconCache() {
         ICON_CACHE.clear();
-        try {
-            ensureDiskCacheDir();
-            try (var s = Files.list(DISK_CACHE_DIR)) {
-                s.forEach(p -> { try { Files.deleteIfExists(p); } catch (Exception ignore) {} });
-            }
-        } catch (Exception ignore) {}
+        NO_HIDPI.clear();
+        if (ATLAS != null) ATLAS.clear();
+        DISK_CACHE.clear();
+    }
+
+    /**
+     * Drop a bundle's icons (1x and 2x) from the memory cache only, after its bundle changed on disk.
+     * The disk tiers stay: their freshness is checked against the bundle by {@link #needsIconRefresh}.
+     */
+    public static void forgetCachedIcon(File bundle) {
+        if (bundle == null) return;
+        Path bpath = bundle.toPath();
+        ICON_CACHE.remove(memKey(bpath));
+        ICON_CACHE.remove(memKey(bpath, HIDPI_RENDER_SIZE));
     }
 
     public static void evictIcon(File bundle) {
         if (bundle != null) {
-            String memKey = canonical(bundle.toPath()) + "|" + ICON_RENDER_SIZE;
-            ICON_CACHE.remove(memKey);
-            try { Files.deleteIfExists(iconCacheFile(bundle.toPath())); } catch (Exception ignore) {}
+            Path bpath = bundle.toPath();
+            ICON_CACHE.remove(memKey(bpath));
+            String key = identityKey(bpath);
+            dropHiDpiVariant(bpath, key);
+            if (ATLAS != null) ATLAS.remove(key);
+            DISK_CACHE.remove(key);
+            for (Path legacy : legacyPngFiles(bpath)) {
+                try { Files.deleteIfExists(legacy); } catch (Exception ignore) {}
+            }
         }
     }
 
+    /**
+     * Garbage-collect the disk tiers against the saved layout: drop atlas and index entries for
+     * bundles no saved cell references, delete PNG blobs nothing points at any more, and delete the
+     * legacy <BundleName>.png files of saved bundles once they have been migrated.
+     * Returns the number of files deleted.
+     */
+    public static int collectIconGarbage(Collection<File> savedBundles) {
+        Set<String> live = new HashSet<>();
+        Set<String> liveCanonical = new HashSet<>();
+        int deleted = 0;
+        for (File f : savedBundles) {
+            Path bpath = f.toPath();
+            liveCanonical.add(canonical(bpath));
+            String key = identityKey(bpath);
+            live.add(key);
+            live.add(key + HIDPI_SUFFIX);
+            if (DISK_CACHE.lookup(key) != null) {
+                for (Path legacy : legacyPngFiles(bpath)) {
+                    try { if (Files.deleteIfExists(legacy)) deleted++; } catch (Exception ignore) {}
+                }
+            }
+        }
+        if (ATLAS != null) {
+            for (String key : ATLAS.keys()) if (!live.contains(key)) ATLAS.remove(key);
+        }
+        ROUTER.retain(live);
+        FAILURES.retain(liveCanonical);
+        saveResolutionHistory();
+        return deleted + DISK_CACHE.collectGarbage(live);
+    }
+
+    /** Memory-cache key for a bundle at the standard render size. */
+    private static String memKey(Path bundle) {
+        return memKey(bundle, ICON_RENDER_SIZE);
+    }
+
+    private static String memKey(Path bundle, int renderSize) {
+        return memKey(canonical(bundle), renderSize);
+    }
+
+    private static String memKey(String canonicalPath, int renderSize) {
+        return canonicalPath + "|" + renderSize;
+    }
+
+    /**
+     * Icon for a bundle from the memory cache, else from the disk tier (atlas / PNG, any age).
+     * Never resolves or spawns anything; returns null if nothing is cached. Used to re-acquire
+     * icons for cells whose tab becomes visible again after their icons were released.
+     */
+    public static ImageIcon getCachedIcon(File bundle) {
+        if (bundle == null) return null;
+        Path bpath = bundle.toPath();
+        String key = memKey(bpath);
+        ImageIcon icon = ICON_CACHE.get(key);
+        if (icon == null) {
+            icon = loadIconFromDiskAnyAge(bpath);
+            if (icon != null) ICON_CACHE.put(key, icon);
+        }
+        return icon;
+    }
+
+    /**
+     * Pin the icons of the given (visible) bundles so the memory cache never evicts them.
+     * Takes canonical paths (as held by AppComponent) so nothing is resolved on the EDT.
+     */
+    public static void pinVisibleIcons(Collection<String> canonicalPaths) {
+        List<String> keys = new ArrayList<>();
+        if (canonicalPaths != null) {
+            for (String canon : canonicalPaths) {
+                keys.add(memKey(canon, ICON_RENDER_SIZE));
+                keys.add(memKey(canon, HIDPI_RENDER_SIZE));
+            }
+        }
+        ICON_CACHE.setPinned(keys);
+    }
+
+    /** Hits, misses, evictions and resident bytes of the in-memory icon cache. */
+    public static IconMemoryCache.Stats getIconCacheStats() {
+        return ICON_CACHE.stats();
+    }
+
+    /** Compact the icon atlas, dropping rasters superseded by later refreshes. */
+    public static void compactIconStore() {
+        if (ATLAS != null) ATLAS.compact();
+    }
+
+    /* ===================== HiDPI (2x) variants ===================== */
+    // The 1x raster (ICON_RENDER_SIZE) is what every tier stores by default. A 2x raster is only
+    // produced when a component lands on a screen whose scale needs it, then kept in the atlas
+    // under "<identityKey>@2x" and in memory under memKey(bundle, HIDPI_RENDER_SIZE).
+    private static final int HIDPI_RENDER_SIZE = ICON_RENDER_SIZE * 2;
+    private static final String HIDPI_SUFFIX = "@2x";
+    // Mean per-channel difference (0..255) above which a resolved 2x is judged not to be the 1x picture.
+    private static final double HIDPI_MATCH_TOLERANCE = 24.0;
+
+    // Identity keys whose 2x could not be produced (or did not match the 1x, e.g. custom icons
+    // set before 2x variants existed); not retried until the 1x changes or caches are cleared.
+    private static final Set<String> NO_HIDPI = ConcurrentHashMap.newKeySet();
+
+    private static final ExecutorService HIDPI_LOADER = Executors.newSingleThreadExecutor(r -> {
+        Thread th = new Thread(r, "lp-icon-hidpi");
+        th.setDaemon(true);
+        th.setPriority(Thread.MIN_PRIORITY);
+        return th;
+    });
+
+    /**
+     * Build the 1x+2x icon for {@code base} off the calling thread and hand it to {@code onReady}
+     * (on the loader thread). Nothing is called back if no 2x variant is available.
+     */
+    public static void requestHiDpiIcon(File bundle, ImageIcon base, Consumer<ImageIcon> onReady) {
+        if (bundle == null || base == null || onReady == null) return;
+        HIDPI_LOADER.execute(() -> {
+            try {
+                ImageIcon icon = getHiDpiIcon(bundle, base);
+                if (icon != null) onReady.accept(icon);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        });
+    }
+
+    /**
+     * An ImageIcon over a BaseMultiResolutionImage of {@code base} (1x) and a 2x raster from the
+     * memory cache, the atlas (if still fresh for the bundle), or - first time only - the strategy
+     * that produced the 1x, run at twice the render size. Returns null for placeholders or when no
+     * matching 2x exists. May block.
+     */
+    public static ImageIcon getHiDpiIcon(File bundle, ImageIcon base) {
+        BufferedImage lo = iconToBuffered(base);
+        if (bundle == null || lo == null || lo.getWidth() != ICON_RENDER_SIZE) return null;
+
+        Path bpath = bundle.toPath();
+        String memKey2 = memKey(bpath, HIDPI_RENDER_SIZE);
+        ImageIcon cached = ICON_CACHE.get(memKey2);
+        if (cached != null) return cached;
+
+        String key2 = identityKey(bpath) + HIDPI_SUFFIX;
+        if (NO_HIDPI.contains(key2)) return null;
+
+        BundleFingerprint now = BundleFingerprint.of(bpath);
+        IconAtlas.Entry e2 = (ATLAS != null) ? ATLAS.entry(key2) : null;
+        BufferedImage hi = (e2 != null && atlasEntryFresh(e2, now)) ? ATLAS.get(key2) : null;
+        if (hi == null) {
+            try {
+                hi = resolveHiDpiRaster(bpath);
+            } catch (IconWorkerBusy busy) {
+                return null;  // not a verdict: asked again the next time the cell is shown
+            }
+            if (hi == null || !sameAsBase(hi, lo)) {
+                NO_HIDPI.add(key2);
+                return null;
+            }
+            if (ATLAS != null) ATLAS.put(key2, hi, contentHash(hi), now);
+        }
+
+        ImageIcon icon = new ImageIcon(new BaseMultiResolutionImage(lo, hi));
+        ICON_CACHE.put(memKey2, icon);
+        return icon;
+    }
+
+    /**
+     * The 2x raster from the strategy that won the 1x (see {@link IconStrategyRouter#winner}), so a
+     * painted cell costs at most one lookup and never walks the chain. The attempt is not recorded:
+     * the router's table is about the 1x resolution. With no known winner only the in-process
+     * strategies are tried (no osascript or qlmanage).
+     */
+    private static BufferedImage resolveHiDpiRaster(Path bpath) throws IconWorkerBusy {
+        BundleInfo info = BundleInfo.of(bpath);
+        if ((info == null || info.iosWrapper()) && !isIosWrapperBundle(bpath)) return null;
+
+        IconStrategyRouter.Strategy winner = ROUTER.winner(identityKey(bpath), bundleClass(bpath, info));
+        List<IconStrategyRouter.Strategy> tries = (winner != null) ? List.of(winner)
+            : (info != null && !info.iosWrapper()) ? List.of(IconStrategyRouter.Strategy.ICNS, IconStrategyRouter.Strategy.IOS_PNG)
+            : List.of();
+        for (IconStrategyRouter.Strategy s : tries) {
+            NswPrefetch nsw = null;
+            if (s == IconStrategyRouter.Strategy.NSWORKSPACE) {
+                nsw = tryNSWorkspaceIcon(bpath, HIDPI_RENDER_SIZE);
+                if (nsw == NswPrefetch.NO_WORKER) throw new IconWorkerBusy();
+            }
+            try {
+                BufferedImage bi = iconToBuffered(runStrategy(s, bpath, info, HIDPI_RENDER_SIZE, nsw));
+                if (bi != null && bi.getWidth() == HIDPI_RENDER_SIZE) return bi;
+            } catch (Exception e) {
+                // next one
+            }
+        }
+        return null;
+    }
+
+    /** True if {@code hi}, reduced to the 1x size, looks like {@code lo} (guards custom icons). */
+    private static boolean sameAsBase(BufferedImage hi, BufferedImage lo) {
+        BufferedImage reduced = scaleToSquare(hi, lo.getWidth());
+        int w = lo.getWidth(), h = lo.getHeight();
+        int[] a = reduced.getRGB(0, 0, w, h, null, 0, w);
+        int[] b = lo.getRGB(0, 0, w, h, null, 0, w);
+        long diff = 0;
+        for (int i = 0; i < a.length; i++) {
+            for (int sh = 0; sh < 32; sh += 8) diff += Math.abs(((a[i] >>> sh) & 0xFF) - ((b[i] >>> sh) & 0xFF));
+        }
+        return diff / (a.length * 4.0) <= HIDPI_MATCH_TOLERANCE;
+    }
+
+    /** Forget the 2x variant of a bundle (memory, atlas, negative entry); it is rebuilt on demand. */
+    private static void dropHiDpiVariant(Path bundle, String key) {
+        ICON_CACHE.remove(memKey(bundle, HIDPI_RENDER_SIZE));
+        NO_HIDPI.remove(key + HIDPI_SUFFIX);
+        if (ATLAS != null) ATLAS.remove(key + HIDPI_SUFFIX);
+    }
+
     /* ===================== Public helpers for custom icon assignment ===================== */
 
-    /** Return the on-disk cached PNG path for a bundle (./images/appIcons/<BundleName>.png). */
+    /** Return the on-disk cached PNG for a bundle (./images/appIcons/cache/<contentHash>.png), or null. */
     public static String getCachedIconPathForBundle(File bundle) {
-        return iconCacheFile(bundle.toPath()).toString();
+        Path blob = DISK_CACHE.lookup(identityKey(bundle.toPath()));
+        return (blob != null) ? blob.toString() : null;
     }
 
-    /** Copy+resize a user-chosen image (or ICNS) into the cache as <BundleName>.png, then return it as an ImageIcon. */
+    /** Copy+resize a user-chosen image (or ICNS) into the icon cache, then return it as an ImageIcon. */
     public static ImageIcon loadAndCacheCustomIcon(File bundle, File srcImage, int renderSize) throws IOException {
         if (bundle == null || srcImage == null) return null;
 
-        ensureDiskCacheDir();
-
         BufferedImage src;
         String name = srcImage.getName().toLowerCase(Locale.ROOT);
         if (name.endsWith(".icns")) {
@@ -199,6 +519,12 @@ public class MacAppUtils {
         Path out = saveIconToDisk(bundle.toPath(), scaled);
         if (out == null) throw new IOException("Failed saving icon to cache.");
 
+        // The 2x variant must come from the same picture; re-resolving the bundle would give the app's own icon.
+        if (ATLAS != null && renderSize == ICON_RENDER_SIZE) {
+            BufferedImage hi = scaleToSquare(src, HIDPI_RENDER_SIZE);
+            ATLAS.put(identityKey(bundle.toPath()) + HIDPI_SUFFIX, hi, contentHash(hi), BundleFingerprint.of(bundle.toPath()));
+        }
+
         // update memory cache too
         String memKey = canonical(bundle.toPath()) + "|" + renderSize;
         ICON_CACHE.put(memKey, new ImageIcon(scaled));
@@ -208,97 +534,189 @@ public class MacAppUtils {
 
     /**
      * Force-refreshes the icon for the given bundle: evicts both caches, re-resolves using the
-     * full strategy (ICNS → iOS PNGs → NSWorkspace → QuickLook → system icon), saves the result
+     * strategy chain as routed for this bundle (see {@link IconStrategyRouter}), saves the result
      * to the disk cache, and returns the new ImageIcon.  Returns null only if all strategies fail.
      *
      * Safe to call from a background thread; does NOT touch Swing components.
      */
     public static ImageIcon refreshIcon(File bundle) {
+        try {
+            return refreshOrDefer(bundle, null, false);
+        } catch (IconWorkerBusy cannotHappen) {
+            return null;
+        }
+    }
+
+    /**
+     * {@link #refreshIcon(File)} with an optional NSWorkspace result already fetched by a batch. With
+     * {@code deferIfBusy}, an NSWorkspace step that found no free worker abandons the resolution
+     * (see {@link IconWorkerBusy}); otherwise the chain moves on, as when an app is added.
+     */
+    private static ImageIcon refreshOrDefer(File bundle, NswPrefetch pre, boolean deferIfBusy) throws IconWorkerBusy {
         if (bundle == null || !bundle.exists()) return null;
+        ImageIcon icon = resolveAndCache(bundle, pre, deferIfBusy);
+        noteResolution(bundle.toPath(), icon, failureReason(pre));
+        return icon;
+    }
+
+    private static ImageIcon resolveAndCache(File bundle, NswPrefetch pre, boolean deferIfBusy) throws IconWorkerBusy {
         // NOTE: do NOT evict caches here. If resolution fails we must leave the existing
         // cached icon intact so the app continues to display something on next load.
         try {
             Path bpath = bundle.toPath();
-            Path infoPlist = bpath.resolve("Contents/Info.plist");
+            BundleInfo info = BundleInfo.of(bpath);
 
             // iOS wrapper apps have no Contents/Info.plist; NSWorkspace is the only option.
-            if (!Files.exists(infoPlist)) {
+            if (info == null || info.iosWrapper()) {
                 if (!isIosWrapperBundle(bpath)) return null;
-                ImageIcon icon = tryNSWorkspaceIcon(bpath, ICON_RENDER_SIZE);
+                ImageIcon icon = resolveIcon(bpath, info, ICON_RENDER_SIZE, pre, deferIfBusy);
                 if (icon == null) return null;
-                String memKey = canonical(bpath) + "|" + ICON_RENDER_SIZE;
+                String memKey = memKey(bpath);
                 ICON_CACHE.put(memKey, icon);
                 BufferedImage bi = iconToBuffered(icon);
                 if (bi != null && bi.getWidth() > 0) saveIconToDisk(bpath, bi);
                 return icon;
             }
 
-            NSDictionary root = (NSDictionary) PropertyListParser.parse(infoPlist.toFile());
-
-            // resolveIconAtAddTime goes straight to the resolution strategies; it does not
-            // read from the memory or disk cache, so no eviction is needed before calling it.
-            ImageIcon icon = resolveIconAtAddTime(bpath, root, ICON_RENDER_SIZE);
+            // resolveIcon goes straight to the resolution strategies; it does not read from
+            // the memory or disk cache, so no eviction is needed before calling it.
+            ImageIcon icon = resolveIcon(bpath, info, ICON_RENDER_SIZE, pre, deferIfBusy);
             if (icon == null) return null;   // leave existing caches untouched
 
             // Resolution succeeded: now replace both caches with the fresh result.
-            String memKey = canonical(bpath) + "|" + ICON_RENDER_SIZE;
+            String memKey = memKey(bpath);
             ICON_CACHE.put(memKey, icon);
 
             BufferedImage bi = iconToBuffered(icon);
             if (bi != null && bi.getWidth() > 0) saveIconToDisk(bpath, bi);
 
             return icon;
+        } catch (IconWorkerBusy busy) {
+            throw busy;
         } catch (Exception e) {
             e.printStackTrace();
             return null;
         }
     }
 
+    /** Per-bundle outcome of {@link #refreshIconsBatch}: icons that resolved, and why the others did not. */
+    public record IconBatchResult(Map<File, ImageIcon> icons, Map<File, String> failures) {}
+
+    /**
+     * Batch form of {@link #refreshIcon(File)} for bulk refreshes. Bundles whose resolution starts
+     * with NSWorkspace (Assets.car apps, iOS wrappers) are sent to one worker as a single request that
+     * writes N PNGs; every bundle then finishes its strategy chain reusing that result, so a failed or
+     * timed-out NSWorkspace item falls through to ICNS etc. without a second osascript round trip.
+     * {@code batchTimeoutMs} bounds the NSWorkspace request for the whole batch.
+     * <p>
+     * {@code deferIfBusy} is for passes over bundles that already show an icon (stale checks): a
+     * bundle whose NSWorkspace step found no free worker is then left as it is, reported as a
+     * failure, for a later pass to retry. Without it (placeholders, a refresh the user asked for)
+     * the chain moves on to the other strategies, so every bundle comes back with an answer.
+     * <p>
+     * Safe to call from a background thread; does NOT touch Swing components.
+     */
+    public static IconBatchResult refreshIconsBatch(List<File> bundles, long batchTimeoutMs, boolean deferIfBusy) {
+        Map<File, ImageIcon> icons = new LinkedHashMap<>();
+        Map<File, String> failures = new LinkedHashMap<>();
+
+        List<File> nswFirst = new ArrayList<>();
+        for (File f : bundles) {
+            if (f == null) continue;
+            if (!f.exists()) { failures.put(f, "bundle not found"); continue; }
+            Path b = f.toPath();
+            BundleInfo info = BundleInfo.of(b);
+            // Wrapper-shaped but not an iOS wrapper: refreshIcon gives up on these, nothing to fetch
+            if ((info == null || info.iosWrapper()) && !isIosWrapperBundle(b)) continue;
+            // Prefetch for the bundles whose route starts with NSWorkspace (by default Assets.car
+            // apps and iOS wrappers; also classic apps whose ICNS is known to be a blank stub)
+            if (ROUTER.first(identityKey(b), bundleClass(b, info)) == IconStrategyRouter.Strategy.NSWORKSPACE) {
+                nswFirst.add(f);
+            }
+        }
+        Map<File, NswPrefetch> prefetched = prefetchNSWorkspaceIcons(nswFirst, ICON_RENDER_SIZE, batchTimeoutMs);
+
+        for (File f : bundles) {
+            if (f == null || failures.containsKey(f)) continue;
+            NswPrefetch pre = prefetched.get(f);
+            try {
+                ImageIcon icon = refreshOrDefer(f, pre, deferIfBusy);
+                if (icon != null) icons.put(f, icon);
+                else failures.put(f, failureReason(pre));
+            } catch (IconWorkerBusy busy) {
+                failures.put(f, busy.getMessage() + "; left for a later pass");
+            }
+        }
+        return new IconBatchResult(icons, failures);
+    }
+
+    private static String failureReason(NswPrefetch pre) {
+        return (pre != null && pre.error() != null)
+                ? "NSWorkspace: " + pre.error() + "; no other strategy produced an icon"
+                : "no strategy produced an icon";
+    }
+
+    /* ===================== Negative cache ===================== */
+
+    // Bundles whose icon could not be resolved, so the startup pass stops retrying them (see IconFailureCache).
+    private static final IconFailureCache FAILURES =
+        new IconFailureCache(Paths.get("./xml/config/launchpad.failures"));
+
+    /**
+     * Fingerprint for the negative cache: the bundle's icon fingerprint plus the bundle directory
+     * itself (an iOS wrapper has no Contents/ of its own). Only taken for bundles that need an icon.
+     */
+    private static long failureFingerprint(Path bundle, BundleFingerprint fp) {
+        long h = fp.hash();
+        try {
+            h = 31 * h + Files.getLastModifiedTime(bundle).toMillis();
+        } catch (IOException missing) {
+            h = 31 * h - 1;
+        }
+        return h;
+    }
+
+    /** Record the outcome of a resolution in the negative cache. */
+    private static void noteResolution(Path bundle, ImageIcon icon, String reason) {
+        if (icon != null && icon.getIconWidth() > 0) FAILURES.recordSuccess(canonical(bundle));
+        else FAILURES.recordFailure(canonical(bundle), failureFingerprint(bundle, BundleFingerprint.of(bundle)),
+                                    reason, System.currentTimeMillis());
+    }
+
+    /** Known-bad bundles, suppressed and recorded failures since startup. */
+    public static IconFailureCache.Stats getIconFailureStats() {
+        return FAILURES.stats();
+    }
+
+    /** Write the strategy table, the negative cache and the icon cache index if they changed. Safe from any thread. */
+    public static void saveResolutionHistory() {
+        ROUTER.save();
+        FAILURES.save();
+        DISK_CACHE.flush();
+    }
+
     /* ===================== Main API ===================== */
 
     /**
      * Cheap check (filesystem mtimes only — no subprocess) for whether a bundle's cached icon is
      * missing or out of date and should be re-resolved. Used by the background refresh pass so we
      * only spawn osascript/qlmanage for apps that have actually changed since the cache was written.
+     * Bundles whose resolution failed before are not retried until they change or their backoff
+     * runs out (see {@link IconFailureCache}).
      */
     public static boolean needsIconRefresh(File bundle) {
         if (bundle == null || !bundle.exists()) return false;
         Path bpath = bundle.toPath();
-        Path png = iconCacheFile(bpath);
-        if (!Files.exists(png)) return true;
-        return !diskIconFresh(bpath, png);
+        BundleFingerprint now = BundleFingerprint.of(bpath);
+        if (iconFresh(bpath, now)) return false;
+        return !FAILURES.suppress(canonical(bpath), failureFingerprint(bpath, now), System.currentTimeMillis());
     }
 
     /** Resolve a bundle's display name from its Info.plist without resolving (or spawning) its icon. */
     private static String resolveDisplayName(File bundle, Path bpath) {
-        Path infoPlist = bpath.resolve("Contents/Info.plist");
-        try {
-            // iOS wrapper bundle (Wrapper/<Name>.app): no Contents/Info.plist
-            if (!Files.exists(infoPlist)) {
-                String displayName = stripAppExtension(bundle.getName());
-                try (var s = Files.list(bpath.resolve("Wrapper"))) {
-                    Path innerApp = s.filter(p -> p.getFileName().toString().endsWith(".app")).findFirst().orElse(null);
-                    if (innerApp != null) {
-                        Path innerPlist = innerApp.resolve("Info.plist");
-                        if (Files.exists(innerPlist)) {
-                            NSDictionary innerRoot = (NSDictionary) PropertyListParser.parse(innerPlist.toFile());
-                            if (innerRoot.containsKey("CFBundleDisplayName"))
-                                displayName = innerRoot.objectForKey("CFBundleDisplayName").toString();
-                            else if (innerRoot.containsKey("CFBundleName"))
-                                displayName = innerRoot.objectForKey("CFBundleName").toString();
-                        }
-                    }
-                } catch (Exception ignore) {}
-                return displayName;
-            }
-
-            NSDictionary root = (NSDictionary) PropertyListParser.parse(infoPlist.toFile());
-            if (root.containsKey("CFBundleDisplayName")) return root.objectForKey("CFBundleDisplayName").toString();
-            if (root.containsKey("CFBundleName")) return root.objectForKey("CFBundleName").toString();
-            return stripAppExtension(bundle.getName());
-        } catch (Exception e) {
-            return stripAppExtension(bundle.getName());
-        }
+        BundleInfo info = BundleInfo.of(bpath);
+        String fallback = stripAppExtension(bundle.getName());
+        return (info != null) ? info.nameOr(fallback) : fallback;
     }
 
     /**
@@ -310,11 +728,33 @@ public class MacAppUtils {
      * {@link #refreshIcon}).
      */
     public static AppComponent createAppComponentFast(File bundle) {
+        AppStub stub = prepareAppStub(bundle, false);
+        return (stub != null) ? stub.toComponent() : null;
+    }
+
+    /**
+     * The file-system half of {@link #createAppComponentFast}: display name, cached icon (any age)
+     * and whether that icon still needs resolving. Touches no Swing component, so bulk imports can
+     * prepare many of these in parallel and only build the components on the EDT.
+     */
+    public record AppStub(File bundle, String displayName, ImageIcon icon, String cachedIconPath, boolean needsIcon) {
+        public AppComponent toComponent() {
+            AppComponent comp = new AppComponent(bundle, displayName, (icon != null) ? icon : new ImageIcon());
+            if (cachedIconPath != null) comp.setCustomIconPath(cachedIconPath);
+            return comp;
+        }
+    }
+
+    /**
+     * See {@link AppStub}. With {@code checkFreshness} a cached icon older than the bundle also counts
+     * as needing resolution (a few mtime reads). Returns null if the bundle is gone or unreadable.
+     */
+    public static AppStub prepareAppStub(File bundle, boolean checkFreshness) {
         if (bundle == null || !bundle.exists()) return null;
         try {
             Path bpath = bundle.toPath();
             String displayName = resolveDisplayName(bundle, bpath);
-            String memKey = canonical(bpath) + "|" + ICON_RENDER_SIZE;
+            String memKey = memKey(bpath);
 
             ImageIcon icon = ICON_CACHE.get(memKey);
             if (icon == null) {
@@ -324,18 +764,58 @@ public class MacAppUtils {
                     ICON_CACHE.put(memKey, icon);
                 }
             }
-            if (icon == null) icon = new ImageIcon(); // placeholder; background pass fills it in
-
-            AppComponent comp = new AppComponent(bundle, displayName, icon);
-            Path png = iconCacheFile(bpath);
-            if (Files.exists(png)) comp.setCustomIconPath(png.toString());
-            return comp;
+            // null icon = placeholder; the caller's background pass fills it in
+            boolean needsIcon = icon == null || (checkFreshness && needsIconRefresh(bundle));
+            return new AppStub(bundle, displayName, icon, getCachedIconPathForBundle(bundle), needsIcon);
         } catch (Exception e) {
             e.printStackTrace();
             return null;
         }
     }
 
+    /* ===================== Persisted bundle index ===================== */
+
+    /**
+     * Startup variant that trusts a {@link BundleIndex} entry: the name, canonical path and icon key
+     * come from the index and the icon from the memory cache or the atlas, so no file of the bundle
+     * is touched. {@link #indexEntryFor} later confirms the entry in the background.
+     */
+    public static AppComponent createAppComponentFromIndex(BundleIndex.Entry e) {
+        String memKey = memKey(e.canonicalPath(), ICON_RENDER_SIZE);
+        ImageIcon icon = ICON_CACHE.get(memKey);
+        if (icon == null && ATLAS != null) {
+            BufferedImage bi = ATLAS.get(e.iconKey());
+            if (bi != null) {
+                icon = new ImageIcon(bi);
+                ICON_CACHE.put(memKey, icon);
+            }
+        }
+        if (icon == null) icon = new ImageIcon(); // placeholder; background pass fills it in
+
+        AppComponent comp = new AppComponent(new File(e.appPath()), e.canonicalPath(), e.displayName(), icon);
+        Path blob = DISK_CACHE.blobPath(e.iconKey());
+        if (blob != null) comp.setCustomIconPath(blob.toString());
+        return comp;
+    }
+
+    /**
+     * Current index entry for a bundle, or null if it no longer exists. When {@code known} still
+     * matches (same canonical path, same Info.plist mtime) it is returned as-is and its icon key is
+     * adopted without parsing the plist; otherwise name and key are recomputed. Call off the EDT.
+     */
+    public static BundleIndex.Entry indexEntryFor(File bundle, BundleIndex.Entry known) {
+        if (bundle == null || !bundle.exists()) return null;
+        Path bpath = bundle.toPath();
+        String canon = canonical(bpath);
+        long mtime = BundleInfo.plistMtime(bpath);
+        if (known != null && known.plistMtime() == mtime && known.canonicalPath().equals(canon)) {
+            IDENTITY_KEYS.put(canon, new IdentityMemo(mtime, known.iconKey()));
+            return known;
+        }
+        return new BundleIndex.Entry(bundle.getAbsolutePath(), canon,
+            resolveDisplayName(bundle, bpath), identityKey(bpath), mtime);
+    }
+
     /** Creates an AppComponent with display name + icon.
      *  Icon is resolved synchronously now (at add-time), then cached to memory+disk.
      *  The returned component has customIconPath set when a disk icon exists. */
@@ -344,47 +824,25 @@ public class MacAppUtils {
 
         try {
             Path bpath = bundle.toPath();
-            Path infoPlist = bpath.resolve("Contents/Info.plist");
+            BundleInfo info = BundleInfo.of(bpath);
 
             // ==== iOS wrapper bundle (Wrapper/<Name>.app): no Contents/Info.plist ====
-            if (!Files.exists(infoPlist)) {
-                // Try to get the display name from the inner bundle's Info.plist
-                String displayName = stripAppExtension(bundle.getName());
-                try {
-                    try (var s = Files.list(bpath.resolve("Wrapper"))) {
-                        Path innerApp = s.filter(p -> p.getFileName().toString().endsWith(".app")).findFirst().orElse(null);
-                        if (innerApp != null) {
-                            Path innerPlist = innerApp.resolve("Info.plist");
-                            if (Files.exists(innerPlist)) {
-                                NSDictionary innerRoot = (NSDictionary) PropertyListParser.parse(innerPlist.toFile());
-                                if (innerRoot.containsKey("CFBundleDisplayName"))
-                                    displayName = innerRoot.objectForKey("CFBundleDisplayName").toString();
-                                else if (innerRoot.containsKey("CFBundleName"))
-                                    displayName = innerRoot.objectForKey("CFBundleName").toString();
-                            }
-                        }
-                    }
-                } catch (Exception ignore) {}
+            if (info == null || info.iosWrapper()) {
+                // Display name from the inner bundle's Info.plist, if there is one
+                String displayName = resolveDisplayName(bundle, bpath);
 
-                String memKey = canonical(bpath) + "|" + ICON_RENDER_SIZE;
+                String memKey = memKey(bpath);
 
                 // 1) memory cache
                 ImageIcon icon = ICON_CACHE.get(memKey);
 
                 // 2) disk cache (valid cached icon from a previous run)
-                if (icon == null) {
-                    Path png = iconCacheFile(bpath);
-                    if (Files.exists(png)) {
-                        try (InputStream in = Files.newInputStream(png)) {
-                            BufferedImage bi = ImageIO.read(in);
-                            if (bi != null && hasVisibleContent(bi)) icon = new ImageIcon(bi);
-                        } catch (Exception ignore) {}
-                    }
-                }
+                if (icon == null) icon = loadIconFromDiskAnyAge(bpath);
 
                 // 3) NSWorkspace — the only reliable source for iOS wrapper apps
                 if (icon == null) {
-                    icon = tryNSWorkspaceIcon(bpath, ICON_RENDER_SIZE);
+                    icon = resolveIconAtAddTime(bpath, info, ICON_RENDER_SIZE, null);
+                    noteResolution(bpath, icon, failureReason(null));
                     if (icon != null) {
                         ICON_CACHE.put(memKey, icon);
                         BufferedImage bi = iconToBuffered(icon);
@@ -396,25 +854,16 @@ public class MacAppUtils {
                 if (icon == null) icon = new ImageIcon();
 
                 AppComponent comp = new AppComponent(bundle, displayName, icon);
-                Path pngPath = iconCacheFile(bpath);
-                if (Files.exists(pngPath)) comp.setCustomIconPath(pngPath.toString());
+                String cached = getCachedIconPathForBundle(bundle);
+                if (cached != null) comp.setCustomIconPath(cached);
                 return comp;
             }
             // ==== END iOS wrapper handling ==== //
 
-            NSDictionary root = (NSDictionary) PropertyListParser.parse(infoPlist.toFile());
-
             // ---- Display Name ----
-            String displayName = bundle.getName();
-            if (root.containsKey("CFBundleDisplayName")) {
-                displayName = root.objectForKey("CFBundleDisplayName").toString();
-            } else if (root.containsKey("CFBundleName")) {
-                displayName = root.objectForKey("CFBundleName").toString();
-            } else {
-                displayName = stripAppExtension(displayName);
-            }
+            String displayName = info.nameOr(stripAppExtension(bundle.getName()));
 
-            String memKey = canonical(bpath) + "|" + ICON_RENDER_SIZE;
+            String memKey = memKey(bpath);
 
             // ---- Memory cache ----
             ImageIcon icon = ICON_CACHE.get(memKey);
@@ -429,7 +878,8 @@ public class MacAppUtils {
 
             // ---- Resolve now if needed ----
             if (icon == null) {
-                icon = resolveIconAtAddTime(bpath, root, ICON_RENDER_SIZE);
+                icon = resolveIconAtAddTime(bpath, info, ICON_RENDER_SIZE, null);
+                noteResolution(bpath, icon, failureReason(null));
                 if (icon == null) icon = new ImageIcon(); // placeholder
 
                 ICON_CACHE.put(memKey, icon);
@@ -442,9 +892,9 @@ public class MacAppUtils {
 
             // Build component and remember disk path if exists.
             AppComponent comp = new AppComponent(bundle, displayName, icon);
-            Path png = iconCacheFile(bpath);
-            if (Files.exists(png)) {
-                comp.setCustomIconPath(png.toString());
+            String cached = getCachedIconPathForBundle(bundle);
+            if (cached != null) {
+                comp.setCustomIconPath(cached);
             }
             return comp;
 
@@ -456,56 +906,98 @@ public class MacAppUtils {
 
     /* ===================== Resolve-at-add-time strategy ===================== */
 
-    // Order: NSWorkspace (Assets.car apps) → .icns → iOS PNGs → NSWorkspace (non-Assets.car) → Quick Look → System icon
-    private static ImageIcon resolveIconAtAddTime(Path bundle, NSDictionary root, int renderSize) {
-        // 1) For apps with Assets.car, NSWorkspace is authoritative: it applies the proper macOS
-        //    icon rendering, including the rounded-rectangle treatment for iOS-on-Mac apps.
-        //    ICNS files in these bundles are often raw/unstyled stubs.
-        if (hasAssetsCar(bundle)) {
-            ImageIcon nsw = tryNSWorkspaceIcon(bundle, renderSize);
-            if (nsw != null && nsw.getIconWidth() > 0) return nsw;
-        }
-
-        // 2) Classic .icns – skip transparent stubs (some system apps ship blank ICNS placeholders)
-        BufferedImage icns = tryIcnsImage(bundle, root, renderSize);
-        if (icns != null && hasVisibleContent(icns)) return new ImageIcon(icns);
-
-        // 3) iOS PNG list (CFBundleIcons)
-        BufferedImage ios = tryIosPngImage(bundle, root, renderSize);
-        if (ios != null && hasVisibleContent(ios)) return new ImageIcon(ios);
+    // Which strategy won for each bundle and class, and which keep failing (see IconStrategyRouter).
+    private static final IconStrategyRouter ROUTER =
+        new IconStrategyRouter(Paths.get("./xml/config/launchpad.strategies"));
 
-        // 4) NSWorkspace fallback for apps without Assets.car
-        if (!hasAssetsCar(bundle)) {
-            ImageIcon nsw = tryNSWorkspaceIcon(bundle, renderSize);
-            if (nsw != null && nsw.getIconWidth() > 0) return nsw;
+    /**
+     * Runs the strategies in the order the router gives for this bundle and records each attempt.
+     * Default order: NSWorkspace (Assets.car apps) → .icns → iOS PNGs → NSWorkspace (non-Assets.car)
+     * → Quick Look (Assets.car apps) → System icon; iOS wrappers only have NSWorkspace.
+     * An NSWorkspace step that found no free worker is not recorded and the chain moves on.
+     */
+    private static ImageIcon resolveIconAtAddTime(Path bundle, BundleInfo info, int renderSize, NswPrefetch pre) {
+        try {
+            return resolveIcon(bundle, info, renderSize, pre, false);
+        } catch (IconWorkerBusy cannotHappen) {
+            return null;
         }
+    }
 
-        // 5) Quick Look as additional fallback
-        if (hasAssetsCar(bundle)) {
-            ImageIcon ql = tryQuickLookAppIcon(bundle, renderSize, /*timeoutMs*/ 2500);
-            if (ql != null && ql.getIconWidth() > 0) return ql;
+    private static ImageIcon resolveIcon(Path bundle, BundleInfo info, int renderSize, NswPrefetch pre,
+                                         boolean deferIfBusy) throws IconWorkerBusy {
+        IconStrategyRouter.BundleClass bundleClass = bundleClass(bundle, info);
+        String key = identityKey(bundle);
+        for (IconStrategyRouter.Strategy s : ROUTER.route(key, bundleClass)) {
+            long t0 = System.nanoTime();
+            NswPrefetch nsw = null;
+            if (s == IconStrategyRouter.Strategy.NSWORKSPACE) {
+                nsw = nsWorkspaceIcon(bundle, renderSize, pre);
+                if (nsw == NswPrefetch.NO_WORKER) {
+                    if (deferIfBusy) throw new IconWorkerBusy();
+                    continue;
+                }
+            }
+            ImageIcon icon = runStrategy(s, bundle, info, renderSize, nsw);
+            boolean prefetched = (s == IconStrategyRouter.Strategy.NSWORKSPACE && pre != null);
+            ROUTER.record(key, bundleClass, s, icon != null, prefetched ? -1 : System.nanoTime() - t0);
+            if (icon != null) return icon;
         }
+        return null;
+    }
 
-        // 6) Last resort: system icon (may look like a folder)
-        BufferedImage sys = trySystemIconImage(bundle, renderSize);
-        if (sys != null) return new ImageIcon(sys);
+    private static IconStrategyRouter.BundleClass bundleClass(Path bundle, BundleInfo info) {
+        if (info == null || info.iosWrapper()) return IconStrategyRouter.BundleClass.IOS_WRAPPER;
+        return hasAssetsCar(bundle) ? IconStrategyRouter.BundleClass.ASSETS_CAR : IconStrategyRouter.BundleClass.CLASSIC;
+    }
 
+    /** One strategy; null unless it produced a usable icon. {@code nsw}: the NSWorkspace result, for that strategy. */
+    private static ImageIcon runStrategy(IconStrategyRouter.Strategy s, Path bundle, BundleInfo info,
+                                         int renderSize, NswPrefetch nsw) {
+        switch (s) {
+            case NSWORKSPACE -> {
+                // For apps with Assets.car, NSWorkspace is authoritative: it applies the proper macOS
+                // icon rendering, including the rounded-rectangle treatment for iOS-on-Mac apps.
+                // ICNS files in these bundles are often raw/unstyled stubs.
+                ImageIcon icon = nsw.icon();
+                return (icon != null && icon.getIconWidth() > 0) ? icon : null;
+            }
+            case ICNS -> {
+                // Skip transparent stubs (some system apps ship blank ICNS placeholders)
+                BufferedImage icns = tryIcnsImage(bundle, info, renderSize);
+                return (icns != null && hasVisibleContent(icns)) ? new ImageIcon(icns) : null;
+            }
+            case IOS_PNG -> {
+                BufferedImage ios = tryIosPngImage(bundle, info, renderSize);
+                return (ios != null && hasVisibleContent(ios)) ? new ImageIcon(ios) : null;
+            }
+            case QUICKLOOK -> {
+                ImageIcon ql = tryQuickLookAppIcon(bundle, renderSize, /*timeoutMs*/ 2500);
+                return (ql != null && ql.getIconWidth() > 0) ? ql : null;
+            }
+            case SYSTEM -> {
+                // Last resort (may look like a folder)
+                BufferedImage sys = trySystemIconImage(bundle, renderSize);
+                return (sys != null) ? new ImageIcon(sys) : null;
+            }
+        }
         return null;
     }
 
+    /** Wins, failures and latency per resolution strategy and bundle class; skips and promotions. */
+    public static IconStrategyRouter.Stats getIconStrategyStats() {
+        return ROUTER.stats();
+    }
+
     private static boolean hasAssetsCar(Path bundle) {
         return Files.exists(bundle.resolve("Contents/Resources/Assets.car"));
     }
 
     /* ---------- .icns ---------- */
-    private static BufferedImage tryIcnsImage(Path bundle, NSDictionary root, int renderSize) {
+    private static BufferedImage tryIcnsImage(Path bundle, BundleInfo info, int renderSize) {
         try {
             // Prefer CFBundleIconFile; fall back to CFBundleIconName (used by modern apps like BBEdit)
-            String iconName = root.containsKey("CFBundleIconFile")
-                    ? root.objectForKey("CFBundleIconFile").toString()
-                    : root.containsKey("CFBundleIconName")
-                    ? root.objectForKey("CFBundleIconName").toString()
-                    : null;
+            String iconName = (info.iconFile() != null) ? info.iconFile() : info.iconName();
             if (iconName == null) return null;
             if (!iconName.toLowerCase(Locale.ROOT).endsWith(".icns")) iconName += ".icns";
             Path icnsPath = bundle.resolve("Contents/Resources").resolve(iconName);
@@ -518,21 +1010,12 @@ public class MacAppUtils {
     }
 
     /* ---------- iOS PNG list ---------- */
-    private static BufferedImage tryIosPngImage(Path bundle, NSDictionary root, int renderSize) {
+    private static BufferedImage tryIosPngImage(Path bundle, BundleInfo info, int renderSize) {
         try {
-            NSDictionary icons = (NSDictionary) root.objectForKey("CFBundleIcons");
-            if (icons == null) icons = (NSDictionary) root.objectForKey("CFBundleIcons~ipad");
-            if (icons == null) return null;
-
-            NSDictionary primary = (NSDictionary) icons.objectForKey("CFBundlePrimaryIcon");
-            if (primary == null) return null;
-
-            NSObject filesObj = primary.objectForKey("CFBundleIconFiles");
-            if (!(filesObj instanceof NSArray arr)) return null;
+            if (info.iosIconFiles().isEmpty()) return null;
 
             List<Path> candidates = new ArrayList<>();
-            for (NSObject o : arr.getArray()) {
-                String base = o.toString();
+            for (String base : info.iosIconFiles()) {
                 for (String v : new String[]{ base, base + ".png", base + "@2x.png", base + "@3x.png" }) {
                     Path p = bundle.resolve("Contents/Resources").resolve(v);
                     if (Files.exists(p)) candidates.add(p);
@@ -591,32 +1074,13 @@ public class MacAppUtils {
 
             long startMs = System.currentTimeMillis();
 
-            ProcessBuilder pb = new ProcessBuilder(
+            ProcessRunner.Result r = ProcessRunner.run(List.of(
                 ql.toString(), "-t",
                 "-s", String.valueOf(renderSize),
                 "-o", outDir.toString(),
                 bundle.toString()
-            ).redirectErrorStream(true);
-
-            Process proc = pb.start();
-
-            // Drain output
-            ExecutorService drainer = Executors.newSingleThreadExecutor(r -> {
-                Thread th = new Thread(r, "qlmanage-drain"); th.setDaemon(true); return th;
-            });
-            drainer.submit(() -> {
-                byte[] buf = new byte[4096];
-                try (InputStream in = proc.getInputStream()) { while (in.read(buf) != -1) {} }
-                catch (Exception ignore) {}
-            });
-
-            boolean finished = proc.waitFor(Math.max(500, timeoutMs), TimeUnit.MILLISECONDS);
-            if (!finished) {
-                proc.destroyForcibly();
-                drainer.shutdownNow();
-                return null;
-            }
-            drainer.shutdownNow();
+            ), Math.max(500, timeoutMs));
+            if (r.timedOut()) return null;
 
             File[] pngs = outDir.toFile().listFiles((_, name) -> name.toLowerCase(Locale.ROOT).endsWith(".png"));
             if (pngs == null || pngs.length == 0) return null;
@@ -653,82 +1117,100 @@ public class MacAppUtils {
      * their real icons live in Assets.car and must be fetched via NSWorkspace.
      */
     private static boolean hasVisibleContent(BufferedImage img) {
-        if (img == null) return false;
-        int w = img.getWidth(), h = img.getHeight();
-        if (w <= 0 || h <= 0) return false;
-        // Require at least 0.5% of pixels to be non-transparent (alpha > 10/255).
-        int threshold = Math.max(10, (w * h) / 200);
-        int opaque = 0;
-        for (int y = 0; y < h; y++) {
-            for (int x = 0; x < w; x++) {
-                if ((img.getRGB(x, y) >>> 24) > 10 && ++opaque >= threshold) return true;
-            }
-        }
-        return false;
+        return IconVisibility.hasVisibleContent(img);
     }
 
     /* ---------- NSWorkspace icon (macOS native) ---------- */
 
+    // Long-lived osascript/JXA workers shared by every NSWorkspace lookup (see IconWorkerPool).
+    private static final IconWorkerPool NSWORKSPACE_WORKERS = new IconWorkerPool();
+
+    /** NSWorkspace result fetched ahead of time by a batch; {@code icon} is null if it failed. */
+    private record NswPrefetch(ImageIcon icon, String error) {
+        /** Every worker stayed busy: nothing was tried, so this says nothing about the bundle. */
+        static final NswPrefetch NO_WORKER = new NswPrefetch(null, "no icon worker free");
+    }
+
     /**
-     * Extracts the app icon via macOS NSWorkspace using an osascript JXA one-liner.
-     * This is the most reliable method: it reads from Assets.car, handles iOS-on-Mac apps,
-     * and matches exactly what Finder/Dock display.  Requires macOS; no-ops on other platforms.
+     * A refresh allowed to defer (see {@link #refreshIconsBatch}) met {@link NswPrefetch#NO_WORKER}: it
+     * is abandoned without recording anything, so the bundle stays stale and the next pass tries
+     * again, rather than caching a weaker icon as fresh.
      */
-    private static ImageIcon tryNSWorkspaceIcon(Path bundle, int renderSize) {
+    private static final class IconWorkerBusy extends Exception {
+        private static final long serialVersionUID = 1L;
+        IconWorkerBusy() { super(NswPrefetch.NO_WORKER.error(), null, false, false); }
+    }
+
+    /** The prefetched NSWorkspace result if a batch already asked, else a live lookup. */
+    private static NswPrefetch nsWorkspaceIcon(Path bundle, int renderSize, NswPrefetch pre) {
+        return (pre != null) ? pre : tryNSWorkspaceIcon(bundle, renderSize);
+    }
+
+    /** One worker request for all bundles; a bundle missing from the result was not attempted. */
+    private static Map<File, NswPrefetch> prefetchNSWorkspaceIcons(List<File> bundles, int renderSize, long timeoutMs) {
+        Map<File, NswPrefetch> out = new HashMap<>();
+        if (bundles.isEmpty() || !NSWORKSPACE_WORKERS.isAvailable()) return out;
+
+        List<Path> paths = new ArrayList<>();
+        List<Path> pngs = new ArrayList<>();
         try {
-            String os = System.getProperty("os.name", "").toLowerCase(Locale.ROOT);
-            if (!os.contains("mac")) return null;
+            for (File f : bundles) {
+                paths.add(f.toPath());
+                pngs.add(Files.createTempFile("lp-nsw-", ".png"));
+            }
+            // Ask for at least 256 px so downscaling gives a crisp result.
+            String[] replies = NSWORKSPACE_WORKERS.renderBatch(paths, pngs, Math.max(renderSize, 256), timeoutMs);
+            // No worker free for the whole timeout: leave them all out, each does a live lookup
+            if (replies == null) return out;
+            for (int i = 0; i < bundles.size(); i++) {
+                if (!"OK".equals(replies[i])) {
+                    out.put(bundles.get(i), new NswPrefetch(null, (replies[i] != null) ? replies[i] : "batch timed out"));
+                    continue;
+                }
+                BufferedImage img = readPng(pngs.get(i));
+                out.put(bundles.get(i), (img != null && hasVisibleContent(img))
+                        ? new NswPrefetch(new ImageIcon(scaleToSquare(img, renderSize)), null)
+                        : new NswPrefetch(null, "blank or unreadable icon"));
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        } finally {
+            for (Path p : pngs) {
+                try { Files.deleteIfExists(p); } catch (IOException ignore) {}
+            }
+        }
+        return out;
+    }
 
-            Path osa = Paths.get("/usr/bin/osascript");
-            if (!Files.isExecutable(osa)) return null;
+    /**
+     * Extracts the app icon via macOS NSWorkspace, using a pooled osascript JXA worker.
+     * This is the most reliable method: it reads from Assets.car, handles iOS-on-Mac apps,
+     * and matches exactly what Finder/Dock display.  Requires macOS (or a configured stub
+     * worker); no-ops elsewhere. {@link NswPrefetch#NO_WORKER} if every worker stayed busy.
+     */
+    private static NswPrefetch tryNSWorkspaceIcon(Path bundle, int renderSize) {
+        try {
+            if (!NSWORKSPACE_WORKERS.isAvailable()) return new NswPrefetch(null, "no icon worker on this system");
 
             Path outPng = Files.createTempFile("lp-nsw-", ".png");
             try {
                 // Ask for at least 256 px so downscaling gives a crisp result.
                 int dim = Math.max(renderSize, 256);
-                String bundlePath = bundle.toAbsolutePath().toString().replace("'", "\\'");
-                String pngPath    = outPng.toAbsolutePath().toString().replace("'", "\\'");
-
-                String script =
-                    "ObjC.import('AppKit');" +
-                    "var w=$.NSWorkspace.sharedWorkspace;" +
-                    "var icon=w.iconForFile('" + bundlePath + "');" +
-                    "icon.setSize({width:" + dim + ",height:" + dim + "});" +
-                    "var tiff=icon.TIFFRepresentation;" +
-                    "var rep=$.NSBitmapImageRep.imageRepWithData(tiff);" +
-                    "var png=rep.representationUsingTypeProperties(" +
-                    "$.NSBitmapImageFileTypePNG,$.NSDictionary.dictionary);" +
-                    "png.writeToFileAtomically('" + pngPath + "',true);" +
-                    "'done'";
-
-                ProcessBuilder pb = new ProcessBuilder(osa.toString(), "-l", "JavaScript", "-e", script)
-                        .redirectErrorStream(true);
-                Process proc = pb.start();
-
-                ExecutorService drainer = Executors.newSingleThreadExecutor(r -> {
-                    Thread th = new Thread(r, "nsw-drain"); th.setDaemon(true); return th;
-                });
-                drainer.submit(() -> {
-                    byte[] buf = new byte[4096];
-                    try (InputStream in = proc.getInputStream()) { while (in.read(buf) != -1) {} }
-                    catch (Exception ignore) {}
-                });
-
-                boolean finished = proc.waitFor(4000, TimeUnit.MILLISECONDS);
-                drainer.shutdownNow();
-                if (!finished) { proc.destroyForcibly(); return null; }
-
-                if (!Files.exists(outPng) || Files.size(outPng) == 0) return null;
+                switch (NSWORKSPACE_WORKERS.renderIcon(bundle, dim, outPng)) {
+                    case NO_WORKER: return NswPrefetch.NO_WORKER;
+                    case FAILED: return new NswPrefetch(null, "worker request failed");
+                    case OK: break;
+                }
 
                 BufferedImage img = ImageIO.read(outPng.toFile());
-                if (img == null || !hasVisibleContent(img)) return null;
-                return new ImageIcon(scaleToSquare(img, renderSize));
+                if (img == null || !hasVisibleContent(img)) return new NswPrefetch(null, "blank or unreadable icon");
+                return new NswPrefetch(new ImageIcon(scaleToSquare(img, renderSize)), null);
 
             } finally {
                 Files.deleteIfExists(outPng);
             }
-        } catch (Exception ignore) {
-            return null;
+        } catch (Exception e) {
+            return new NswPrefetch(null, String.valueOf(e.getMessage()));
         }
     }
 
@@ -753,6 +1235,10 @@ public class MacAppUtils {
         if (icon == null) return null;
         int w = icon.getIconWidth(), h = icon.getIconHeight();
         if (w <= 0 || h <= 0) return null;
+        // Resolved icons already wrap the scaled raster; saving it must not repaint it into a copy.
+        if (icon.getImage() instanceof BufferedImage bi) return bi;
+        if (icon.getImage() instanceof MultiResolutionImage mr
+                && mr.getResolutionVariants().get(0) instanceof BufferedImage base) return base;
         BufferedImage bi = new BufferedImage(w, h, BufferedImage.TYPE_INT_ARGB);
         Graphics2D g = bi.createGraphics();
         try {
@@ -766,20 +1252,7 @@ public class MacAppUtils {
 
     /** Scale into a square with preserved aspect ratio, centered. */
     private static BufferedImage scaleToSquare(BufferedImage img, int side) {
-        int w = img.getWidth(), h = img.getHeight();
-        float scale = Math.min((float) side / w, (float) side / h);
-        int newW = Math.max(1, Math.round(w * scale));
-        int newH = Math.max(1, Math.round(h * scale));
-        BufferedImage out = new BufferedImage(side, side, BufferedImage.TYPE_INT_ARGB);
-        Graphics2D g = out.createGraphics();
-        try {
-            g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BICUBIC);
-            g.setRenderingHint(RenderingHints.KEY_RENDERING, RenderingHints.VALUE_RENDER_QUALITY);
-            g.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
-            int x = (side - newW) / 2, y = (side - newH) / 2;
-            g.drawImage(img, x, y, newW, newH, null);
-        } finally { g.dispose(); }
-        return out;
+        return IconResampler.scaleToSquare(img, side);
     }
 
     /** Snap requested decode size to common ICNS sizes to avoid slow resampling. */
@@ -809,28 +1282,25 @@ public class MacAppUtils {
     public static boolean isLikelyUserFacingApp(File bundle) {
         try {
             java.nio.file.Path bpath = bundle.toPath();
-            java.nio.file.Path infoPlist = bpath.resolve("Contents/Info.plist");
+            BundleInfo info = BundleInfo.of(bpath);
 
             // iOS wrapper apps (pure iOS on Apple Silicon) have no Contents/Info.plist;
             // their real bundle sits at Wrapper/<Name>.app.  Include them in the scan.
-            if (!java.nio.file.Files.exists(infoPlist)) {
+            if (info == null || info.iosWrapper()) {
                 return isIosWrapperBundle(bpath);
             }
 
-            com.dd.plist.NSDictionary root = (com.dd.plist.NSDictionary) com.dd.plist.PropertyListParser.parse(infoPlist.toFile());
-
             // 1) Must be an application bundle
-            String pkgType = optString(root, "CFBundlePackageType");
-            if (!"APPL".equalsIgnoreCase(pkgType)) return false;
+            if (!"APPL".equalsIgnoreCase(info.packageType())) return false;
 
             // 2) Skip background/agent apps
-            if (optBool(root, "LSBackgroundOnly", false)) return false;
-            if (optBool(root, "LSUIElement", false)) return false;
+            if (info.backgroundOnly()) return false;
+            if (info.uiElement()) return false;
 
             // 3) Name heuristics
             String name = firstNonBlank(
-                optString(root, "CFBundleDisplayName"),
-                optString(root, "CFBundleName"),
+                info.displayName(),
+                info.bundleName(),
                 bundle.getName()
             ).toLowerCase(java.util.Locale.ROOT);
 
@@ -844,14 +1314,6 @@ public class MacAppUtils {
         }
     }
 
-    private static String optString(com.dd.plist.NSDictionary d, String k) {
-        return d.containsKey(k) ? String.valueOf(d.objectForKey(k)) : null;
-    }
-    private static boolean optBool(com.dd.plist.NSDictionary d, String k, boolean def) {
-        if (!d.containsKey(k)) return def;
-        String v = String.valueOf(d.objectForKey(k)).trim();
-        return "1".equals(v) || "true".equalsIgnoreCase(v);
-    }
     private static String firstNonBlank(String... ss) {
         for (String s : ss) if (s != null && !s.isBlank()) return s;
         return "";
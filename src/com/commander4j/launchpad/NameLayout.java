@@ -0,0 +1,124 @@
+package com.commander4j.launchpad;
+
+/*******************************************************************************
+ * Title:        Commander4j
+ * Description:  App name wrapped to two centred lines, laid out once and cached
+ * Author:       Dave (with ChatGPT assistance)
+ * License:      GNU General Public License
+ *******************************************************************************/
+
+import java.awt.Font;
+import java.awt.Graphics2D;
+import java.awt.font.FontRenderContext;
+import java.awt.font.LineBreakMeasurer;
+import java.awt.font.TextAttribute;
+import java.awt.font.TextLayout;
+import java.text.AttributedString;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The label under an app icon: the name broken at word boundaries to fit the wrap width, at most
+ * {@link #MAX_LINES} lines, each centred, the last one cut with an ellipsis if the name does not
+ * fit. Replaces the per-label HTML view (Swing's HTML document, CSS and view tree per app) with a
+ * couple of {@link TextLayout}s.
+ * <p>
+ * Layouts are cached by text, font, wrap width and render context, so a name is measured once no
+ * matter how often it is painted, and apps with the same name share one layout.
+ */
+final class NameLayout {
+
+    static final int MAX_LINES = 2;
+    private static final String ELLIPSIS = "…";
+    private static final int CACHE_SIZE = 4096;
+
+    private record Key(String text, Font font, int wrapWidth, FontRenderContext frc) {}
+
+    private static final Map<Key, NameLayout> CACHE = Collections.synchronizedMap(
+        new LinkedHashMap<>(256, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+            @Override protected boolean removeEldestEntry(Map.Entry<Key, NameLayout> eldest) {
+                return size() > CACHE_SIZE;
+            }
+        });
+
+    private final List<TextLayout> lines;
+    private final int height;
+
+    private NameLayout(List<TextLayout> lines) {
+        this.lines = lines;
+        float h = 0;
+        for (TextLayout line : lines) h += line.getAscent() + line.getDescent() + line.getLeading();
+        this.height = (int) Math.ceil(h);
+    }
+
+    /** The layout of {@code text}, from the cache when it has been laid out before. */
+    static NameLayout of(String text, Font font, int wrapWidth, FontRenderContext frc) {
+        Key key = new Key((text != null) ? text : "", font, wrapWidth, frc);
+        NameLayout layout = CACHE.get(key);
+        if (layout == null) {
+            layout = new NameLayout(wrap(key.text(), font, wrapWidth, frc));
+            CACHE.put(key, layout);
+        }
+        return layout;
+    }
+
+    /** Total height of the lines. */
+    int height() {
+        return height;
+    }
+
+    /** Draw the lines centred within {@code width}, the first one's top at {@code y}. */
+    void paint(Graphics2D g, int x, int y, int width) {
+        float baseline = y;
+        for (TextLayout line : lines) {
+            baseline += line.getAscent();
+            line.draw(g, x + (width - line.getVisibleAdvance()) / 2f, baseline);
+            baseline += line.getDescent() + line.getLeading();
+        }
+    }
+
+    /* ===================== Wrapping ===================== */
+
+    private static List<TextLayout> wrap(String text, Font font, int wrapWidth, FontRenderContext frc) {
+        List<TextLayout> out = new ArrayList<>(MAX_LINES);
+        if (text.isBlank()) return out;
+
+        AttributedString as = new AttributedString(text);
+        as.addAttribute(TextAttribute.FONT, font);
+        LineBreakMeasurer measurer = new LineBreakMeasurer(as.getIterator(), frc);
+
+        while (measurer.getPosition() < text.length()) {
+            int start = measurer.getPosition();
+            if (out.size() == MAX_LINES - 1) {
+                // Last line: everything left, cut to fit with an ellipsis if need be
+                String rest = text.substring(start).strip();
+                if (!rest.isEmpty()) out.add(lastLine(rest, font, wrapWidth, frc));
+                break;
+            }
+            out.add(measurer.nextLayout(wrapWidth));
+        }
+        return out;
+    }
+
+    private static TextLayout lastLine(String rest, Font font, int wrapWidth, FontRenderContext frc) {
+        TextLayout whole = new TextLayout(rest, font, frc);
+        if (whole.getAdvance() <= wrapWidth) return whole;
+
+        // Longest prefix that fits together with the ellipsis (binary search on the cut)
+        int lo = 0, hi = rest.length();
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (advance(rest.substring(0, mid).stripTrailing() + ELLIPSIS, font, frc) <= wrapWidth) lo = mid;
+            else hi = mid - 1;
+        }
+        return new TextLayout(rest.substring(0, lo).stripTrailing() + ELLIPSIS, font, frc);
+    }
+
+    private static float advance(String s, Font font, FontRenderContext frc) {
+        return (float) font.getStringBounds(s, frc).getWidth();
+    }
+}
@@ -5,110 +5,111 @@ package com.commander4j.launchpad;
  * Description:  XML Persistence for LaunchPad
  *               - Tabs wrapped in JScrollPane (vertical scrollbar)
  *               - Saves/loads selected tab (selected="true")
+ *               - Binary snapshot for startup, XML for import/export (see LayoutStore)
  * Author:       Dave (with ChatGPT assistance)
  * License:      GNU General Public License
  *******************************************************************************/
 
 import java.io.File;
-import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
+import javax.swing.ImageIcon;
 import javax.swing.JTabbedPane;
 import javax.swing.JScrollPane;
 import javax.swing.ScrollPaneConstants;
-import javax.xml.parsers.DocumentBuilder;
-import javax.xml.parsers.DocumentBuilderFactory;
-import javax.xml.transform.Transformer;
-import javax.xml.transform.TransformerFactory;
-import javax.xml.transform.dom.DOMSource;
-import javax.xml.transform.stream.StreamResult;
-
-import org.w3c.dom.Document;
-import org.w3c.dom.Element;
+import javax.swing.SwingUtilities;
 
 public class PersistenceHelper
 {
     private static final String CONFIG_PATH = "./xml/config/launchpad.xml";
+    private static final String SNAPSHOT_PATH = "./xml/config/launchpad.snapshot";
+    private static final String INDEX_PATH = "./xml/config/launchpad.index";
+    private static final String JOURNAL_PATH = "./xml/config/launchpad.journal";
+
+    // Name / canonical path / icon key per saved bundle, so loadState need not read the bundles.
+    private static final BundleIndex INDEX = new BundleIndex(Paths.get(INDEX_PATH));
+
+    // Paths whose index entry validateIndex has checked against the bundle this session
+    private static final Set<String> VALIDATED = ConcurrentHashMap.newKeySet();
 
     public static void saveState(JTabbedPane tabs)
     {
         try {
-            DocumentBuilder db = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-            Document doc = db.newDocument();
-
-            Element root = doc.createElement("launchpad");
-            doc.appendChild(root);
+            LayoutStore.Layout layout = LayoutStore.capture(tabs);
 
-            int selected = tabs.getSelectedIndex();
-
-            for (int t = 0; t < tabs.getTabCount(); t++) {
-                Element tabEl = doc.createElement("tab");
-                tabEl.setAttribute("name", tabs.getTitleAt(t));
-                if (t == selected) {
-                    tabEl.setAttribute("selected", "true"); // remember currently selected tab
-                }
-                root.appendChild(tabEl);
-
-                // unwrap LaunchTabPanel if it’s inside a JScrollPane
-                LaunchTabPanel panel = null;
-                var comp = tabs.getComponentAt(t);
-                if (comp instanceof LaunchTabPanel p) {
-                    panel = p;
-                } else if (comp instanceof JScrollPane sp) {
-                    var view = (sp.getViewport() != null) ? sp.getViewport().getView() : null;
-                    if (view instanceof LaunchTabPanel p) panel = p;
-                }
+            List<String> savedPaths = new ArrayList<>();
+            for (LayoutStore.Tab tab : layout.tabs()) {
+                for (LayoutStore.Cell cell : tab.cells()) savedPaths.add(cell.path());
+            }
 
-                if (panel != null) {
-                    for (int c = 0; c < panel.getComponentCount(); c++) {
-                        if (panel.getComponent(c) instanceof LaunchCell cell) {
-                            AppComponent app = cell.getApp();
-                            if (app != null) {
-                                Element cellEl = doc.createElement("cell");
-                                cellEl.setAttribute("index", String.valueOf(c));
-                                cellEl.setAttribute("path", app.getAppPath());
-
-                                String customIcon = app.getCustomIconPath();
-                                if (customIcon != null && !customIcon.isBlank()) {
-                                    cellEl.setAttribute("icon", customIcon);
-                                }
-                                tabEl.appendChild(cellEl);
-                            }
-                        }
-                    }
+            // XML first (the import/export format), then the snapshot startup reads; each is
+            // written to a temp file and atomically moved over the previous one. With the journal
+            // running its writer does this, so it cannot interleave with a background append, and
+            // then tidies the index and icon caches off the EDT.
+            if (LayoutJournal.isRunning()) {
+                if (!LayoutJournal.checkpoint(layout, Paths.get(CONFIG_PATH), () -> tidyAfterSave(savedPaths))) {
+                    System.err.println("LaunchPad: layout save did not finish in time; the journal still holds the changes");
                 }
+            } else {
+                LayoutStore.writeXml(layout, Paths.get(CONFIG_PATH));
+                LayoutStore.writeSnapshot(layout, Paths.get(SNAPSHOT_PATH));
+                tidyAfterSave(savedPaths);
             }
-
-            File outFile = new File(CONFIG_PATH);
-            outFile.getParentFile().mkdirs();
-
-            Transformer tf = TransformerFactory.newInstance().newTransformer();
-            tf.transform(new DOMSource(doc), new StreamResult(new FileOutputStream(outFile)));
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * The layout is safely written: bring the index up to date for the saved bundles, drop the
+     * entries and cached icons that no saved cell references any more. Entries validateIndex
+     * confirmed this session are taken as they are; only the rest cost a stat or two.
+     */
+    private static void tidyAfterSave(List<String> savedPaths)
+    {
+        List<File> savedBundles = new ArrayList<>(savedPaths.size());
+        for (String path : savedPaths) {
+            File bundle = new File(path);
+            savedBundles.add(bundle);
+            BundleIndex.Entry known = INDEX.get(path);
+            if (known != null && VALIDATED.contains(path)) continue;
+            BundleIndex.Entry e = MacAppUtils.indexEntryFor(bundle, known);
+            if (e != null) INDEX.put(e);
+        }
+        INDEX.retain(savedPaths);
+        INDEX.save();
+
+        MacAppUtils.collectIconGarbage(savedBundles);
+    }
+
     public static void loadState(JTabbedPane tabs)
     {
         try {
-            File inFile = new File(CONFIG_PATH);
-            if (!inFile.exists()) return;
-
-            DocumentBuilder db = DocumentBuilderFactory.newInstance().newDocumentBuilder();
-            Document doc = db.parse(inFile);
+            LayoutStore.Layout layout = readLayout();
+            if (layout == null) return;
 
             tabs.removeAll();
 
-            int selectedIndex = -1;
-
-            var tabNodes = doc.getElementsByTagName("tab");
-            for (int i = 0; i < tabNodes.getLength(); i++) {
-                Element tabEl = (Element) tabNodes.item(i);
-                String name = tabEl.getAttribute("name");
-                boolean isSelected = "true".equalsIgnoreCase(tabEl.getAttribute("selected"));
+            // Tabs start unbuilt: only the saved records, plus canonical paths for duplicate
+            // checks. Apps and icons are built when a tab is first shown (see LaunchTabPanel).
+            for (LayoutStore.Tab tab : layout.tabs()) {
+                Map<String, Integer> byCanonical = new HashMap<>();
+                for (LayoutStore.Cell cell : tab.cells()) {
+                    BundleIndex.Entry known = INDEX.get(cell.path());
+                    byCanonical.put((known != null) ? known.canonicalPath() : cell.path(), cell.index());
+                }
+                LaunchTabPanel panel = LaunchTabPanel.unbuilt(tab.cells(), byCanonical);
 
-                // Create panel and wrap it in a vertical-only scroller
-                LaunchTabPanel panel = new LaunchTabPanel();
+                // Wrap it in a vertical-only scroller
                 JScrollPane sp = new JScrollPane(
                     panel,
                     ScrollPaneConstants.VERTICAL_SCROLLBAR_ALWAYS,
@@ -117,55 +118,156 @@ public class PersistenceHelper
                 sp.setBorder(null);
                 sp.getVerticalScrollBar().setUnitIncrement(24);
 
-                tabs.addTab(name, sp);
-                int thisIndex = tabs.getTabCount() - 1;
-                if (isSelected) selectedIndex = thisIndex;
-
-                var cellNodes = tabEl.getElementsByTagName("cell");
-
-                // Grow once to the highest index
-                int maxIndex = -1;
-                for (int j = 0; j < cellNodes.getLength(); j++) {
-                    Element cellEl = (Element) cellNodes.item(j);
-                    int idx = Integer.parseInt(cellEl.getAttribute("index"));
-                    if (idx > maxIndex) maxIndex = idx;
-                }
-                if (maxIndex >= 0) {
-                    panel.ensureCellIndex(maxIndex);
-                }
-
-                // Place apps
-                int lastIndexAssigned = -1;
-                for (int j = 0; j < cellNodes.getLength(); j++) {
-                    Element cellEl = (Element) cellNodes.item(j);
-                    int index = Integer.parseInt(cellEl.getAttribute("index"));
-                    if (index != (lastIndexAssigned+1))
-                    {
-                    	index = lastIndexAssigned+1;
-                    }
-                    String path  = cellEl.getAttribute("path");
-
-                    File bundle = new File(path);
-                    if (bundle.exists() && index < panel.getComponentCount()) {
-                        // Fast path: show cached icons immediately, never spawn icon-resolution
-                        // subprocesses here. JLaunchPad refreshes changed icons in the background
-                        // once the window is visible.
-                        AppComponent app = MacAppUtils.createAppComponentFast(bundle);
-                        if (app != null) {
-                            ((LaunchCell) panel.getComponent(index)).setApp(app);
-                            lastIndexAssigned++;
-                        }
-                    }
-                }
+                tabs.addTab(tab.name(), sp);
             }
 
             // Restore selected tab (fallback to first tab if missing/invalid)
+            int selectedIndex = layout.selected();
             if (tabs.getTabCount() > 0) {
                 tabs.setSelectedIndex(selectedIndex >= 0 && selectedIndex < tabs.getTabCount() ? selectedIndex : 0);
+                // The one tab the first frame shows
+                LayoutStore.panelAt(tabs, tabs.getSelectedIndex()).materialize();
             }
 
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
+
+    /**
+     * The apps for a tab's saved cells, index for index; null where the bundle is gone. Uses the
+     * bundle index when it knows the path, so nothing of the bundle is read; otherwise the fast path
+     * (cached icons only, never icon-resolution subprocesses). Touches no Swing state, so tabs can
+     * be prefetched off the EDT.
+     */
+    static List<AppComponent> buildApps(List<LayoutStore.Cell> cells)
+    {
+        List<AppComponent> apps = new ArrayList<>(cells.size());
+        for (LayoutStore.Cell cell : cells) {
+            AppComponent app = null;
+            try {
+                BundleIndex.Entry known = INDEX.get(cell.path());
+                File bundle = new File(cell.path());
+                if (known != null) app = MacAppUtils.createAppComponentFromIndex(known);
+                else if (bundle.exists()) app = MacAppUtils.createAppComponentFast(bundle);
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            apps.add(app);
+        }
+        return apps;
+    }
+
+    /**
+     * Put a tab's built apps into its cells (EDT). Apps keep their saved order; gaps and missing
+     * bundles are closed up. Saved cells left empty that way are journaled as cleared, so the
+     * journal's copy of the layout matches what is on screen.
+     */
+    static void placeApps(LaunchTabPanel panel, List<LayoutStore.Cell> cells, List<AppComponent> apps)
+    {
+        // Grow once to the highest index
+        int maxIndex = -1;
+        for (LayoutStore.Cell cell : cells) {
+            if (cell.index() > maxIndex) maxIndex = cell.index();
+        }
+        if (maxIndex >= 0) {
+            panel.ensureCellIndex(maxIndex);
+        }
+
+        // Place apps
+        int lastIndexAssigned = -1;
+        for (int i = 0; i < cells.size(); i++) {
+            int index = cells.get(i).index();
+            if (index != (lastIndexAssigned+1))
+            {
+            	index = lastIndexAssigned+1;
+            }
+            if (index >= panel.getCellCount()) continue;
+
+            AppComponent app = apps.get(i);
+            if (app != null) {
+                panel.getCell(index).setApp(app);
+                lastIndexAssigned++;
+            }
+        }
+
+        for (LayoutStore.Cell cell : cells) {
+            if (cell.index() < panel.getCellCount() && panel.getCell(cell.index()).isEmpty()) {
+                LayoutJournal.cellChanged(panel.getCell(cell.index()));
+            }
+        }
+    }
+
+    /**
+     * Journal every later edit (see LayoutJournal), on top of the layout now on screen. Called once
+     * the window's tabs are built; until then cell changes are not recorded.
+     */
+    public static void startJournal(JTabbedPane tabs)
+    {
+        LayoutJournal.start(LayoutStore.capture(tabs), Paths.get(SNAPSHOT_PATH), Paths.get(JOURNAL_PATH));
+    }
+
+    /**
+     * The binary snapshot, with the changes journaled since it was written replayed on top, when it
+     * is at least as new as launchpad.xml; otherwise (no snapshot, a damaged one, or an XML edited or
+     * replaced since the last save) the XML. Null if neither exists.
+     */
+    private static LayoutStore.Layout readLayout() throws Exception
+    {
+        Path xml = Paths.get(CONFIG_PATH);
+        Path snapshot = Paths.get(SNAPSHOT_PATH);
+        boolean haveXml = Files.exists(xml);
+
+        if (Files.exists(snapshot)
+                && (!haveXml || Files.getLastModifiedTime(xml).compareTo(Files.getLastModifiedTime(snapshot)) <= 0)) {
+            try {
+                byte[] bytes = Files.readAllBytes(snapshot);
+                LayoutStore.Layout layout = LayoutStore.decodeSnapshot(bytes);
+                if (layout != null) return LayoutJournal.replay(layout, bytes, Paths.get(JOURNAL_PATH));
+            } catch (IOException e) {
+                e.printStackTrace(); // unreadable: fall back to the XML
+            }
+        }
+        return haveXml ? LayoutStore.readXml(xml) : null;
+    }
+
+    /**
+     * Check the apps placed from the bundle index against the file system. Runs off the EDT after
+     * the window is visible: each entry costs a stat or two unless its Info.plist changed, in which
+     * case name and icon key are recomputed. Cells whose bundle has gone are emptied, renamed apps
+     * get their new label, apps whose icon key changed re-read their icon; then the index is saved.
+     * Only the given cells' entries are updated and none are dropped, so it can run on any subset
+     * (one refresh batch); pruning entries no saved cell uses is left to saveState. Each cell comes
+     * with the app it held when queued, so no cell is read off the EDT; a cell that has moved on
+     * since is left alone.
+     */
+    public static void validateIndex(Map<LaunchCell, AppComponent> placed)
+    {
+        for (Map.Entry<LaunchCell, AppComponent> p : placed.entrySet()) {
+            LaunchCell cell = p.getKey();
+            AppComponent app = p.getValue();
+            if (app == null) continue;
+            String path = app.getAppPath();
+            File bundle = new File(path);
+            BundleIndex.Entry known = INDEX.get(path);
+            BundleIndex.Entry now = MacAppUtils.indexEntryFor(bundle, known);
+            if (now != null) VALIDATED.add(path);
+            if (now == known) continue;
+
+            if (now == null) {
+                // Gone: the cleared cell is not saved, so saveState drops its entry
+                SwingUtilities.invokeLater(() -> { if (cell.getApp() == app) cell.clear(); });
+                continue;
+            }
+            INDEX.put(now);
+            if (known == null) continue; // placed by the slow path, already current
+
+            ImageIcon icon = known.iconKey().equals(now.iconKey()) ? null : MacAppUtils.getCachedIcon(bundle);
+            SwingUtilities.invokeLater(() -> {
+                app.setDisplayName(now.displayName());
+                if (icon != null) app.setIcon(icon);
+            });
+        }
+        INDEX.save(); // no-op unless an entry changed
+    }
 }
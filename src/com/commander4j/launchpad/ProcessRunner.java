@@ -0,0 +1,157 @@
+package com.commander4j.launchpad;
+
+/*******************************************************************************
+ * Title:        Commander4j
+ * Description:  Shared runner for external processes used by the icon strategies
+ *               (timeouts, virtual-thread output draining, global concurrency cap, stats)
+ * Author:       Dave (with ChatGPT assistance)
+ * License:      GNU General Public License
+ *******************************************************************************/
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Every qlmanage / osascript process goes through here, so:
+ * <ul>
+ *   <li>output is drained on a virtual thread (no per-call ExecutorService),</li>
+ *   <li>every wait has a timeout (no unbounded {@code waitFor()}),</li>
+ *   <li>the number of live external processes across the app is capped
+ *       ({@code -Dlaunchpad.process.maxConcurrent}, default 6; long-lived workers count too),</li>
+ *   <li>spawn latency and exit status are recorded, see {@link #stats()}.</li>
+ * </ul>
+ */
+public final class ProcessRunner {
+
+    private ProcessRunner() {}
+
+    /** Outcome of {@link #run}; {@code exitCode} is -1 if the process timed out or never started. */
+    public record Result(int exitCode, boolean timedOut, String output, long elapsedMs) {
+        public boolean ok() { return !timedOut && exitCode == 0; }
+    }
+
+    /** Point-in-time counters for all external processes started by the app. */
+    public record Stats(long spawned, long running, long timedOut, long failedToStart, long nonZeroExits,
+                        double avgSpawnMs, long maxSpawnMs) {}
+
+    private static final int MAX_CONCURRENT = Math.max(1, Integer.getInteger("launchpad.process.maxConcurrent", 6));
+    private static final int MAX_CAPTURE_CHARS = 8 * 1024;
+
+    private static final Semaphore SLOTS = new Semaphore(MAX_CONCURRENT, true);
+
+    private static final AtomicLong SPAWNED = new AtomicLong();
+    private static final AtomicLong RUNNING = new AtomicLong();
+    private static final AtomicLong TIMED_OUT = new AtomicLong();
+    private static final AtomicLong FAILED_TO_START = new AtomicLong();
+    private static final AtomicLong NON_ZERO_EXITS = new AtomicLong();
+    private static final AtomicLong SPAWN_NANOS_TOTAL = new AtomicLong();
+    private static final AtomicLong SPAWN_NANOS_MAX = new AtomicLong();
+
+    /**
+     * Run a command to completion (stdout+stderr merged and captured, last 8 KB kept).
+     * {@code timeoutMs} covers waiting for a process slot as well as the run itself; on timeout the
+     * process is killed.
+     */
+    public static Result run(List<String> command, long timeoutMs) {
+        long t0 = System.currentTimeMillis();
+        Process proc;
+        try {
+            proc = start(new ProcessBuilder(command).redirectErrorStream(true), timeoutMs);
+        } catch (IOException e) {
+            return new Result(-1, false, String.valueOf(e.getMessage()), System.currentTimeMillis() - t0);
+        }
+        if (proc == null) {
+            TIMED_OUT.incrementAndGet();
+            return new Result(-1, true, "", System.currentTimeMillis() - t0);
+        }
+
+        StringBuilder captured = new StringBuilder();
+        Thread drainer = drain(proc.getInputStream(), line -> {
+            synchronized (captured) {
+                captured.append(line).append('\n');
+                if (captured.length() > MAX_CAPTURE_CHARS) captured.delete(0, captured.length() - MAX_CAPTURE_CHARS);
+            }
+        });
+
+        try {
+            long left = Math.max(1, timeoutMs - (System.currentTimeMillis() - t0));
+            if (!proc.waitFor(left, TimeUnit.MILLISECONDS)) {
+                proc.destroyForcibly();
+                TIMED_OUT.incrementAndGet();
+                return new Result(-1, true, snapshot(captured), System.currentTimeMillis() - t0);
+            }
+            drainer.join(250);
+            int exit = proc.exitValue();
+            if (exit != 0) NON_ZERO_EXITS.incrementAndGet();
+            return new Result(exit, false, snapshot(captured), System.currentTimeMillis() - t0);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            proc.destroyForcibly();
+            return new Result(-1, false, snapshot(captured), System.currentTimeMillis() - t0);
+        }
+    }
+
+    /**
+     * Start a process under the concurrency cap, waiting up to {@code slotTimeoutMs} for a slot.
+     * The slot is released when the process exits, however it exits. Returns null if no slot freed
+     * up in time. Used directly for long-lived processes (icon workers); callers own the streams.
+     */
+    public static Process start(ProcessBuilder pb, long slotTimeoutMs) throws IOException {
+        try {
+            if (!SLOTS.tryAcquire(Math.max(0, slotTimeoutMs), TimeUnit.MILLISECONDS)) return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        }
+
+        long s0 = System.nanoTime();
+        Process proc;
+        try {
+            proc = pb.start();
+        } catch (IOException | RuntimeException e) {
+            SLOTS.release();
+            FAILED_TO_START.incrementAndGet();
+            throw e;
+        }
+        long spawnNanos = System.nanoTime() - s0;
+        SPAWNED.incrementAndGet();
+        SPAWN_NANOS_TOTAL.addAndGet(spawnNanos);
+        SPAWN_NANOS_MAX.accumulateAndGet(spawnNanos, Math::max);
+
+        RUNNING.incrementAndGet();
+        proc.onExit().whenComplete((p, err) -> {
+            RUNNING.decrementAndGet();
+            SLOTS.release();
+        });
+        return proc;
+    }
+
+    /** Read {@code in} line by line on a virtual thread until EOF, handing each line to {@code onLine}. */
+    public static Thread drain(InputStream in, Consumer<String> onLine) {
+        return Thread.ofVirtual().name("lp-proc-drain").start(() -> {
+            try (BufferedReader r = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = r.readLine()) != null) onLine.accept(line);
+            } catch (IOException ignore) {}
+        });
+    }
+
+    public static Stats stats() {
+        long spawned = SPAWNED.get();
+        double avgMs = (spawned == 0) ? 0.0 : SPAWN_NANOS_TOTAL.get() / 1_000_000.0 / spawned;
+        return new Stats(spawned, RUNNING.get(), TIMED_OUT.get(), FAILED_TO_START.get(), NON_ZERO_EXITS.get(),
+                avgMs, TimeUnit.NANOSECONDS.toMillis(SPAWN_NANOS_MAX.get()));
+    }
+
+    private static String snapshot(StringBuilder sb) {
+        synchronized (sb) { return sb.toString(); }
+    }
+}